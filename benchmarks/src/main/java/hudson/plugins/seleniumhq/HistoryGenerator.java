@@ -0,0 +1,72 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds synthetic results and build histories.
+ *
+ * @author Pascal Martin
+ */
+public class HistoryGenerator {
+
+    private final Random random;
+
+    public HistoryGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @return a result of <tt>suites</tt> suites of <tt>tests</tt> tests
+     *         each, as parsed from the workspace
+     */
+    public TestResult result(int suites, int tests, double failureRate) {
+        TestResult r = new TestResult();
+        for (int s = 0; s < suites; s++) {
+            List<CaseResult> cases = new ArrayList<CaseResult>(tests);
+            int failures = 0;
+            for (int i = 0; i < tests; i++) {
+                boolean passed = random.nextDouble() >= failureRate;
+                if (!passed) {
+                    failures++;
+                }
+                cases.add(new CaseResult("Suite" + s + "Test" + i, passed));
+            }
+            r.getSuites().add(new SuiteResult(tests - failures, failures, (tests - failures) * 20, failures, 0,
+                    "", cases, tests * 2L));
+            r.getFiles().add("/workspace/results/suite" + s + ".html");
+        }
+        return r;
+    }
+
+    /**
+     * @return the trend records of <tt>builds</tt> builds, with failure spikes
+     */
+    public List<TrendRecord> records(int builds, int tests) {
+        List<TrendRecord> r = new ArrayList<TrendRecord>(builds);
+        long timestamp = 1262304000000L;
+        for (int n = 1; n <= builds; n++) {
+            int failures = random.nextInt(100) < 5 ? random.nextInt(tests / 2 + 1) : random.nextInt(3);
+            failures = Math.min(failures, tests);
+            r.add(new TrendRecord(n, timestamp, tests - failures, failures, (tests - failures) * 20, failures, 0,
+                    600 + random.nextInt(120)));
+            timestamp += 3600000L;
+        }
+        return r;
+    }
+
+    /**
+     * Writes the trend of <tt>builds</tt> builds to a new {@link TrendStore}.
+     */
+    public TrendStore trendStore(File file, int builds, int tests) throws IOException {
+        file.delete();
+        TrendStore store = new TrendStore(file);
+        for (TrendRecord record : records(builds, tests)) {
+            store.append(record);
+        }
+        return store;
+    }
+}
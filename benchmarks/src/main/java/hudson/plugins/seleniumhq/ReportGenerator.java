@@ -0,0 +1,114 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Writes synthetic Selenium suite reports, in the layout produced by the
+ * Selenium server and read by {@link SuiteResult#parse}.
+ *
+ * @author Pascal Martin
+ */
+public class ReportGenerator {
+
+    /** Commands in each test */
+    static final int COMMANDS = 20;
+
+    private final Random random;
+    private final double failureRate;
+
+    /**
+     * @param failureRate
+     *            share of the tests that fail, between 0 and 1
+     */
+    public ReportGenerator(long seed, double failureRate) {
+        this.random = new Random(seed);
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Writes a report of about <tt>bytes</tt> bytes.
+     */
+    public void write(File file, long bytes) throws IOException {
+        file.getParentFile().mkdirs();
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1"), 64 * 1024);
+        try {
+            write(out, testsFor(bytes));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the number of tests of a report of about <tt>bytes</tt> bytes
+     */
+    static int testsFor(long bytes) {
+        // measured size of a test : its row in the suite table and its table
+        long perTest = 140 + COMMANDS * 128;
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, bytes / perTest));
+    }
+
+    /**
+     * Writes a report of <tt>tests</tt> tests.
+     */
+    public void write(Writer out, int tests) throws IOException {
+        boolean[] passed = new boolean[tests];
+        int failures = 0;
+        for (int i = 0; i < tests; i++) {
+            passed[i] = random.nextDouble() >= failureRate;
+            if (!passed[i]) {
+                failures++;
+            }
+        }
+
+        out.write("<html>\n<head><title>Test suite results</title></head>\n<body>\n");
+        out.write("<h1>Test suite results </h1>\n\n<table>\n");
+        info(out, "result:", failures == 0 ? "passed" : "failed");
+        info(out, "totalTime:", String.valueOf(tests * 2));
+        info(out, "numTestTotal:", String.valueOf(tests));
+        info(out, "numTestPasses:", String.valueOf(tests - failures));
+        info(out, "numTestFailures:", String.valueOf(failures));
+        info(out, "numCommandPasses:", String.valueOf((tests - failures) * COMMANDS));
+        info(out, "numCommandFailures:", String.valueOf(failures));
+        info(out, "numCommandErrors:", "0");
+        info(out, "Selenium Version:", "undefined");
+        info(out, "Selenium Revision:", "undefined");
+
+        out.write("<tr>\n<td><table cellSpacing=1 cellPadding=1 border=1>\n<tbody>\n");
+        out.write("<tr class=\"title " + (failures == 0 ? "status_passed" : "status_failed")
+                + "\"><td><b>Generated Suite</b></td></tr>\n");
+        for (int i = 0; i < tests; i++) {
+            out.write("<tr class=\"  " + status(passed[i]) + "\">\n<td><a href=\"#testresult" + i + "\">Test" + i
+                    + "</a></td></tr>\n");
+        }
+        out.write("</tbody></table></td>\n<td>&nbsp;</td>\n</tr>\n</table><table>");
+
+        for (int i = 0; i < tests; i++) {
+            out.write("<tr>\n<td><a name=\"testresult" + i + "\">./Test" + i + ".html</a><br/><div>\n");
+            out.write("<table cellSpacing=1 cellPadding=1 border=1>\n<tbody>\n");
+            out.write("<tr class=\"title " + status(passed[i]) + "\">\n<td colSpan=3>Test" + i + "<br></td></tr>\n");
+            for (int c = 0; c < COMMANDS; c++) {
+                boolean failed = !passed[i] && c == COMMANDS - 1;
+                out.write("<tr class=\"  " + (failed ? "status_failed" : (c % 2 == 0 ? "status_done" : "status_passed"))
+                        + "\" style=\"CURSOR: pointer\">\n<td>" + (c % 2 == 0 ? "open" : "verifyText")
+                        + "</td>\n<td>//div[@id='item" + c + "']</td>\n<td>"
+                        + (failed ? "Actual value did not match" : "&nbsp;") + "</td></tr>\n");
+            }
+            out.write("</tbody></table></div></td>\n<td>&nbsp;</td>\n</tr>");
+        }
+        out.write("</table>\n</body>\n</html>\n");
+    }
+
+    private static String status(boolean passed) {
+        return passed ? "status_passed" : "status_failed";
+    }
+
+    private static void info(Writer out, String name, String value) throws IOException {
+        out.write("<tr>\n<td>" + name + "</td>\n<td>" + value + "</td>\n</tr>\n");
+    }
+}
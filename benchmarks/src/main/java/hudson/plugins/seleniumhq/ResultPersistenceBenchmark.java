@@ -0,0 +1,75 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.util.XStream2;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Saving and loading of a {@link TestResult}, in the binary format of
+ * {@link TestResultStore} used by {@link SeleniumhqBuildAction}, and in the
+ * legacy XStream format it replaces.
+ *
+ * @author Pascal Martin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResultPersistenceBenchmark {
+
+    /** Suites of the result, of 100 tests each */
+    @Param({ "1", "10", "100" })
+    public int suites;
+
+    private static final XStream2 XSTREAM = new XStream2();
+
+    private TestResult result;
+    private File dir;
+    private XmlFile xml;
+
+    @Setup
+    public void setUp() throws Exception {
+        result = new HistoryGenerator(42).result(suites, 100, 0.05);
+        dir = Util.createTempDir();
+        xml = new XmlFile(XSTREAM, new File(dir, "seleniumhqResult.xml"));
+        TestResultStore.save(dir, result);
+        xml.write(result);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Util.deleteRecursive(dir);
+    }
+
+    @Benchmark
+    public void saveBinary() throws Exception {
+        TestResultStore.save(dir, result);
+    }
+
+    @Benchmark
+    public TestResult loadBinary() throws Exception {
+        return TestResultStore.load(dir);
+    }
+
+    @Benchmark
+    public void saveXStream() throws Exception {
+        xml.write(result);
+    }
+
+    @Benchmark
+    public Object loadXStream() throws Exception {
+        return xml.read();
+    }
+}
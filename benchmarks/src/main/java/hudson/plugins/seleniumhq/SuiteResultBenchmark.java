@@ -0,0 +1,47 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Parsing of one suite report, from 10KB to 100MB.
+ *
+ * @author Pascal Martin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SuiteResultBenchmark {
+
+    @Param({ "10000", "1000000", "10000000", "100000000" })
+    public long bytes;
+
+    private File report;
+
+    @Setup
+    public void setUp() throws Exception {
+        report = File.createTempFile("suite", ".html");
+        new ReportGenerator(42, 0.05).write(report, bytes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        report.delete();
+    }
+
+    @Benchmark
+    public SuiteResult parse() throws Exception {
+        return SuiteResult.parse(new FileInputStream(report));
+    }
+}
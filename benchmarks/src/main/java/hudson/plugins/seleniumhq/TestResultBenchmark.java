@@ -0,0 +1,59 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.Util;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tools.ant.DirectoryScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Parsing of a workspace with many suite reports, as done by the publisher.
+ *
+ * @author Pascal Martin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TestResultBenchmark {
+
+    @Param({ "10", "100", "500" })
+    public int files;
+
+    @Param({ "100000" })
+    public long bytes;
+
+    private File dir;
+
+    @Setup
+    public void setUp() throws Exception {
+        dir = Util.createTempDir();
+        ReportGenerator generator = new ReportGenerator(42, 0.05);
+        for (int i = 0; i < files; i++) {
+            generator.write(new File(dir, "results/suite" + i + ".html"), bytes);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Util.deleteRecursive(dir);
+    }
+
+    @Benchmark
+    public TestResult parse() throws Exception {
+        DirectoryScanner ds = new DirectoryScanner();
+        ds.setBasedir(dir);
+        ds.setIncludes(new String[] { "results/*.html" });
+        ds.scan();
+        return new TestResult(0, ds);
+    }
+}
@@ -0,0 +1,71 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jfree.data.category.CategoryDataset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Building of the trend graph data from histories of up to 10k builds.
+ *
+ * @author Pascal Martin
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrendBenchmark {
+
+    @Param({ "100", "1000", "10000" })
+    public int builds;
+
+    /** Width of the graph, in pixels */
+    @Param({ "500" })
+    public int width;
+
+    private File file;
+    private TrendStore store;
+    private List<TrendRecord> records;
+
+    @Setup
+    public void setUp() throws Exception {
+        file = File.createTempFile("trend", ".dat");
+        store = new HistoryGenerator(42).trendStore(file, builds, 1000);
+        records = store.read();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public List<TrendRecord> readStore() throws Exception {
+        return store.read();
+    }
+
+    @Benchmark
+    public List<TrendRecord> selectRecords() {
+        return SeleniumhqProjectAction.selectRecords(records, Integer.MAX_VALUE, width);
+    }
+
+    @Benchmark
+    public CategoryDataset dataSet() {
+        return SeleniumhqProjectAction.buildDataSet(
+                SeleniumhqProjectAction.selectRecords(records, Integer.MAX_VALUE, width));
+    }
+
+    @Benchmark
+    public CategoryDataset dataSetAllBuilds() {
+        return SeleniumhqProjectAction.buildDataSet(records);
+    }
+}
@@ -0,0 +1,37 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Replacement of the files of the plugin by a temporary copy written aside.
+ *
+ * @author Pascal Martin
+ */
+final class AtomicFiles {
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * Renames <tt>tmp</tt> to <tt>file</tt>, replacing it.
+     *
+     * <p>
+     * The rename replaces the file atomically where the platform allows it,
+     * so a concurrent reader sees either the old or the new content. Only
+     * where <tt>File.renameTo</tt> does not replace an existing file, on
+     * Windows, the file is deleted first and missing for a moment.
+     */
+    static void replace(File tmp, File file) throws IOException {
+        if (tmp.renameTo(file)) {
+            return;
+        }
+        if (file.exists() && !file.delete()) {
+            tmp.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Failed to rename " + tmp + " to " + file);
+        }
+    }
+}
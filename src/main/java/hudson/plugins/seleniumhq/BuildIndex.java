@@ -0,0 +1,217 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sorted list of the numbers of the builds of a project that carry a
+ * {@link SeleniumhqBuildAction}.
+ *
+ * <p>
+ * It is persisted in <tt>builds.idx</tt> in the project data directory and
+ * updated when a result is published or a build deleted, so the previous or
+ * last result is found by a binary search instead of walking the builds one
+ * by one. A missing index is rebuilt from the builds on first use.
+ *
+ * @author Pascal Martin
+ */
+public class BuildIndex {
+
+    static final String FILE_NAME = "builds.idx";
+
+    private static final Logger logger = Logger.getLogger(BuildIndex.class.getName());
+
+    private static final ConcurrentMap<String, BuildIndex> INDEXES = new ConcurrentHashMap<String, BuildIndex>();
+
+    /**
+     * Gets the index of a project, loading or rebuilding it if needed.
+     */
+    public static BuildIndex get(AbstractProject<?, ?> project) {
+        String key = project.getRootDir().getPath();
+        BuildIndex index = INDEXES.get(key);
+        if (index == null) {
+            index = new BuildIndex(new File(SeleniumhqPublisher.getSeleniumDataDir(project), FILE_NAME));
+            BuildIndex existing = INDEXES.putIfAbsent(key, index);
+            if (existing != null) {
+                index = existing;
+            }
+        }
+        index.checkLoaded(project);
+        return index;
+    }
+
+    private final File file;
+
+    /** Build numbers, sorted, in numbers[0..size-1]. Guarded by this. */
+    private int[] numbers = new int[16];
+    private int size;
+    private boolean loaded;
+
+    BuildIndex(File file) {
+        this.file = file;
+    }
+
+    private synchronized void checkLoaded(AbstractProject<?, ?> project) {
+        if (loaded) {
+            return;
+        }
+        try {
+            if (file.exists()) {
+                load();
+            } else {
+                rebuild(project);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read " + file + ", rebuilding it", e);
+            rebuild(project);
+        }
+        loaded = true;
+    }
+
+    private void rebuild(AbstractProject<?, ?> project) {
+        size = 0;
+        for (AbstractBuild<?, ?> b : project.getBuilds()) {
+            if (b.getAction(SeleniumhqBuildAction.class) != null) {
+                insert(b.getNumber());
+            }
+        }
+        save();
+    }
+
+    synchronized void load() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int count = in.readInt();
+            numbers = new int[Math.max(16, count)];
+            for (int i = 0; i < count; i++) {
+                numbers[i] = in.readInt();
+            }
+            size = count;
+            loaded = true;
+        } finally {
+            in.close();
+        }
+    }
+
+    private void save() {
+        try {
+            file.getParentFile().mkdirs();
+            File tmp = new File(file.getPath() + ".tmp");
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(size);
+                for (int i = 0; i < size; i++) {
+                    out.writeInt(numbers[i]);
+                }
+            } finally {
+                out.close();
+            }
+            AtomicFiles.replace(tmp, file);
+        } catch (IOException e) {
+            // the index is rebuilt when it cannot be read
+            logger.log(Level.WARNING, "Failed to save " + file, e);
+            file.delete();
+        }
+    }
+
+    /**
+     * Records that build <tt>number</tt> has a result.
+     */
+    public synchronized void add(int number) {
+        if (insert(number)) {
+            save();
+        }
+    }
+
+    /**
+     * Forgets build <tt>number</tt>.
+     */
+    public synchronized void remove(int number) {
+        int pos = Arrays.binarySearch(numbers, 0, size, number);
+        if (pos >= 0) {
+            System.arraycopy(numbers, pos + 1, numbers, pos, size - pos - 1);
+            size--;
+            save();
+        }
+    }
+
+    private boolean insert(int number) {
+        int pos = Arrays.binarySearch(numbers, 0, size, number);
+        if (pos >= 0) {
+            return false;
+        }
+        pos = -pos - 1;
+        if (size == numbers.length) {
+            int[] grown = new int[size * 2];
+            System.arraycopy(numbers, 0, grown, 0, size);
+            numbers = grown;
+        }
+        System.arraycopy(numbers, pos, numbers, pos + 1, size - pos);
+        numbers[pos] = number;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return the greatest indexed build number lower than <tt>number</tt>,
+     *         or -1
+     */
+    public synchronized int previous(int number) {
+        int pos = Arrays.binarySearch(numbers, 0, size, number);
+        pos = pos >= 0 ? pos - 1 : -pos - 2;
+        return pos >= 0 ? numbers[pos] : -1;
+    }
+
+    /**
+     * @return the greatest indexed build number, or -1
+     */
+    public synchronized int last() {
+        return size > 0 ? numbers[size - 1] : -1;
+    }
+
+    /**
+     * @return the indexed build numbers between <tt>from</tt> and
+     *         <tt>to</tt> included, in ascending order
+     */
+    public synchronized int[] range(int from, int to) {
+        int start = Arrays.binarySearch(numbers, 0, size, from);
+        start = start >= 0 ? start : -start - 1;
+        int end = Arrays.binarySearch(numbers, 0, size, to);
+        end = end >= 0 ? end + 1 : -end - 1;
+        if (end <= start) {
+            return new int[0];
+        }
+        int[] r = new int[end - start];
+        System.arraycopy(numbers, start, r, 0, r.length);
+        return r;
+    }
+
+    /**
+     * @return the <tt>count</tt> greatest indexed build numbers, in
+     *         ascending order
+     */
+    public synchronized int[] last(int count) {
+        int n = Math.min(count, size);
+        int[] r = new int[n];
+        System.arraycopy(numbers, size - n, r, 0, n);
+        return r;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
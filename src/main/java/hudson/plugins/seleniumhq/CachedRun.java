@@ -0,0 +1,54 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.model.Action;
+
+import java.io.Serializable;
+
+/**
+ * Marks a result file that the {@link SeleniumhqBuilder} took from the
+ * {@link RunCache} instead of running the suite, for the
+ * {@link SeleniumhqPublisher} to report it.
+ *
+ * @author Pascal Martin
+ */
+public class CachedRun implements Action, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String resultFile;
+    private final int build;
+
+    public CachedRun(String resultFile, int build) {
+        this.resultFile = resultFile;
+        this.build = build;
+    }
+
+    /**
+     * @return the result file, relative to the workspace
+     */
+    public String getResultFile() {
+        return resultFile;
+    }
+
+    /**
+     * @return the build that actually ran the suite
+     */
+    public int getBuild() {
+        return build;
+    }
+
+    /**
+     * Hidden : reported in the output of the publisher.
+     */
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return null;
+    }
+
+    public String getUrlName() {
+        return null;
+    }
+}
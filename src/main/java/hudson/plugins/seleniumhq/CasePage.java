@@ -0,0 +1,161 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.model.Api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * One page of the tests of a build, filtered by status and name, as shown
+ * by the test browser of {@link SeleniumhqBuildAction}.
+ * 
+ * @author Pascal Martin
+ */
+@ExportedBean
+public class CasePage {
+
+    public static final int PAGE_SIZE = 50;
+
+    private final String status;
+    private final String name;
+    private final int page;
+    private final int total;
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * @param status
+     *            "passed", "failed", or null for all the tests
+     * @param name
+     *            part of the test names to keep, case insensitive, or null
+     * @param page
+     *            page number, starting at 0
+     */
+    public CasePage(TestResult result, String status, String name, int page) {
+        this.status = status;
+        this.name = name;
+        String filter = name == null ? null : name.toLowerCase();
+        Boolean passed = "passed".equals(status) ? Boolean.TRUE : ("failed".equals(status) ? Boolean.FALSE : null);
+
+        // positions of the matching tests, suite and index interleaved
+        List<SuiteResult> suites = result.getSuites();
+        List<Integer> matches = new ArrayList<Integer>();
+        for (int i = 0; i < suites.size(); i++) {
+            List<CaseResult> cases = suites.get(i).getCases();
+            for (int j = 0; j < cases.size(); j++) {
+                CaseResult c = cases.get(j);
+                if (passed != null && c.isPassed() != passed.booleanValue()) {
+                    continue;
+                }
+                if (filter != null && c.getName().toLowerCase().indexOf(filter) == -1) {
+                    continue;
+                }
+                matches.add(i);
+                matches.add(j);
+            }
+        }
+        this.total = matches.size() / 2;
+        this.page = Math.min(Math.max(0, page), Math.max(0, getPageCount() - 1));
+
+        int end = Math.min(total, (this.page + 1) * PAGE_SIZE);
+        List<String> suiteNames = result.getSuiteNames();
+        for (int m = this.page * PAGE_SIZE; m < end; m++) {
+            int i = matches.get(2 * m);
+            int j = matches.get(2 * m + 1);
+            entries.add(new Entry(i, j, suites.get(i).getCases().get(j), suiteNames.get(i)));
+        }
+    }
+
+    @Exported
+    public String getStatus() {
+        return status;
+    }
+
+    @Exported
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the page number, starting at 0
+     */
+    @Exported
+    public int getPage() {
+        return page;
+    }
+
+    @Exported
+    public int getPageCount() {
+        return (total + PAGE_SIZE - 1) / PAGE_SIZE;
+    }
+
+    /**
+     * @return the number of tests matching the filters
+     */
+    @Exported
+    public int getTotal() {
+        return total;
+    }
+
+    @Exported
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    /**
+     * A test and its position in the result.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static class Entry {
+        private final int suite;
+        private final int index;
+        private final CaseResult result;
+        private final String file;
+
+        Entry(int suite, int index, CaseResult result, String file) {
+            this.suite = suite;
+            this.index = index;
+            this.result = result;
+            this.file = file;
+        }
+
+        @Exported
+        public int getSuite() {
+            return suite;
+        }
+
+        /**
+         * @return position of the test in its suite, i.e. the number of its
+         *         anchor in the report
+         */
+        @Exported
+        public int getIndex() {
+            return index;
+        }
+
+        public CaseResult getResult() {
+            return result;
+        }
+
+        @Exported(name = "name")
+        public String getTestName() {
+            return result.getName();
+        }
+
+        @Exported
+        public boolean isPassed() {
+            return result.isPassed();
+        }
+
+        @Exported
+        public String getFile() {
+            return file;
+        }
+    }
+}
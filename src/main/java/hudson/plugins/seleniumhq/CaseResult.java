@@ -0,0 +1,31 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.Serializable;
+
+/**
+ * Result of one test of a Selenium suite, as listed in the suite table of
+ * the report.
+ * 
+ * @author Pascal Martin
+ *
+ */
+public class CaseResult implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String name;
+	private final boolean passed;
+
+	public CaseResult(String name, boolean passed) {
+		this.name = name;
+		this.passed = passed;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public boolean isPassed() {
+		return passed;
+	}
+}
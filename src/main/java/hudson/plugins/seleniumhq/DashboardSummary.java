@@ -0,0 +1,203 @@
+package hudson.plugins.seleniumhq;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Aggregation of the {@link ProjectSummary}s of all the Selenium projects.
+ *
+ * @author Pascal Martin
+ */
+@ExportedBean
+public class DashboardSummary {
+
+    /** Suites and flaky tests listed across the projects */
+    static final int MAX_ITEMS = 10;
+
+    private final List<ProjectSummary> projects;
+    private final List<Suite> slowestSuites = new ArrayList<Suite>();
+    private final List<Flaky> flakyTests = new ArrayList<Flaky>();
+    private int numTestPasses;
+    private int numTestFailures;
+    private int failingProjects;
+    private final long timestamp = System.currentTimeMillis();
+
+    DashboardSummary(List<ProjectSummary> projects) {
+        this.projects = new ArrayList<ProjectSummary>(projects);
+        Collections.sort(this.projects, BY_PASS_RATE);
+        for (ProjectSummary p : projects) {
+            numTestPasses += p.getNumTestPasses();
+            numTestFailures += p.getNumTestFailures();
+            if (p.getNumTestFailures() > 0) {
+                failingProjects++;
+            }
+            for (DurationStats s : p.getSlowestSuites()) {
+                slowestSuites.add(new Suite(p, s));
+            }
+            for (TestHistory h : p.getFlakyTests()) {
+                flakyTests.add(new Flaky(p, h));
+            }
+        }
+        Collections.sort(slowestSuites);
+        if (slowestSuites.size() > MAX_ITEMS) {
+            slowestSuites.subList(MAX_ITEMS, slowestSuites.size()).clear();
+        }
+        Collections.sort(flakyTests);
+        if (flakyTests.size() > MAX_ITEMS) {
+            flakyTests.subList(MAX_ITEMS, flakyTests.size()).clear();
+        }
+    }
+
+    /**
+     * @return the projects, the lowest pass rate first
+     */
+    @Exported
+    public List<ProjectSummary> getProjects() {
+        return projects;
+    }
+
+    @Exported
+    public int getNumTestPasses() {
+        return numTestPasses;
+    }
+
+    @Exported
+    public int getNumTestFailures() {
+        return numTestFailures;
+    }
+
+    /**
+     * @return the share of passed tests over all the projects, in percent
+     */
+    @Exported
+    public int getPassRate() {
+        int total = numTestPasses + numTestFailures;
+        return total == 0 ? 100 : (int) (100L * numTestPasses / total);
+    }
+
+    /**
+     * @return the number of projects whose last result has failures
+     */
+    @Exported
+    public int getFailingProjects() {
+        return failingProjects;
+    }
+
+    /**
+     * @return the suites with the longest mean duration over all the projects
+     */
+    @Exported
+    public List<Suite> getSlowestSuites() {
+        return slowestSuites;
+    }
+
+    /**
+     * @return the flakiest tests over all the projects
+     */
+    @Exported
+    public List<Flaky> getFlakyTests() {
+        return flakyTests;
+    }
+
+    /**
+     * @return when the aggregation was computed
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    private static final Comparator<ProjectSummary> BY_PASS_RATE = new Comparator<ProjectSummary>() {
+        public int compare(ProjectSummary a, ProjectSummary b) {
+            int r = a.getPassRate() - b.getPassRate();
+            return r != 0 ? r : a.getName().compareTo(b.getName());
+        }
+    };
+
+    /**
+     * A suite and its project.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static class Suite implements Comparable<Suite> {
+        private final ProjectSummary project;
+        private final DurationStats stats;
+
+        Suite(ProjectSummary project, DurationStats stats) {
+            this.project = project;
+            this.stats = stats;
+        }
+
+        @Exported
+        public String getProject() {
+            return project.getName();
+        }
+
+        public String getProjectUrl() {
+            return project.getUrl();
+        }
+
+        @Exported
+        public String getName() {
+            return stats.getName();
+        }
+
+        /**
+         * @return the mean duration, in seconds
+         */
+        @Exported
+        public long getMean() {
+            return Math.round(stats.getMean());
+        }
+
+        public int compareTo(Suite o) {
+            int r = DurationStore.BY_MEAN.compare(stats, o.stats);
+            return r != 0 ? r : getProject().compareTo(o.getProject());
+        }
+    }
+
+    /**
+     * A flaky test and its project.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static class Flaky implements Comparable<Flaky> {
+        private final ProjectSummary project;
+        private final TestHistory history;
+
+        Flaky(ProjectSummary project, TestHistory history) {
+            this.project = project;
+            this.history = history;
+        }
+
+        @Exported
+        public String getProject() {
+            return project.getName();
+        }
+
+        public String getProjectUrl() {
+            return project.getUrl();
+        }
+
+        @Exported
+        public String getName() {
+            return history.getName();
+        }
+
+        @Exported
+        public int getScorePercent() {
+            return history.getScorePercent();
+        }
+
+        public String getOutcomes() {
+            return history.getOutcomes();
+        }
+
+        public int compareTo(Flaky o) {
+            int r = FlakyTestStore.BY_SCORE.compare(history, o.history);
+            return r != 0 ? r : getProject().compareTo(o.getProject());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package hudson.plugins.seleniumhq;
+
+/**
+ * Rolling statistic of the duration of one suite, kept by
+ * {@link DurationStore}.
+ *
+ * <p>
+ * The mean and variance are exponentially weighted, so recent builds count
+ * most and the statistic takes constant space. The first runs are averaged
+ * evenly until there are enough of them for the weighting to apply.
+ *
+ * @author Pascal Martin
+ */
+public class DurationStats {
+
+    /** Weight of the last run */
+    static final double ALPHA = 0.1;
+
+    /** Runs needed before a slowdown is reported */
+    static final int MIN_RUNS = 5;
+
+    /** Deviations above the mean from which a run is slow */
+    static final double DEVIATIONS = 3;
+
+    /** Minimum slowdown reported, relative to the mean */
+    static final double MIN_RATIO = 0.2;
+
+    private final String name;
+    private double mean;
+    private double variance;
+    private int runs;
+    private int lastBuild;
+
+    public DurationStats(String name) {
+        this.name = name;
+    }
+
+    DurationStats(String name, double mean, double variance, int runs, int lastBuild) {
+        this.name = name;
+        this.mean = mean;
+        this.variance = variance;
+        this.runs = runs;
+        this.lastBuild = lastBuild;
+    }
+
+    /**
+     * Adds the duration of a run.
+     */
+    void record(int build, long seconds) {
+        runs++;
+        double alpha = Math.max(ALPHA, 1.0 / runs);
+        double diff = seconds - mean;
+        double increment = alpha * diff;
+        mean += increment;
+        variance = (1 - alpha) * (variance + diff * increment);
+        lastBuild = build;
+    }
+
+    /**
+     * @return true if a run of <tt>seconds</tt> is significantly slower than
+     *         the runs recorded so far
+     */
+    public boolean isSlow(long seconds) {
+        double diff = seconds - mean;
+        return runs >= MIN_RUNS && diff >= 1 && diff > mean * MIN_RATIO
+                && diff > DEVIATIONS * getStandardDeviation();
+    }
+
+    /**
+     * @return suite identifier, the name of its result file
+     */
+    public String getName() {
+        return name;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    double getVariance() {
+        return variance;
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(variance);
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    public int getLastBuild() {
+        return lastBuild;
+    }
+}
@@ -0,0 +1,182 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.model.AbstractProject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Duration statistics of each suite of a project, to find the builds where
+ * a suite became slower.
+ *
+ * <p>
+ * Selenium reports only time whole suites, so each result file is tracked
+ * with a {@link DurationStats}. Each publication first compares the durations
+ * of its suites with the statistics, then adds them. The statistics are kept
+ * in <tt>durations.dat</tt> in the project data directory, rebuilt from the
+ * last {@link #REBUILD_BUILDS} results when missing. Suites that have not
+ * run for {@link #MAX_IDLE_BUILDS} builds are forgotten.
+ *
+ * <p>
+ * Layout : <tt>"SHQD" version lastBuild count (name mean variance runs lastBuild)*</tt>.
+ *
+ * @author Pascal Martin
+ */
+public class DurationStore extends ProjectStore {
+
+    static final String FILE_NAME = "durations.dat";
+
+    private static final byte[] MAGIC = { 'S', 'H', 'Q', 'D' };
+    static final int VERSION = 2;
+
+    /** Builds after which a suite that no longer runs is forgotten */
+    static final int MAX_IDLE_BUILDS = 200;
+
+    /** Results read when the statistics are rebuilt */
+    static final int REBUILD_BUILDS = 30;
+
+    private static final ProjectStore.Factory<DurationStore> FACTORY = new ProjectStore.Factory<DurationStore>() {
+        public DurationStore create(File file) {
+            return new DurationStore(file);
+        }
+    };
+
+    /**
+     * Gets the store of a project, loading or rebuilding it if needed.
+     */
+    public static DurationStore get(AbstractProject<?, ?> project) {
+        return get(project, FILE_NAME, FACTORY);
+    }
+
+    /** Guarded by this */
+    private final Map<String, DurationStats> stats = new HashMap<String, DurationStats>();
+
+    DurationStore(File file) {
+        super(file, MAGIC, VERSION, "duration");
+    }
+
+    @Override
+    int[] getRebuildBuilds(BuildIndex index) {
+        return index.last(REBUILD_BUILDS);
+    }
+
+    @Override
+    void clear() {
+        stats.clear();
+    }
+
+    @Override
+    void read(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            DurationStats s = new DurationStats(in.readUTF(), in.readDouble(), in.readDouble(), in.readInt(),
+                    in.readInt());
+            stats.put(s.getName(), s);
+        }
+    }
+
+    @Override
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(stats.size());
+        for (DurationStats s : stats.values()) {
+            out.writeUTF(s.getName());
+            out.writeDouble(s.getMean());
+            out.writeDouble(s.getVariance());
+            out.writeInt(s.getRuns());
+            out.writeInt(s.getLastBuild());
+        }
+    }
+
+    /**
+     * Compares the durations of build <tt>number</tt> with the statistics,
+     * then adds them. A build already recorded, or older than the last one
+     * recorded, is ignored.
+     * 
+     * @return the suites that ran significantly slower than usual
+     */
+    public synchronized List<Slowdown> update(int number, TestResult result) {
+        if (number <= lastBuild) {
+            return Collections.emptyList();
+        }
+        List<Slowdown> slowdowns = new ArrayList<Slowdown>();
+        List<SuiteResult> suites = result.getSuites();
+        List<String> suiteNames = result.getSuiteNames();
+        for (int i = 0; i < suites.size(); i++) {
+            long seconds = suites.get(i).getTotalTime();
+            DurationStats s = stats.get(suiteNames.get(i));
+            if (s != null && seconds > 0 && s.isSlow(seconds)) {
+                slowdowns.add(new Slowdown(s.getName(), seconds, Math.round(s.getMean())));
+            }
+        }
+        record(number, result);
+        save();
+        return slowdowns;
+    }
+
+    @Override
+    boolean record(int number, TestResult result) {
+        if (number <= lastBuild) {
+            return false;
+        }
+        lastBuild = number;
+        List<SuiteResult> suites = result.getSuites();
+        List<String> suiteNames = result.getSuiteNames();
+        for (int i = 0; i < suites.size(); i++) {
+            long seconds = suites.get(i).getTotalTime();
+            if (seconds <= 0) {
+                // duration unknown or below the resolution of the report
+                continue;
+            }
+            String name = suiteNames.get(i);
+            DurationStats s = stats.get(name);
+            if (s == null) {
+                s = new DurationStats(name);
+                stats.put(name, s);
+            }
+            s.record(number, seconds);
+        }
+        for (Iterator<DurationStats> it = stats.values().iterator(); it.hasNext();) {
+            if (it.next().getLastBuild() < number - MAX_IDLE_BUILDS) {
+                it.remove();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the statistics of a suite, or null if it is unknown
+     */
+    public synchronized DurationStats getStats(String name) {
+        return stats.get(name);
+    }
+
+    /**
+     * @return the suites with the longest mean duration, the slowest first,
+     *         at most <tt>max</tt>
+     */
+    public synchronized List<DurationStats> getSlowestSuites(int max) {
+        List<DurationStats> r = new ArrayList<DurationStats>(stats.values());
+        Collections.sort(r, BY_MEAN);
+        return r.size() > max ? new ArrayList<DurationStats>(r.subList(0, max)) : r;
+    }
+
+    public synchronized int size() {
+        return stats.size();
+    }
+
+    static final Comparator<DurationStats> BY_MEAN = new Comparator<DurationStats>() {
+        public int compare(DurationStats a, DurationStats b) {
+            int r = Double.compare(b.getMean(), a.getMean());
+            return r != 0 ? r : a.getName().compareTo(b.getName());
+        }
+    };
+}
@@ -0,0 +1,182 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.model.AbstractProject;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pass/fail history of each test of a project, to find the flaky ones.
+ *
+ * <p>
+ * Each publication shifts the outcome of every test it ran into its
+ * {@link TestHistory}, so the cost of an update only depends on the size of
+ * the result, never on the number of builds. The histories are kept in
+ * <tt>flaky.dat</tt> in the project data directory, rebuilt from the last
+ * {@link TestHistory#MAX_RUNS} results when missing. Tests that have not run
+ * for {@link #MAX_IDLE_BUILDS} builds are forgotten.
+ *
+ * <p>
+ * Layout : <tt>"SHQF" version lastBuild count (name failures runs lastBuild)*</tt>.
+ *
+ * @author Pascal Martin
+ */
+public class FlakyTestStore extends ProjectStore {
+
+    static final String FILE_NAME = "flaky.dat";
+
+    private static final byte[] MAGIC = { 'S', 'H', 'Q', 'F' };
+    static final int VERSION = 2;
+
+    /** Builds after which a test that no longer runs is forgotten */
+    static final int MAX_IDLE_BUILDS = 200;
+
+    private static final ProjectStore.Factory<FlakyTestStore> FACTORY = new ProjectStore.Factory<FlakyTestStore>() {
+        public FlakyTestStore create(File file) {
+            return new FlakyTestStore(file);
+        }
+    };
+
+    /**
+     * Gets the store of a project, loading or rebuilding it if needed.
+     */
+    public static FlakyTestStore get(AbstractProject<?, ?> project) {
+        return get(project, FILE_NAME, FACTORY);
+    }
+
+    /**
+     * Gets the store of a project only if that does not rebuild it, i.e. if
+     * it is loaded or saved.
+     *
+     * @return the store, or null
+     */
+    public static FlakyTestStore getIfStored(AbstractProject<?, ?> project) {
+        return getIfStored(project, FILE_NAME, FACTORY);
+    }
+
+    /**
+     * @param suite
+     *            name of the suite of the test, see
+     *            {@link TestResult#getSuiteNames()}
+     * @return the identifier of a test, qualified by the path of its result
+     *         file
+     */
+    static String getTestName(String suite, CaseResult c) {
+        return suite + "/" + c.getName();
+    }
+
+    /** Guarded by this */
+    private final Map<String, TestHistory> histories = new HashMap<String, TestHistory>();
+
+    FlakyTestStore(File file) {
+        super(file, MAGIC, VERSION, "flaky test");
+    }
+
+    @Override
+    int[] getRebuildBuilds(BuildIndex index) {
+        return index.last(TestHistory.MAX_RUNS);
+    }
+
+    @Override
+    void clear() {
+        histories.clear();
+    }
+
+    @Override
+    void read(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            TestHistory h = new TestHistory(in.readUTF(), in.readLong(), in.readUnsignedByte(), in.readInt());
+            histories.put(h.getName(), h);
+        }
+    }
+
+    @Override
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(histories.size());
+        for (TestHistory h : histories.values()) {
+            out.writeUTF(h.getName());
+            out.writeLong(h.getFailures());
+            out.writeByte(h.getRuns());
+            out.writeInt(h.getLastBuild());
+        }
+    }
+
+    /**
+     * Records the outcomes of build <tt>number</tt>. A build already
+     * recorded, or older than the last one recorded, is ignored.
+     */
+    public synchronized void update(int number, TestResult result) {
+        if (record(number, result)) {
+            save();
+        }
+    }
+
+    @Override
+    boolean record(int number, TestResult result) {
+        if (number <= lastBuild) {
+            return false;
+        }
+        lastBuild = number;
+        List<SuiteResult> suites = result.getSuites();
+        List<String> suiteNames = result.getSuiteNames();
+        for (int i = 0; i < suites.size(); i++) {
+            for (CaseResult c : suites.get(i).getCases()) {
+                String name = getTestName(suiteNames.get(i), c);
+                TestHistory h = histories.get(name);
+                if (h == null) {
+                    h = new TestHistory(name);
+                    histories.put(name, h);
+                }
+                h.record(number, c.isPassed());
+            }
+        }
+        for (Iterator<TestHistory> it = histories.values().iterator(); it.hasNext();) {
+            if (it.next().getLastBuild() < number - MAX_IDLE_BUILDS) {
+                it.remove();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the history of a test, or null if it is unknown
+     */
+    public synchronized TestHistory getHistory(String name) {
+        return histories.get(name);
+    }
+
+    /**
+     * @return the flaky tests, the flakiest first, at most <tt>max</tt>
+     */
+    public synchronized List<TestHistory> getFlakyTests(int max) {
+        List<TestHistory> flaky = new ArrayList<TestHistory>();
+        for (TestHistory h : histories.values()) {
+            if (h.isFlaky()) {
+                flaky.add(h);
+            }
+        }
+        Collections.sort(flaky, BY_SCORE);
+        return flaky.size() > max ? new ArrayList<TestHistory>(flaky.subList(0, max)) : flaky;
+    }
+
+    public synchronized int size() {
+        return histories.size();
+    }
+
+    static final Comparator<TestHistory> BY_SCORE = new Comparator<TestHistory>() {
+        public int compare(TestHistory a, TestHistory b) {
+            int r = Double.compare(b.getScore(), a.getScore());
+            return r != 0 ? r : a.getName().compareTo(b.getName());
+        }
+    };
+}
@@ -0,0 +1,77 @@
+package hudson.plugins.seleniumhq;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rendered trend graphs, shared by all projects.
+ *
+ * <p>
+ * The key identifies everything the rendering depends on (project, last
+ * build, size, history window...), so entries never need invalidation : a new
+ * build simply produces a new key and the old entry ages out of the LRU.
+ *
+ * @author Pascal Martin
+ */
+public class GraphCache {
+
+    /** Number of graphs kept */
+    private static final int MAX_ENTRIES = Integer.getInteger(GraphCache.class.getName() + ".maxEntries", 64);
+
+    private static final GraphCache INSTANCE = new GraphCache(MAX_ENTRIES);
+
+    public static GraphCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * PNG image and clickable map of a graph.
+     */
+    public static final class Graph {
+        final byte[] png;
+        final String map;
+
+        public Graph(byte[] png, String map) {
+            this.png = png;
+            this.map = map;
+        }
+    }
+
+    private final Map<String, Graph> graphs;
+
+    /** Statistics. Guarded by this. */
+    private long renders;
+    private long hits;
+
+    GraphCache(final int maxEntries) {
+        graphs = new LinkedHashMap<String, Graph>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Graph> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized Graph lookup(String key) {
+        Graph g = graphs.get(key);
+        if (g != null) {
+            hits++;
+        }
+        return g;
+    }
+
+    public synchronized void put(String key, Graph graph) {
+        renders++;
+        graphs.put(key, graph);
+    }
+
+    public synchronized long getRenders() {
+        return renders;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+}
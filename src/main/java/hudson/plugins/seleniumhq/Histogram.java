@@ -0,0 +1,66 @@
+package hudson.plugins.seleniumhq;
+
+/**
+ * Distribution of observed values over fixed buckets, updated through
+ * {@link StripedCounter}s.
+ *
+ * @author Pascal Martin
+ */
+public final class Histogram {
+
+    private final long[] bounds;
+    /** One more than the bounds, for the values above the last one */
+    private final StripedCounter[] buckets;
+    private final StripedCounter sum = new StripedCounter();
+
+    /**
+     * @param bounds
+     *            inclusive upper bounds of the buckets, in ascending order
+     */
+    public Histogram(long... bounds) {
+        this.bounds = bounds.clone();
+        this.buckets = new StripedCounter[bounds.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new StripedCounter();
+        }
+    }
+
+    public void observe(long value) {
+        int i = 0;
+        while (i < bounds.length && value > bounds[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        sum.add(value);
+    }
+
+    public long[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * @return for each bound, then for all the values, the number of values
+     *         lower or equal
+     */
+    public long[] getCumulativeCounts() {
+        long[] r = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            total += buckets[i].sum();
+            r[i] = total;
+        }
+        return r;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (StripedCounter b : buckets) {
+            count += b.sum();
+        }
+        return count;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+}
@@ -0,0 +1,162 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.FilePath.FileCallable;
+import hudson.model.AbstractBuild;
+import hudson.model.BuildListener;
+import hudson.remoting.VirtualChannel;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.types.FileSet;
+
+/**
+ * Watches the workspace while the Selenium suite is running and publishes
+ * every result file as soon as it is complete, so the build page shows
+ * progress before {@link SeleniumhqPublisher} runs.
+ *
+ * <p>
+ * The scan itself runs on the slave through a {@link FileCallable}. A file is
+ * complete once it is newer than the build and has not been modified for
+ * {@link #QUIET_PERIOD} milliseconds.
+ *
+ * @author Pascal Martin
+ */
+public class IncrementalResultWatcher implements Runnable {
+
+    /** Delay between two scans of the workspace */
+    static final long POLL_INTERVAL = 5000;
+
+    /** Time a result file must stay untouched before it is published */
+    static final long QUIET_PERIOD = 2000;
+
+    private final AbstractBuild<?, ?> build;
+    private final SeleniumhqPublisher publisher;
+    private final BuildListener listener;
+
+    private Thread thread;
+    private volatile boolean stopped;
+
+    public IncrementalResultWatcher(AbstractBuild<?, ?> build, SeleniumhqPublisher publisher, BuildListener listener) {
+        this.build = build;
+        this.publisher = publisher;
+        this.listener = listener;
+    }
+
+    /**
+     * Clears the previous report and starts watching.
+     */
+    public void start() throws IOException, InterruptedException {
+        new FilePath(SeleniumhqPublisher.getSeleniumReportDir(build.getParent())).deleteContents();
+        listener.getLogger().println("Watching Selenium reports : " + publisher.getIncludes(build));
+        thread = new Thread(this, "Selenium result watcher for " + build.getFullDisplayName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching and performs a last scan, so that files completed since
+     * the previous poll are published too.
+     */
+    public void stop() throws InterruptedException {
+        synchronized (this) {
+            stopped = true;
+            notifyAll();
+        }
+        thread.join();
+        poll(0);
+    }
+
+    public void run() {
+        while (true) {
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+                try {
+                    wait(POLL_INTERVAL);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (stopped) {
+                    return;
+                }
+            }
+            poll(QUIET_PERIOD);
+        }
+    }
+
+    /**
+     * Publishes the result files completed since the last scan.
+     */
+    private synchronized void poll(long quietPeriod) {
+        try {
+            SeleniumhqBuildAction action = build.getAction(SeleniumhqBuildAction.class);
+            Collection<String> known = action == null ? new HashSet<String>()
+                    : new HashSet<String>(action.getResult().getFiles());
+            TestResult partial = build.getWorkspace().act(new ScanCallable(publisher.getIncludes(build),
+                    build.getTimestamp().getTimeInMillis(), System.currentTimeMillis(), quietPeriod, known));
+
+            if (partial.getFiles().isEmpty()) {
+                return;
+            }
+
+            if (action == null) {
+                action = new SeleniumhqBuildAction(build, partial, listener);
+                action.attach();
+            } else {
+                action.addResult(partial, listener);
+            }
+
+            for (String file : partial.getFiles()) {
+                listener.getLogger().println("  Published " + file);
+            }
+            publisher.archiveReports(build.getWorkspace(),
+                    new FilePath(SeleniumhqPublisher.getSeleniumReportDir(build.getParent())),
+                    action.getResult(), false, listener.getLogger());
+        } catch (IOException e) {
+            listener.getLogger().println("Incremental Selenium publishing failed : " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (AbortException e) {
+            listener.getLogger().println("Incremental Selenium publishing failed : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parses, on the slave, the result files completed since the last scan.
+     */
+    private static final class ScanCallable implements FileCallable<TestResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final String includes;
+        private final long buildTime;
+        private final long nowMaster;
+        private final long quietPeriod;
+        private final Collection<String> known;
+
+        ScanCallable(String includes, long buildTime, long nowMaster, long quietPeriod, Collection<String> known) {
+            this.includes = includes;
+            this.buildTime = buildTime;
+            this.nowMaster = nowMaster;
+            this.quietPeriod = quietPeriod;
+            this.known = known;
+        }
+
+        public TestResult invoke(File ws, VirtualChannel channel) throws IOException {
+            final long nowSlave = System.currentTimeMillis();
+
+            FileSet fs = Util.createFileSet(ws, includes);
+            DirectoryScanner ds = fs.getDirectoryScanner();
+
+            TestResult result = new TestResult();
+            result.parseCompleted(buildTime + (nowSlave - nowMaster), nowSlave, quietPeriod, ds, known);
+            return result;
+        }
+    }
+}
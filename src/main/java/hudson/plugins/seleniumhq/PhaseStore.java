@@ -0,0 +1,156 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only history of the {@link PhaseTimings} of a project, for the phase
+ * trend graph.
+ *
+ * <p>
+ * Like the {@link TrendStore}, each publication appends a fixed-width record
+ * to <tt>phases.dat</tt> in the project data directory, and a missing file
+ * is rebuilt from the builds of the {@link BuildIndex}.
+ *
+ * <p>
+ * Layout : <tt>"SHQP" version</tt> header, then the records in publication
+ * order in a {@link RecordFile}, each being the build number followed by the time of every phase in
+ * ms.
+ *
+ * @author Pascal Martin
+ */
+public class PhaseStore {
+
+    static final String FILE_NAME = "phases.dat";
+
+    private static final byte[] MAGIC = { 'S', 'H', 'Q', 'P' };
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = RecordFile.HEADER_SIZE;
+    static final int RECORD_SIZE = 4 + PhaseTimings.COUNT * 4;
+
+    private static final Logger logger = Logger.getLogger(PhaseStore.class.getName());
+
+    private static final ConcurrentMap<String, PhaseStore> STORES = new ConcurrentHashMap<String, PhaseStore>();
+
+    /**
+     * Gets the store of a project, rebuilding it if needed.
+     */
+    public static PhaseStore get(AbstractProject<?, ?> project) {
+        String key = project.getRootDir().getPath();
+        PhaseStore store = STORES.get(key);
+        if (store == null) {
+            store = new PhaseStore(new File(SeleniumhqPublisher.getSeleniumDataDir(project), FILE_NAME));
+            PhaseStore existing = STORES.putIfAbsent(key, store);
+            if (existing != null) {
+                store = existing;
+            }
+        }
+        store.checkExists(project);
+        return store;
+    }
+
+    private final RecordFile file;
+
+    PhaseStore(File file) {
+        this.file = new RecordFile(file, MAGIC, VERSION, RECORD_SIZE, "phase");
+    }
+
+    private synchronized void checkExists(AbstractProject<?, ?> project) {
+        if (file.exists()) {
+            return;
+        }
+        TreeMap<Integer, PhaseTimings> records = new TreeMap<Integer, PhaseTimings>();
+        for (int n : BuildIndex.get(project).range(0, Integer.MAX_VALUE)) {
+            AbstractBuild<?, ?> b = project.getBuildByNumber(n);
+            SeleniumhqBuildAction a = b == null ? null : b.getAction(SeleniumhqBuildAction.class);
+            if (a != null && a.getPhaseTimings() != null) {
+                records.put(n, a.getPhaseTimings());
+            }
+        }
+        try {
+            rewrite(records);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to rebuild " + file.getFile(), e);
+        }
+    }
+
+    /**
+     * @return a value that changes whenever the content of the store changes
+     */
+    public synchronized String getVersion() {
+        return file.getVersion();
+    }
+
+    /**
+     * Appends the timings of a build.
+     */
+    public synchronized void append(int number, PhaseTimings timings) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+        write(buffer, number, timings);
+        buffer.flip();
+        file.append(buffer);
+    }
+
+    /**
+     * Drops the timings of a build.
+     */
+    public synchronized void remove(int number) throws IOException {
+        TreeMap<Integer, PhaseTimings> records = readAll();
+        if (records.remove(number) != null) {
+            rewrite(records);
+        }
+    }
+
+    /**
+     * Reads the timings of all the builds.
+     */
+    public synchronized SortedMap<Integer, PhaseTimings> read() throws IOException {
+        return readAll();
+    }
+
+    private TreeMap<Integer, PhaseTimings> readAll() throws IOException {
+        TreeMap<Integer, PhaseTimings> records = new TreeMap<Integer, PhaseTimings>();
+        ByteBuffer buffer = file.read();
+        if (buffer == null) {
+            return records;
+        }
+        // the last one appended for a build wins
+        int count = file.count(buffer);
+        for (int i = 0; i < count; i++) {
+            int offset = file.offset(i);
+            PhaseTimings t = new PhaseTimings();
+            for (int p = 0; p < PhaseTimings.COUNT; p++) {
+                t.add(p, buffer.getInt(offset + 4 + p * 4) & 0xFFFFFFFFL);
+            }
+            records.put(buffer.getInt(offset), t);
+        }
+        return records;
+    }
+
+    private static void write(ByteBuffer buffer, int number, PhaseTimings timings) {
+        buffer.putInt(number);
+        for (int p = 0; p < PhaseTimings.COUNT; p++) {
+            // unsigned, up to 49 days
+            buffer.putInt((int) Math.min(timings.get(p), 0xFFFFFFFFL));
+        }
+    }
+
+    private void rewrite(TreeMap<Integer, PhaseTimings> records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(records.size() * RECORD_SIZE);
+        for (Integer n : records.keySet()) {
+            write(buffer, n, records.get(n));
+        }
+        buffer.flip();
+        file.rewrite(buffer);
+    }
+}
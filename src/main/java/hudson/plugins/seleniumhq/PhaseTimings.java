@@ -0,0 +1,167 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Action;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Time spent in each phase of the Selenium steps of a build.
+ *
+ * <p>
+ * The {@link SeleniumhqBuilder} runs before any result is published, so it
+ * records its phases on an instance attached to the build as a hidden
+ * action. The {@link SeleniumhqPublisher} adds its own phases, then moves
+ * the timings to the {@link SeleniumhqBuildAction}.
+ *
+ * @author Pascal Martin
+ */
+@ExportedBean
+public class PhaseTimings implements Action, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int DOWNLOAD = 0;
+    public static final int CLEAN = 1;
+    public static final int STARTUP = 2;
+    public static final int RUN = 3;
+    public static final int PARSE = 4;
+    public static final int ARCHIVE = 5;
+    public static final int PERSIST = 6;
+    public static final int INDEX = 7;
+
+    static final String[] NAMES = { "download", "clean", "startup", "run", "parse", "archive", "persist", "index" };
+    static final String[] LABELS = { "Suite download", "Workspace clean", "Server startup", "Test run", "Parsing",
+            "Archiving", "Persisting", "Indexing" };
+
+    /** Number of phases */
+    public static final int COUNT = NAMES.length;
+
+    private final long[] millis = new long[COUNT];
+
+    /**
+     * Gets the timings recorded so far on a build, attaching new ones if
+     * needed.
+     */
+    public static PhaseTimings of(AbstractBuild<?, ?> build) {
+        synchronized (build) {
+            PhaseTimings t = build.getAction(PhaseTimings.class);
+            if (t == null) {
+                t = new PhaseTimings();
+                build.getActions().add(t);
+            }
+            return t;
+        }
+    }
+
+    /**
+     * Adds the time elapsed since <tt>start</tt> to a phase.
+     * 
+     * @param start
+     *            a value of {@link System#currentTimeMillis()}
+     */
+    public synchronized void end(int phase, long start) {
+        add(phase, System.currentTimeMillis() - start);
+    }
+
+    public synchronized void add(int phase, long ms) {
+        millis[phase] += Math.max(0, ms);
+    }
+
+    public synchronized void addAll(PhaseTimings other) {
+        for (int i = 0; i < COUNT; i++) {
+            add(i, other.get(i));
+        }
+    }
+
+    /**
+     * @return the time spent in a phase, in ms
+     */
+    public synchronized long get(int phase) {
+        return millis[phase];
+    }
+
+    /**
+     * @return the time spent in all the phases, in ms
+     */
+    @Exported
+    public synchronized long getTotal() {
+        long total = 0;
+        for (long ms : millis) {
+            total += ms;
+        }
+        return total;
+    }
+
+    /**
+     * @return the phases that took any time, in execution order
+     */
+    @Exported
+    public synchronized List<Phase> getPhases() {
+        long total = getTotal();
+        List<Phase> r = new ArrayList<Phase>();
+        for (int i = 0; i < COUNT; i++) {
+            if (millis[i] > 0) {
+                r.add(new Phase(i, millis[i], total == 0 ? 0 : (int) (100 * millis[i] / total)));
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Hidden : the timings are shown by the {@link SeleniumhqBuildAction}.
+     */
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return null;
+    }
+
+    public String getUrlName() {
+        return null;
+    }
+
+    /**
+     * Time spent in one phase.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static class Phase {
+        private final int phase;
+        private final long millis;
+        private final int percent;
+
+        Phase(int phase, long millis, int percent) {
+            this.phase = phase;
+            this.millis = millis;
+            this.percent = percent;
+        }
+
+        @Exported
+        public String getName() {
+            return NAMES[phase];
+        }
+
+        public String getLabel() {
+            return LABELS[phase];
+        }
+
+        @Exported
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return share of the total time, in percent
+         */
+        public int getPercent() {
+            return percent;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Copies the output of one of the Selenium servers running at the same time
+ * to the build log, line by line, each line prefixed with the suite it runs.
+ *
+ * <p>
+ * Whole lines are written while holding a lock shared by all the servers of
+ * the build, so the lines of the suites are interleaved but never mixed.
+ *
+ * @author Pascal Martin
+ */
+public class PrefixedOutputStream extends OutputStream {
+
+    /** Longest line kept in memory, a longer line is written in pieces */
+    private static final int MAX_LINE = 8192;
+
+    private final PrintStream out;
+    private final byte[] prefix;
+    private final Object lock;
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+    /**
+     * @param lock
+     *            held while writing a line to <tt>out</tt>
+     */
+    public PrefixedOutputStream(PrintStream out, String prefix, Object lock) {
+        this.out = out;
+        this.prefix = prefix.getBytes();
+        this.lock = lock;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        line.write(b);
+        if (b == '\n' || line.size() >= MAX_LINE) {
+            writeLine();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            write(b[i]);
+        }
+    }
+
+    private void writeLine() throws IOException {
+        synchronized (lock) {
+            out.write(prefix);
+            line.writeTo(out);
+            out.flush();
+        }
+        line.reset();
+    }
+
+    /**
+     * Writes the last line, even if incomplete, and leaves the build log
+     * open.
+     */
+    @Override
+    public void close() throws IOException {
+        if (line.size() > 0) {
+            line.write('\n');
+            writeLine();
+        }
+    }
+}
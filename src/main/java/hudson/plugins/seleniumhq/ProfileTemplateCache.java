@@ -0,0 +1,249 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.FilePath.FileCallable;
+import hudson.remoting.VirtualChannel;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Copy of a Firefox profile template kept on the node, outside of the
+ * workspace.
+ *
+ * <p>
+ * The template is a directory prepared by the user : extensions,
+ * certificates, preferences... It is often checked out in the workspace,
+ * which the builder cleans before the run. Its copy is made on the node where
+ * the template already is, in <tt>&lt;cache root&gt;/&lt;checksum&gt;</tt>,
+ * the checksum covering the names and contents of all its files, so any
+ * change of the template makes a new copy and a copy is never modified.
+ * Selenium RC still copies the template into a fresh profile on each launch.
+ *
+ * <p>
+ * The checksum is remembered in <tt>&lt;stamp&gt;.stamp</tt>, the stamp
+ * covering the names, sizes and modification times of the files, so the
+ * files of an unchanged template are not read again. Each build holds a lease
+ * on the copy it uses, <tt>&lt;checksum&gt;-&lt;lease&gt;.lease</tt>, until
+ * {@link Release} drops it after the run. Only the {@link #MAX_ENTRIES} most
+ * recently used copies are kept, besides the leased ones. Leases and
+ * temporary copies older than a day are left over by interrupted builds.
+ *
+ * @author Pascal Martin
+ */
+public class ProfileTemplateCache implements FileCallable<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Number of templates kept on each node */
+    static final int MAX_ENTRIES = 3;
+
+    /** Marks a complete copy */
+    static final String COMPLETE = ".seleniumhq-complete";
+
+    /** Age of the leases and temporary copies left over by interrupted builds */
+    static final long STALE = 24 * 3600 * 1000L;
+
+    private final String cacheRoot;
+    private final String lease;
+
+    /**
+     * @param cacheRoot
+     *            directory of the cached templates, on the same node as the
+     *            template
+     * @param lease
+     *            identifies the build using the copy, see {@link Release}
+     */
+    public ProfileTemplateCache(String cacheRoot, String lease) {
+        this.cacheRoot = cacheRoot;
+        this.lease = lease;
+    }
+
+    /**
+     * @return the path of the cached copy of the template
+     */
+    public String invoke(File template, VirtualChannel channel) throws IOException {
+        return prepare(template, new File(cacheRoot), MAX_ENTRIES, lease).getPath();
+    }
+
+    /**
+     * Gets the cached copy of a template, copying it first if needed, and
+     * leases it.
+     */
+    static File prepare(File template, File root, int maxEntries, String lease) throws IOException {
+        if (!template.isDirectory()) {
+            throw new IOException("Firefox profile template not found : " + template);
+        }
+        root.mkdirs();
+        File stamp = new File(root, stamp(template) + ".stamp");
+        String checksum = stamp.exists() ? FileUtils.readFileToString(stamp).trim() : "";
+        if (checksum.length() == 0 || !new File(new File(root, checksum), COMPLETE).exists()) {
+            checksum = checksum(template);
+        }
+        File target = new File(root, checksum);
+
+        // leased before being looked for, so that no pruning can delete it
+        File leaseFile = new File(root, checksum + "-" + lease + ".lease");
+        leaseFile.createNewFile();
+        leaseFile.setLastModified(System.currentTimeMillis());
+
+        if (!new File(target, COMPLETE).exists()) {
+            File tmp = new File(root, checksum + "-" + System.nanoTime() + ".tmp");
+            try {
+                FileUtils.copyDirectory(template, tmp);
+                FileUtils.writeStringToFile(new File(tmp, COMPLETE), template.getPath());
+                // a concurrent build may have made the same copy
+                if (!tmp.renameTo(target) && !new File(target, COMPLETE).exists()) {
+                    throw new IOException("Failed to rename " + tmp + " to " + target);
+                }
+            } finally {
+                if (tmp.exists()) {
+                    FileUtils.deleteDirectory(tmp);
+                }
+            }
+        }
+        FileUtils.writeStringToFile(stamp, checksum);
+        // most recently used, for the pruning
+        target.setLastModified(System.currentTimeMillis());
+        prune(root, target, maxEntries);
+        return target;
+    }
+
+    /**
+     * @return the SHA-1 of the relative paths and contents of the files of
+     *         the template, in hexadecimal
+     */
+    static String checksum(File template) throws IOException {
+        MessageDigest digest = SuiteFingerprint.newDigest();
+        for (String path : list(template)) {
+            digest.update(path.getBytes("UTF-8"));
+            digest.update((byte) 0);
+            SuiteFingerprint.update(digest, new File(template, path));
+        }
+        return SuiteFingerprint.toHex(digest.digest());
+    }
+
+    /**
+     * @return the SHA-1 of the relative paths, sizes and modification times
+     *         of the files of the template, in hexadecimal
+     */
+    static String stamp(File template) throws IOException {
+        MessageDigest digest = SuiteFingerprint.newDigest();
+        for (String path : list(template)) {
+            File f = new File(template, path);
+            digest.update((path + "\u0000" + f.length() + "\u0000" + f.lastModified() + "\u0000").getBytes("UTF-8"));
+        }
+        return SuiteFingerprint.toHex(digest.digest());
+    }
+
+    /**
+     * @return the relative paths of the files of the template, sorted
+     */
+    private static List<String> list(File template) {
+        List<String> paths = new ArrayList<String>();
+        list(template, "", paths);
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private static void list(File dir, String prefix, List<String> paths) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (f.isDirectory()) {
+                list(f, prefix + f.getName() + "/", paths);
+            } else if (!f.getName().equals(COMPLETE)) {
+                paths.add(prefix + f.getName());
+            }
+        }
+    }
+
+    /**
+     * Deletes the least recently used copies above <tt>maxEntries</tt> that
+     * no build leases, the leftovers of interrupted builds, and the stamps of
+     * the deleted copies.
+     */
+    private static void prune(File root, File current, int maxEntries) throws IOException {
+        File[] files = root.listFiles();
+        if (files == null) {
+            return;
+        }
+        long stale = System.currentTimeMillis() - STALE;
+        Set<String> leased = new HashSet<String>();
+        for (File f : files) {
+            if (f.getName().endsWith(".lease")) {
+                if (f.lastModified() < stale) {
+                    f.delete();
+                } else {
+                    leased.add(f.getName().substring(0, f.getName().indexOf('-')));
+                }
+            }
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File a, File b) {
+                long d = b.lastModified() - a.lastModified();
+                return d > 0 ? 1 : (d < 0 ? -1 : 0);
+            }
+        });
+        int kept = 0;
+        for (File d : files) {
+            if (!d.isDirectory()) {
+                continue;
+            }
+            if (d.equals(current)) {
+                kept++;
+            } else if (d.getName().endsWith(".tmp")) {
+                if (d.lastModified() < stale) {
+                    FileUtils.deleteDirectory(d);
+                }
+            } else if (leased.contains(d.getName())) {
+                // in use by a running build
+            } else if (kept < maxEntries && new File(d, COMPLETE).exists()) {
+                kept++;
+            } else {
+                FileUtils.deleteDirectory(d);
+            }
+        }
+
+        for (File f : files) {
+            if (f.getName().endsWith(".stamp") && f.exists()
+                    && !new File(root, FileUtils.readFileToString(f).trim()).exists()) {
+                f.delete();
+            }
+        }
+    }
+
+    /**
+     * Drops the lease of a build on a cached copy, once its run is over.
+     */
+    public static final class Release implements FileCallable<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final String lease;
+
+        public Release(String lease) {
+            this.lease = lease;
+        }
+
+        public Void invoke(File copy, VirtualChannel channel) throws IOException {
+            release(copy, lease);
+            return null;
+        }
+    }
+
+    static void release(File copy, String lease) {
+        new File(copy.getParentFile(), copy.getName() + "-" + lease + ".lease").delete();
+    }
+}
@@ -0,0 +1,208 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Data of a project updated by each publication and kept in a file of the
+ * project data directory, behind the {@link FlakyTestStore}, the
+ * {@link DurationStore} and the {@link TestSearchIndex}.
+ *
+ * <p>
+ * There is one instance per file, loaded on first use. A missing or
+ * unreadable file, or one written by an older version, is rebuilt from the
+ * last results of the {@link BuildIndex}. The file starts with <tt>magic version lastBuild</tt>,
+ * followed by the content written by the subclass. Builds up to
+ * <tt>lastBuild</tt> are already recorded. The subclasses synchronize on
+ * the instance.
+ *
+ * @author Pascal Martin
+ */
+abstract class ProjectStore {
+
+    private static final Logger logger = Logger.getLogger(ProjectStore.class.getName());
+
+    /** Stores by file */
+    private static final ConcurrentMap<String, ProjectStore> STORES = new ConcurrentHashMap<String, ProjectStore>();
+
+    /**
+     * Creates the store of a file.
+     */
+    interface Factory<S extends ProjectStore> {
+        S create(File file);
+    }
+
+    /**
+     * Gets a store of a project, loading or rebuilding it if needed.
+     */
+    static <S extends ProjectStore> S get(AbstractProject<?, ?> project, String fileName, Factory<S> factory) {
+        File file = new File(SeleniumhqPublisher.getSeleniumDataDir(project), fileName);
+        @SuppressWarnings("unchecked")
+        S store = (S) STORES.get(file.getPath());
+        if (store == null) {
+            store = factory.create(file);
+            @SuppressWarnings("unchecked")
+            S existing = (S) STORES.putIfAbsent(file.getPath(), store);
+            if (existing != null) {
+                store = existing;
+            }
+        }
+        store.checkLoaded(project);
+        return store;
+    }
+
+    /**
+     * Gets a store of a project only if that does not rebuild it, i.e. if it
+     * is loaded or saved.
+     *
+     * @return the store, or null
+     */
+    static <S extends ProjectStore> S getIfStored(AbstractProject<?, ?> project, String fileName, Factory<S> factory) {
+        File file = new File(SeleniumhqPublisher.getSeleniumDataDir(project), fileName);
+        ProjectStore store = STORES.get(file.getPath());
+        if ((store == null || !store.isLoaded()) && !file.exists()) {
+            return null;
+        }
+        return get(project, fileName, factory);
+    }
+
+    final File file;
+    private final byte[] magic;
+    private final int version;
+    /** Kind of data, for the error messages */
+    private final String kind;
+
+    /** Last build recorded. Guarded by this. */
+    int lastBuild;
+    private boolean loaded;
+
+    ProjectStore(File file, byte[] magic, int version, String kind) {
+        this.file = file;
+        this.magic = magic;
+        this.version = version;
+        this.kind = kind;
+    }
+
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    synchronized void checkLoaded(AbstractProject<?, ?> project) {
+        if (loaded) {
+            return;
+        }
+        try {
+            if (file.exists()) {
+                load();
+            } else {
+                rebuild(project);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read " + file + ", rebuilding it", e);
+            rebuild(project);
+        }
+        loaded = true;
+    }
+
+    private void rebuild(AbstractProject<?, ?> project) {
+        clear();
+        lastBuild = 0;
+        for (int n : getRebuildBuilds(BuildIndex.get(project))) {
+            AbstractBuild<?, ?> b = project.getBuildByNumber(n);
+            SeleniumhqBuildAction a = b == null ? null : b.getAction(SeleniumhqBuildAction.class);
+            if (a != null) {
+                record(n, a.getResult());
+            }
+        }
+        save();
+    }
+
+    synchronized void load() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            byte[] m = new byte[magic.length];
+            in.readFully(m);
+            for (int i = 0; i < magic.length; i++) {
+                if (m[i] != magic[i]) {
+                    throw new IOException("Not a Selenium " + kind + " file " + file);
+                }
+            }
+            int v = in.readInt();
+            if (v > version) {
+                throw new IOException("Unsupported Selenium " + kind + " version " + v);
+            }
+            if (v < version) {
+                // the data is derived from the results, so it is simply rebuilt
+                throw new IOException("Outdated Selenium " + kind + " version " + v);
+            }
+            clear();
+            lastBuild = in.readInt();
+            read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    synchronized void save() {
+        try {
+            file.getParentFile().mkdirs();
+            File tmp = new File(file.getPath() + ".tmp");
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.write(magic);
+                out.writeInt(version);
+                out.writeInt(lastBuild);
+                write(out);
+            } finally {
+                out.close();
+            }
+            AtomicFiles.replace(tmp, file);
+        } catch (IOException e) {
+            // rebuilt when it cannot be read
+            logger.log(Level.WARNING, "Failed to save " + file, e);
+            file.delete();
+        }
+    }
+
+    /**
+     * @return the builds whose results are recorded when the file is rebuilt,
+     *         in ascending order
+     */
+    abstract int[] getRebuildBuilds(BuildIndex index);
+
+    /**
+     * Forgets everything recorded.
+     */
+    abstract void clear();
+
+    /**
+     * Records the result of build <tt>number</tt>. A build already recorded,
+     * or older than the last one recorded, is ignored.
+     *
+     * @return whether the build was recorded
+     */
+    abstract boolean record(int number, TestResult result);
+
+    /**
+     * Reads the content of the file after the header.
+     */
+    abstract void read(DataInputStream in) throws IOException;
+
+    /**
+     * Writes the content of the file after the header.
+     */
+    abstract void write(DataOutputStream out) throws IOException;
+}
@@ -0,0 +1,116 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.model.AbstractProject;
+
+import java.util.List;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Selenium health of one project, as shown by the {@link SeleniumhqDashboard}.
+ *
+ * <p>
+ * It is built from the counters of the last result and the per-project
+ * stores only, so no test result is loaded.
+ *
+ * @author Pascal Martin
+ */
+@ExportedBean(defaultVisibility = 2)
+public class ProjectSummary {
+
+    /** Suites and flaky tests kept for each project */
+    static final int MAX_ITEMS = 10;
+
+    private final String name;
+    private final String url;
+    private final int lastBuild;
+    private final int numTestPasses;
+    private final int numTestFailures;
+    private final long totalTime;
+    private final List<DurationStats> slowestSuites;
+    private final List<TestHistory> flakyTests;
+
+    ProjectSummary(String name, String url, int lastBuild, int numTestPasses, int numTestFailures, long totalTime,
+            List<DurationStats> slowestSuites, List<TestHistory> flakyTests) {
+        this.name = name;
+        this.url = url;
+        this.lastBuild = lastBuild;
+        this.numTestPasses = numTestPasses;
+        this.numTestFailures = numTestFailures;
+        this.totalTime = totalTime;
+        this.slowestSuites = slowestSuites;
+        this.flakyTests = flakyTests;
+    }
+
+    /**
+     * @return the summary of a project, or null if it has no result yet
+     */
+    static ProjectSummary of(AbstractProject<?, ?> project) {
+        SeleniumhqBuildAction a = SeleniumhqBuildAction.getPreviousResult(project, Integer.MAX_VALUE);
+        if (a == null) {
+            return null;
+        }
+        return new ProjectSummary(project.getFullDisplayName(), project.getUrl(), a.getOwner().getNumber(),
+                a.getNumTestPasses(), a.getNumTestFailures(), a.getTotalTime(),
+                DurationStore.get(project).getSlowestSuites(MAX_ITEMS),
+                FlakyTestStore.get(project).getFlakyTests(MAX_ITEMS));
+    }
+
+    @Exported
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the URL of the project, relative to the root of Hudson
+     */
+    @Exported
+    public String getUrl() {
+        return url;
+    }
+
+    @Exported
+    public int getLastBuild() {
+        return lastBuild;
+    }
+
+    @Exported
+    public int getNumTestPasses() {
+        return numTestPasses;
+    }
+
+    @Exported
+    public int getNumTestFailures() {
+        return numTestFailures;
+    }
+
+    public int getNumTestTotal() {
+        return numTestPasses + numTestFailures;
+    }
+
+    /**
+     * @return the share of passed tests of the last result, in percent
+     */
+    @Exported
+    public int getPassRate() {
+        int total = getNumTestTotal();
+        return total == 0 ? 100 : (int) (100L * numTestPasses / total);
+    }
+
+    /**
+     * @return the duration of the suites of the last result, in seconds
+     */
+    @Exported
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    public List<DurationStats> getSlowestSuites() {
+        return slowestSuites;
+    }
+
+    public List<TestHistory> getFlakyTests() {
+        return flakyTests;
+    }
+}
@@ -0,0 +1,165 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Logger;
+
+/**
+ * File of fixed-width records after a <tt>magic version</tt> header, behind
+ * the {@link TrendStore} and the {@link PhaseStore}.
+ *
+ * <p>
+ * Records are appended at the end of the file, and the whole file is
+ * rewritten through a temporary file to drop some of them. A record left
+ * partially written by a crash is ignored when reading, and cut off before
+ * the next append so that the records after it stay aligned. The callers
+ * synchronize the accesses.
+ *
+ * @author Pascal Martin
+ */
+final class RecordFile {
+
+    static final int HEADER_SIZE = 4 + 4;
+
+    private static final Logger logger = Logger.getLogger(RecordFile.class.getName());
+
+    private final File file;
+    private final byte[] magic;
+    private final int version;
+    private final int recordSize;
+    /** Kind of records, for the error messages */
+    private final String kind;
+
+    RecordFile(File file, byte[] magic, int version, int recordSize, String kind) {
+        this.file = file;
+        this.magic = magic;
+        this.version = version;
+        this.recordSize = recordSize;
+        this.kind = kind;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * @return a value that changes whenever the content of the file changes
+     */
+    String getVersion() {
+        return Long.toHexString(file.lastModified()) + Long.toHexString(file.length());
+    }
+
+    /**
+     * @return the offset of record <tt>i</tt> in the buffer returned by
+     *         {@link #read()}
+     */
+    int offset(int i) {
+        return HEADER_SIZE + i * recordSize;
+    }
+
+    /**
+     * @return the number of whole records in the buffer returned by
+     *         {@link #read()}
+     */
+    int count(ByteBuffer buffer) {
+        return (buffer.limit() - HEADER_SIZE) / recordSize;
+    }
+
+    /**
+     * Maps the file in memory, read only.
+     *
+     * @return the content of the file, or null if there is no record
+     */
+    ByteBuffer read() throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            long length = channel.size();
+            if (length < HEADER_SIZE) {
+                return null;
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            for (int i = 0; i < magic.length; i++) {
+                if (buffer.get(i) != magic[i]) {
+                    throw new IOException("Not a Selenium " + kind + " file " + file);
+                }
+            }
+            int v = buffer.getInt(magic.length);
+            if (v > version) {
+                throw new IOException("Unsupported Selenium " + kind + " version " + v);
+            }
+            return buffer;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Appends a record at the end of the file, creating it if needed.
+     *
+     * @param record
+     *            the record, ready to be read
+     */
+    void append(ByteBuffer record) throws IOException {
+        if (file.length() < HEADER_SIZE) {
+            rewrite(ByteBuffer.allocate(0));
+        }
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            long length = out.length();
+            long end = HEADER_SIZE + (length - HEADER_SIZE) / recordSize * recordSize;
+            if (length != end) {
+                logger.warning("Dropping " + (length - end) + " trailing bytes of " + file);
+                out.setLength(end);
+            }
+            FileChannel channel = out.getChannel();
+            channel.position(end);
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Replaces the content of the file.
+     *
+     * @param records
+     *            the records one after the other, ready to be read
+     */
+    void rewrite(ByteBuffer records) throws IOException {
+        file.getParentFile().mkdirs();
+        File tmp = new File(file.getPath() + ".tmp");
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(magic);
+        header.putInt(version);
+        header.flip();
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        try {
+            out.setLength(0);
+            FileChannel channel = out.getChannel();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (records.hasRemaining()) {
+                channel.write(records);
+            }
+        } finally {
+            out.close();
+        }
+        // a mapped file cannot be replaced on Windows until the mapping is collected
+        AtomicFiles.replace(tmp, file);
+    }
+}
@@ -0,0 +1,134 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.Util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Landing page of the archived Selenium reports.
+ *
+ * <p>
+ * It is written when the results are published, so that serving it is a
+ * single static read. It sums up each result file and each test, failures
+ * first, and links to the raw reports archived next to it.
+ * Once the results are complete, a single report replaces it, so that the
+ * report stays at the address where it has always been served.
+ *
+ * @author Pascal Martin
+ */
+public class ReportIndexPage {
+
+    static final String FILE_NAME = "index.html";
+
+    private static final String STYLE = "body, table { font-family: Verdana, Arial, sans-serif; font-size: 12px; }"
+            + " table { border-collapse: collapse; border: 1px solid #ccc; }"
+            + " th, td { padding: 0.2em 0.4em; border: 1px solid #ccc; text-align: left; }"
+            + " .status_passed { background-color: #ccffcc; } .status_failed { background-color: #ffcccc; }";
+
+    /**
+     * Writes the page.
+     * 
+     * @param result
+     *            published result
+     * @param reports
+     *            paths of the archived reports relative to the page, one per
+     *            suite of <tt>result</tt>
+     * @param complete
+     *            false while the suite is still running
+     */
+    public static void write(TestResult result, List<String> reports, boolean complete, Writer out)
+            throws IOException {
+        List<SuiteResult> suites = result.getSuites();
+        List<Integer> order = failuresFirst(suites);
+
+        out.write("<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\"/>"
+                + "<title>Selenium result</title><style type=\"text/css\">");
+        out.write(STYLE);
+        out.write("</style></head><body>\n<h2>Selenium Test Result" + (complete ? "" : " (running)") + "</h2>\n");
+        out.write("<p>" + result.getNumTestTotal() + " tests, " + result.getNumTestFailures() + " failures. "
+                + result.numCommandPasses() + " commands passed, " + result.numCommandFailures() + " failed, "
+                + result.numCommandErrors() + " errors.</p>\n");
+
+        out.write("<h3>Files</h3>\n<table><tr><th>File</th><th>Tests</th><th>Failures</th>"
+                + "<th>Command passes</th><th>Command failures</th><th>Command errors</th></tr>\n");
+        for (int i : order) {
+            SuiteResult suite = suites.get(i);
+            String report = i < reports.size() ? reports.get(i) : null;
+            out.write("<tr class=\"" + status(suite.getNumTestFailures() == 0) + "\"><td>");
+            writeLink(out, report, null, report == null ? "#" + i : getName(report));
+            out.write("</td><td>" + (suite.getNumTestPasses() + suite.getNumTestFailures()) + "</td><td>"
+                    + suite.getNumTestFailures() + "</td><td>" + suite.numCommandPasses() + "</td><td>"
+                    + suite.numCommandFailures() + "</td><td>" + suite.numCommandErrors() + "</td></tr>\n");
+        }
+        out.write("</table>\n");
+
+        out.write("<h3>Tests</h3>\n<table><tr><th>Test</th><th>File</th><th>Status</th></tr>\n");
+        for (boolean passed = false;; passed = true) {
+            for (int i : order) {
+                List<CaseResult> cases = suites.get(i).getCases();
+                String report = i < reports.size() ? reports.get(i) : null;
+                for (int j = 0; j < cases.size(); j++) {
+                    CaseResult c = cases.get(j);
+                    if (c.isPassed() != passed) {
+                        continue;
+                    }
+                    out.write("<tr class=\"" + status(passed) + "\"><td>");
+                    writeLink(out, report, "testresult" + j, c.getName());
+                    out.write("</td><td>" + (report == null ? "" : Util.escape(getName(report))) + "</td><td>"
+                            + (passed ? "passed" : "failed") + "</td></tr>\n");
+                }
+            }
+            if (passed) {
+                break;
+            }
+        }
+        out.write("</table>\n</body></html>\n");
+    }
+
+    /**
+     * @return the indexes of the suites, the failed ones first
+     */
+    private static List<Integer> failuresFirst(List<SuiteResult> suites) {
+        List<Integer> order = new ArrayList<Integer>(suites.size());
+        for (int i = 0; i < suites.size(); i++) {
+            if (suites.get(i).getNumTestFailures() > 0) {
+                order.add(i);
+            }
+        }
+        for (int i = 0; i < suites.size(); i++) {
+            if (suites.get(i).getNumTestFailures() == 0) {
+                order.add(i);
+            }
+        }
+        return order;
+    }
+
+    private static String status(boolean passed) {
+        return passed ? "status_passed" : "status_failed";
+    }
+
+    private static void writeLink(Writer out, String report, String anchor, String text) throws IOException {
+        if (report == null) {
+            out.write(Util.escape(text));
+            return;
+        }
+        StringBuilder href = new StringBuilder();
+        for (String segment : report.split("/")) {
+            if (href.length() > 0) {
+                href.append('/');
+            }
+            href.append(Util.rawEncode(segment));
+        }
+        if (anchor != null) {
+            href.append('#').append(anchor);
+        }
+        out.write("<a href=\"" + href + "\">" + Util.escape(text) + "</a>");
+    }
+
+    private static String getName(String report) {
+        return report.substring(report.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,146 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Streaming filter truncating the log sections of a Selenium result file.
+ *
+ * <p>
+ * Selenium writes the command log in <tt>&lt;pre&gt;</tt> sections after the
+ * result tables. Only the content of these sections is affected: the summary
+ * table and the test tables, including the failing command rows, are copied
+ * untouched. The file is processed one character at a time, so it is never
+ * loaded in memory.
+ *
+ * @author Pascal Martin
+ */
+public class ReportLogStripper {
+
+    private static final String OPEN_TAG = "<pre";
+    private static final String CLOSE_TAG = "</pre>";
+
+    /**
+     * Number of characters kept in each log section, 0 removes the content.
+     */
+    private final long maxLogSize;
+
+    private long removed;
+
+    public ReportLogStripper(long maxLogSize) {
+        this.maxLogSize = maxLogSize;
+    }
+
+    /**
+     * @return number of log characters removed by the last calls to
+     *         {@link #strip(Reader, Writer)}
+     */
+    public long getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Copies <tt>in</tt> to <tt>out</tt>, truncating the log sections.
+     * Neither stream is closed.
+     */
+    public void strip(Reader in, Writer out) throws IOException {
+        // outside of a log section
+        StringBuilder window = new StringBuilder();
+        boolean inOpenTag = false;
+        // inside a log section
+        boolean inLog = false;
+        StringBuilder pending = new StringBuilder();
+        long kept = 0;
+        long sectionRemoved = 0;
+
+        int c;
+        while ((c = in.read()) != -1) {
+            if (!inLog) {
+                out.write(c);
+                if (inOpenTag) {
+                    if (c == '>') {
+                        inOpenTag = false;
+                        inLog = true;
+                        kept = 0;
+                        sectionRemoved = 0;
+                    }
+                    continue;
+                }
+                if (window.length() == OPEN_TAG.length()) {
+                    // "<pre" has been seen, the tag name must end here
+                    if (c == '>') {
+                        inLog = true;
+                        kept = 0;
+                        sectionRemoved = 0;
+                    } else if (Character.isWhitespace(c)) {
+                        inOpenTag = true;
+                    }
+                    window.setLength(0);
+                    if (c == '<') {
+                        window.append('<');
+                    }
+                    continue;
+                }
+                window.append(Character.toLowerCase((char) c));
+                if (!OPEN_TAG.startsWith(window.toString())) {
+                    window.setLength(0);
+                    if (c == '<') {
+                        window.append('<');
+                    }
+                }
+                continue;
+            }
+
+            // inside a log section : look for the closing tag
+            if (c == '<' || pending.length() > 0) {
+                pending.append((char) c);
+                String p = pending.toString();
+                String tag = p.toLowerCase();
+                if (CLOSE_TAG.equals(tag)) {
+                    if (sectionRemoved > 0) {
+                        out.write("\n[... " + sectionRemoved + " characters of log removed ...]\n");
+                        removed += sectionRemoved;
+                    }
+                    out.write(p);
+                    pending.setLength(0);
+                    inLog = false;
+                    continue;
+                }
+                if (CLOSE_TAG.startsWith(tag)) {
+                    continue;
+                }
+                // not the closing tag : the pending characters are log content
+                pending.setLength(0);
+                for (int i = 0; i < p.length() - 1; i++) {
+                    if (kept < maxLogSize) {
+                        out.write(p.charAt(i));
+                        kept++;
+                    } else {
+                        sectionRemoved++;
+                    }
+                }
+                if (c == '<') {
+                    pending.append('<');
+                    continue;
+                }
+            }
+            if (kept < maxLogSize) {
+                out.write(c);
+                kept++;
+            } else {
+                sectionRemoved++;
+            }
+        }
+
+        // unterminated log section
+        if (inLog) {
+            out.write(pending.toString());
+            if (sectionRemoved > 0) {
+                out.write("\n[... " + sectionRemoved + " characters of log removed ...]\n");
+                removed += sectionRemoved;
+            }
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,216 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * Positions of the test sections in a raw Selenium report.
+ *
+ * <p>
+ * The report lists the commands of each test after an
+ * <tt>&lt;a name="testresultN"&gt;</tt> anchor. One sequential scan records
+ * where each section starts, and the index is saved next to the build so that
+ * the commands of a single test are then read with one seek, without parsing
+ * the whole report again.
+ *
+ * <p>
+ * Layout : <tt>"SHQO" reportLength reportLastModified count (anchor start)*</tt>.
+ * The index is rebuilt when the report no longer matches its length or date.
+ *
+ * @author Pascal Martin
+ */
+public class ReportOffsetIndex {
+
+    private static final byte[] MAGIC = { 'S', 'H', 'Q', 'O' };
+
+    private static final byte[] ANCHOR = "name=\"testresult".getBytes();
+
+    /** Largest section returned by {@link #readSection} */
+    static final int MAX_SECTION_BYTES = 1024 * 1024;
+
+    private final long reportLength;
+    private final long reportLastModified;
+    /** Anchor numbers and section starts, in the order of the report */
+    private final int[] anchors;
+    private final long[] starts;
+
+    ReportOffsetIndex(long reportLength, long reportLastModified, int[] anchors, long[] starts) {
+        this.reportLength = reportLength;
+        this.reportLastModified = reportLastModified;
+        this.anchors = anchors;
+        this.starts = starts;
+    }
+
+    /**
+     * Loads the index of <tt>report</tt> from <tt>indexFile</tt>, scanning the
+     * report again if the index is missing or out of date.
+     */
+    public static synchronized ReportOffsetIndex get(File report, File indexFile) throws IOException {
+        if (indexFile.exists()) {
+            try {
+                ReportOffsetIndex index = load(indexFile);
+                if (index.reportLength == report.length() && index.reportLastModified == report.lastModified()) {
+                    return index;
+                }
+            } catch (IOException e) {
+                // rebuilt below
+            }
+        }
+        InputStream in = new FileInputStream(report);
+        ReportOffsetIndex index;
+        try {
+            index = scan(in, report.length(), report.lastModified());
+        } finally {
+            in.close();
+        }
+        index.save(indexFile);
+        return index;
+    }
+
+    /**
+     * Finds the anchors in a report.
+     */
+    static ReportOffsetIndex scan(InputStream input, long length, long lastModified) throws IOException {
+        InputStream in = new BufferedInputStream(input);
+        int[] anchors = new int[16];
+        long[] starts = new long[16];
+        int count = 0;
+
+        long pos = 0;
+        long tagStart = 0;
+        int matched = 0;
+        int c;
+        while ((c = in.read()) != -1) {
+            pos++;
+            if (c == '<') {
+                tagStart = pos - 1;
+            }
+            int lower = c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+            if (lower == ANCHOR[matched]) {
+                matched++;
+            } else {
+                // the first byte of the anchor does not occur again in it
+                matched = lower == ANCHOR[0] ? 1 : 0;
+            }
+            if (matched == ANCHOR.length) {
+                matched = 0;
+                int number = 0;
+                boolean digits = false;
+                while ((c = in.read()) >= '0' && c <= '9') {
+                    pos++;
+                    number = number * 10 + (c - '0');
+                    digits = true;
+                }
+                if (c != -1) {
+                    pos++;
+                }
+                if (!digits) {
+                    continue;
+                }
+                if (count == anchors.length) {
+                    int[] a = new int[count * 2];
+                    System.arraycopy(anchors, 0, a, 0, count);
+                    anchors = a;
+                    long[] s = new long[count * 2];
+                    System.arraycopy(starts, 0, s, 0, count);
+                    starts = s;
+                }
+                anchors[count] = number;
+                starts[count] = tagStart;
+                count++;
+            }
+        }
+
+        int[] a = new int[count];
+        System.arraycopy(anchors, 0, a, 0, count);
+        long[] s = new long[count];
+        System.arraycopy(starts, 0, s, 0, count);
+        return new ReportOffsetIndex(length, lastModified, a, s);
+    }
+
+    static ReportOffsetIndex load(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new IOException("Not a Selenium offset index " + file);
+                }
+            }
+            long length = in.readLong();
+            long lastModified = in.readLong();
+            int count = in.readInt();
+            int[] anchors = new int[count];
+            long[] starts = new long[count];
+            for (int i = 0; i < count; i++) {
+                anchors[i] = in.readInt();
+                starts[i] = in.readLong();
+            }
+            return new ReportOffsetIndex(length, lastModified, anchors, starts);
+        } finally {
+            in.close();
+        }
+    }
+
+    void save(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.write(MAGIC);
+            out.writeLong(reportLength);
+            out.writeLong(reportLastModified);
+            out.writeInt(anchors.length);
+            for (int i = 0; i < anchors.length; i++) {
+                out.writeInt(anchors[i]);
+                out.writeLong(starts[i]);
+            }
+        } finally {
+            out.close();
+        }
+        AtomicFiles.replace(tmp, file);
+    }
+
+    /**
+     * @return the number of test sections found
+     */
+    public int size() {
+        return anchors.length;
+    }
+
+    /**
+     * Reads the section of test <tt>number</tt>, i.e. the bytes from its
+     * anchor up to the next one, truncated to {@link #MAX_SECTION_BYTES}.
+     * 
+     * @return the raw bytes of the section, or null if the report has no such
+     *         test
+     */
+    public byte[] readSection(File report, int number) throws IOException {
+        for (int i = 0; i < anchors.length; i++) {
+            if (anchors[i] != number) {
+                continue;
+            }
+            long end = i + 1 < starts.length ? starts[i + 1] : reportLength;
+            int length = (int) Math.min(end - starts[i], MAX_SECTION_BYTES);
+            byte[] bytes = new byte[length];
+            RandomAccessFile in = new RandomAccessFile(report, "r");
+            try {
+                in.seek(starts[i]);
+                in.readFully(bytes);
+            } finally {
+                in.close();
+            }
+            return bytes;
+        }
+        return null;
+    }
+}
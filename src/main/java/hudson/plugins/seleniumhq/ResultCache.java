@@ -0,0 +1,246 @@
+package hudson.plugins.seleniumhq;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.ObjectName;
+
+/**
+ * Cache of the {@link TestResult}s loaded from disk, shared by all builds.
+ *
+ * <p>
+ * The most recently used results are held strongly, up to an estimated size
+ * of {@link #MAX_BYTES}. Results evicted from there are kept through
+ * {@link SoftReference}s, so they survive until the heap is actually short.
+ * Concurrent requests for a result that is not cached wait for a single load.
+ * The statistics are registered in JMX as
+ * <tt>hudson.plugins.seleniumhq:type=ResultCache</tt>.
+ *
+ * @author Pascal Martin
+ */
+public class ResultCache implements ResultCacheMBean {
+
+    /**
+     * Estimated size of the results held strongly, 32MB by default.
+     */
+    public static final long MAX_BYTES = Long.getLong(ResultCache.class.getName() + ".maxBytes", 32L * 1024 * 1024);
+
+    private static final ResultCache INSTANCE = new ResultCache(MAX_BYTES);
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+                    new ObjectName("hudson.plugins.seleniumhq:type=ResultCache"));
+        } catch (Exception e) {
+            Logger.getLogger(ResultCache.class.getName()).log(Level.WARNING, "Failed to register the result cache MBean", e);
+        }
+    }
+
+    public static ResultCache get() {
+        return INSTANCE;
+    }
+
+    private final long maxBytes;
+
+    /** Strongly held entries, least recently used first. Guarded by this. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long bytes;
+
+    /** Entries evicted from {@link #entries}. Guarded by this. */
+    private final Map<String, SoftEntry> overflow = new HashMap<String, SoftEntry>();
+    private final ReferenceQueue<TestResult> queue = new ReferenceQueue<TestResult>();
+
+    /** Loads in progress */
+    private final ConcurrentMap<String, FutureTask<TestResult>> loading = new ConcurrentHashMap<String, FutureTask<TestResult>>();
+
+    /** Statistics. Guarded by this. */
+    private long hits;
+    private long softHits;
+    private long misses;
+    private long evictions;
+
+    ResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached result for <tt>key</tt>, or loads it with
+     * <tt>loader</tt>. A null result is returned but not cached, so that the
+     * next call loads it again.
+     */
+    public TestResult get(String key, Callable<TestResult> loader) {
+        TestResult r = lookup(key);
+        if (r != null) {
+            return r;
+        }
+
+        FutureTask<TestResult> task = new FutureTask<TestResult>(loader);
+        FutureTask<TestResult> running = loading.putIfAbsent(key, task);
+        if (running == null) {
+            synchronized (this) {
+                misses++;
+            }
+            running = task;
+            try {
+                task.run();
+                r = task.get();
+                if (r != null) {
+                    put(key, r);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e.getMessage());
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to load " + key + " : " + e.getCause());
+            } finally {
+                loading.remove(key, task);
+            }
+            return r;
+        }
+
+        // loaded by another thread
+        synchronized (this) {
+            hits++;
+        }
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e.getMessage());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to load " + key + " : " + e.getCause());
+        }
+    }
+
+    /**
+     * Stores or replaces the result for <tt>key</tt>.
+     */
+    public synchronized void put(String key, TestResult result) {
+        expunge();
+        overflow.remove(key);
+        Entry old = entries.remove(key);
+        if (old != null) {
+            bytes -= old.size;
+        }
+        Entry e = new Entry(result);
+        entries.put(key, e);
+        bytes += e.size;
+
+        // evict the least recently used entries, keeping at least the new one
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && entries.size() > 1) {
+            Map.Entry<String, Entry> eldest = it.next();
+            it.remove();
+            bytes -= eldest.getValue().size;
+            overflow.put(eldest.getKey(), new SoftEntry(eldest.getKey(), eldest.getValue().result, queue));
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops the result for <tt>key</tt>.
+     */
+    public synchronized void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            bytes -= old.size;
+        }
+        overflow.remove(key);
+    }
+
+    private synchronized TestResult lookup(String key) {
+        Entry e = entries.get(key);
+        if (e != null) {
+            hits++;
+            return e.result;
+        }
+        SoftEntry s = overflow.get(key);
+        if (s != null) {
+            TestResult r = s.get();
+            if (r != null) {
+                softHits++;
+                // promote back to the strongly held entries
+                put(key, r);
+                return r;
+            }
+            overflow.remove(key);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the soft entries cleared by the garbage collector.
+     */
+    private void expunge() {
+        SoftEntry s;
+        while ((s = (SoftEntry) queue.poll()) != null) {
+            if (overflow.get(s.key) == s) {
+                overflow.remove(s.key);
+            }
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getSoftHits() {
+        return softHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public synchronized int getSoftSize() {
+        expunge();
+        return overflow.size();
+    }
+
+    private static final class Entry {
+        final TestResult result;
+        final long size;
+
+        Entry(TestResult result) {
+            this.result = result;
+            this.size = result.estimateSize();
+        }
+    }
+
+    private static final class SoftEntry extends SoftReference<TestResult> {
+        final String key;
+
+        SoftEntry(String key, TestResult result, ReferenceQueue<TestResult> queue) {
+            super(result, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package hudson.plugins.seleniumhq;
+
+/**
+ * JMX view of the {@link ResultCache} statistics.
+ *
+ * @author Pascal Martin
+ */
+public interface ResultCacheMBean {
+
+    /** Requests served by a strongly held result */
+    long getHits();
+
+    /** Requests served by a result kept through a soft reference */
+    long getSoftHits();
+
+    /** Requests that loaded the result from disk */
+    long getMisses();
+
+    /** Results moved from the strongly held entries to the soft ones */
+    long getEvictions();
+
+    /** Estimated size of the strongly held results */
+    long getBytes();
+
+    long getMaxBytes();
+
+    /** Number of strongly held results */
+    int getSize();
+
+    /** Number of results kept through soft references */
+    int getSoftSize();
+}
@@ -0,0 +1,160 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Differences between the tests of two builds.
+ *
+ * <p>
+ * Both results are turned into arrays of tests sorted by name, see
+ * {@link FlakyTestStore#getTestName}, then compared by a single merge, so a
+ * diff costs a sort of each side even for very large suites.
+ *
+ * @author Pascal Martin
+ */
+@ExportedBean
+public class ResultDiff {
+
+    private final AbstractBuild<?, ?> owner;
+    private final int baseBuild;
+
+    private final List<String> newlyFailing = new ArrayList<String>();
+    private final List<String> newlyPassing = new ArrayList<String>();
+    private final List<String> stillFailing = new ArrayList<String>();
+    private final List<String> added = new ArrayList<String>();
+    private final List<String> removed = new ArrayList<String>();
+    private int stillPassing;
+
+    /**
+     * @param owner
+     *            build of <tt>target</tt>, for the view
+     * @param baseBuild
+     *            number of the build of <tt>base</tt>
+     */
+    public ResultDiff(AbstractBuild<?, ?> owner, int baseBuild, TestResult base, TestResult target) {
+        this.owner = owner;
+        this.baseBuild = baseBuild;
+
+        Test[] before = sort(base);
+        Test[] after = sort(target);
+        int i = 0, j = 0;
+        while (i < before.length || j < after.length) {
+            int c = i == before.length ? 1 : (j == after.length ? -1 : before[i].name.compareTo(after[j].name));
+            if (c < 0) {
+                removed.add(before[i++].name);
+            } else if (c > 0) {
+                added.add(after[j++].name);
+            } else {
+                Test b = before[i++];
+                Test a = after[j++];
+                if (a.passed) {
+                    if (b.passed) {
+                        stillPassing++;
+                    } else {
+                        newlyPassing.add(a.name);
+                    }
+                } else {
+                    (b.passed ? newlyFailing : stillFailing).add(a.name);
+                }
+            }
+        }
+    }
+
+    private static Test[] sort(TestResult result) {
+        List<SuiteResult> suites = result.getSuites();
+        int count = 0;
+        for (SuiteResult s : suites) {
+            count += s.getCases().size();
+        }
+        Test[] tests = new Test[count];
+        List<String> suiteNames = result.getSuiteNames();
+        int n = 0;
+        for (int i = 0; i < suites.size(); i++) {
+            for (CaseResult c : suites.get(i).getCases()) {
+                tests[n++] = new Test(FlakyTestStore.getTestName(suiteNames.get(i), c), c.isPassed());
+            }
+        }
+        Arrays.sort(tests);
+        return tests;
+    }
+
+    public AbstractBuild<?, ?> getOwner() {
+        return owner;
+    }
+
+    /**
+     * @return the number of the build compared to
+     */
+    @Exported
+    public int getBaseBuild() {
+        return baseBuild;
+    }
+
+    /**
+     * @return the tests that passed in the base build and fail now
+     */
+    @Exported
+    public List<String> getNewlyFailing() {
+        return newlyFailing;
+    }
+
+    /**
+     * @return the tests that failed in the base build and pass now
+     */
+    @Exported
+    public List<String> getNewlyPassing() {
+        return newlyPassing;
+    }
+
+    @Exported
+    public List<String> getStillFailing() {
+        return stillFailing;
+    }
+
+    /**
+     * @return the tests that did not run in the base build
+     */
+    @Exported
+    public List<String> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return the tests of the base build that did not run
+     */
+    @Exported
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    @Exported
+    public int getStillPassing() {
+        return stillPassing;
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    private static final class Test implements Comparable<Test> {
+        final String name;
+        final boolean passed;
+
+        Test(String name, boolean passed) {
+            this.name = name;
+            this.passed = passed;
+        }
+
+        public int compareTo(Test o) {
+            return name.compareTo(o.name);
+        }
+    }
+}
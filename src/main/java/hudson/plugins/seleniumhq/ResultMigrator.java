@@ -0,0 +1,58 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Hudson;
+import hudson.model.TaskListener;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Converts in the background the <tt>seleniumhqResult.xml</tt> files of old
+ * builds to the binary format of {@link TestResultStore}.
+ *
+ * <p>
+ * Build directories are scanned directly, so builds without a legacy file are
+ * never loaded. Once everything is converted a run only costs a directory
+ * listing per project.
+ *
+ * @author Pascal Martin
+ */
+@Extension
+public class ResultMigrator extends AsyncPeriodicWork {
+
+    public ResultMigrator() {
+        super("Selenium result migration");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return DAY;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        int converted = 0;
+        for (AbstractProject<?, ?> project : Hudson.getInstance().getAllItems(AbstractProject.class)) {
+            File[] buildDirs = new File(project.getRootDir(), "builds").listFiles();
+            if (buildDirs == null) {
+                continue;
+            }
+            for (File dir : buildDirs) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                try {
+                    if (TestResultStore.migrate(dir)) {
+                        converted++;
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace(listener.error("Failed to convert the Selenium result in " + dir));
+                }
+            }
+        }
+        listener.getLogger().println("Converted " + converted + " Selenium result(s)");
+    }
+}
@@ -0,0 +1,190 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.FilePath;
+import hudson.model.AbstractProject;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Result files of the passing Selenium runs of a project, by run key, so that
+ * the {@link SeleniumhqBuilder} can skip a run whose inputs did not change.
+ *
+ * <p>
+ * The key is a digest of everything the run depends on, see
+ * {@link #key(String, String, String, String)}. Each entry is the result file
+ * copied to <tt>run-cache/&lt;key&gt;-&lt;build&gt;.html</tt> in the project
+ * data directory. Only the {@link #MAX_ENTRIES} most recent entries are kept.
+ *
+ * @author Pascal Martin
+ */
+public class RunCache {
+
+    static final String DIR_NAME = "run-cache";
+
+    /** Number of results kept per project */
+    static final int MAX_ENTRIES = Integer.getInteger(RunCache.class.getName() + ".maxEntries", 10);
+
+    private static final Logger logger = Logger.getLogger(RunCache.class.getName());
+
+    private static final ConcurrentMap<String, RunCache> CACHES = new ConcurrentHashMap<String, RunCache>();
+
+    public static RunCache get(AbstractProject<?, ?> project) {
+        String key = project.getRootDir().getPath();
+        RunCache cache = CACHES.get(key);
+        if (cache == null) {
+            cache = new RunCache(new File(SeleniumhqPublisher.getSeleniumDataDir(project), DIR_NAME), MAX_ENTRIES);
+            RunCache existing = CACHES.putIfAbsent(key, cache);
+            if (existing != null) {
+                cache = existing;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * @param suiteFingerprint
+     *            see {@link SuiteFingerprint}
+     * @param other
+     *            the other arguments of the Selenium server
+     * @param appVersion
+     *            version of the application under test, as given by the user
+     */
+    public static String key(String suiteFingerprint, String startURL, String browser, String other,
+            String appVersion) {
+        return SuiteFingerprint.hash(suiteFingerprint, startURL, browser, other, appVersion);
+    }
+
+    /**
+     * A cached result file.
+     */
+    public static final class Entry {
+        final File file;
+        final int build;
+
+        Entry(File file, int build) {
+            this.file = file;
+            this.build = build;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return the build that ran the suite
+         */
+        public int getBuild() {
+            return build;
+        }
+    }
+
+    private final File dir;
+    private final int maxEntries;
+
+    RunCache(File dir, int maxEntries) {
+        this.dir = dir;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the last result stored for <tt>key</tt>, or null
+     */
+    public synchronized Entry lookup(String key) {
+        Entry r = null;
+        for (File f : list(key + "-")) {
+            try {
+                String name = f.getName();
+                int build = Integer.parseInt(name.substring(key.length() + 1, name.length() - 5));
+                if (r == null || build > r.build) {
+                    r = new Entry(f, build);
+                }
+            } catch (NumberFormatException e) {
+                // not an entry
+            }
+        }
+        if (r != null) {
+            // most recently used, for the pruning
+            r.file.setLastModified(System.currentTimeMillis());
+        }
+        return r;
+    }
+
+    /**
+     * Stores the result file of a run if every test passed.
+     *
+     * @return true if the result was stored
+     */
+    public boolean store(String key, int build, FilePath resultFile) throws IOException, InterruptedException {
+        dir.mkdirs();
+        File tmp = new File(dir, key + "-" + build + ".tmp");
+        resultFile.copyTo(new FilePath(tmp));
+        if (!isPassing(tmp)) {
+            tmp.delete();
+            return false;
+        }
+        synchronized (this) {
+            File target = new File(dir, key + "-" + build + ".html");
+            try {
+                AtomicFiles.replace(tmp, target);
+            } catch (IOException e) {
+                tmp.delete();
+                throw e;
+            }
+            prune();
+        }
+        return true;
+    }
+
+    private static boolean isPassing(File report) throws IOException {
+        InputStream in = new FileInputStream(report);
+        try {
+            SuiteResult r = SuiteResult.parse(in);
+            return r.getNumTestFailures() == 0 && r.numCommandErrors() == 0 && r.getNumTestPasses() > 0;
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.log(Level.FINE, "Not a Selenium report " + report, e);
+            return false;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries above {@link #maxEntries}.
+     */
+    private void prune() {
+        File[] files = list("");
+        if (files.length <= maxEntries) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File a, File b) {
+                long d = b.lastModified() - a.lastModified();
+                return d > 0 ? 1 : (d < 0 ? -1 : 0);
+            }
+        });
+        for (int i = maxEntries; i < files.length; i++) {
+            files[i].delete();
+        }
+    }
+
+    private File[] list(final String prefix) {
+        File[] files = dir.listFiles(new FileFilter() {
+            public boolean accept(File f) {
+                return f.getName().startsWith(prefix) && f.getName().endsWith(".html");
+            }
+        });
+        return files == null ? new File[0] : files;
+    }
+}
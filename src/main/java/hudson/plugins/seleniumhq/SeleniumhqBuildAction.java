@@ -1,52 +1,192 @@
 package hudson.plugins.seleniumhq;
 
 
-import hudson.XmlFile;
+import hudson.Util;
 import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
 import hudson.model.Action;
+import hudson.model.Api;
 import hudson.model.BuildListener;
 import hudson.model.Result;
-import hudson.util.XStream2;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
-import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.thoughtworks.xstream.XStream;
+import javax.servlet.ServletException;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
 
 /**
  * 
  * @author Pascal Martin
  *
  */
+@ExportedBean
 public class SeleniumhqBuildAction implements Action, Serializable { 
 
-	private transient WeakReference<TestResult> result;
-	
 	private static final long serialVersionUID = 1L;
 	
 	public final AbstractBuild<?,?> owner;
+
+	/**
+	 * Headline numbers of the result, persisted with the build so that the
+	 * summary and the trend graph never load the {@link TestResult}.
+	 * False for builds recorded by older versions, until they are filled.
+	 */
+	private boolean hasSummary;
+	private int numTestPasses;
+	private int numTestFailures;
+	private int numCommandPasses;
+	private int numCommandFailures;
+	private int numCommandErrors;
+	/** Duration of the suites in seconds, 0 when unknown */
+	private long totalTime;
+
+	/**
+	 * Tests of this build found flaky at publication, see {@link FlakyTestStore}.
+	 */
+	private List<String> flakyTests;
+
+	/**
+	 * Suites found slower than usual at publication, see {@link DurationStore}.
+	 */
+	private List<Slowdown> slowdowns;
+
+	/**
+	 * Time spent in each phase of the build, see {@link PhaseStore}. Null for
+	 * builds recorded by older versions.
+	 */
+	private PhaseTimings phases;
 	
 	private static final Logger logger = Logger.getLogger(SeleniumhqBuildAction.class.getName());
 			
     public SeleniumhqBuildAction(AbstractBuild<?,?> owner, TestResult result, BuildListener listener) {
         this.owner = owner;
+        setSummary(result);
         
         // persist the data
         try {
-            getDataFile().write(result);
+            TestResultStore.save(owner.getRootDir(), result);
+            ResultCache.get().put(getCacheKey(), result);
         } catch (IOException e) {
             e.printStackTrace(listener.fatalError("Failed to save the Selenium test result"));
         }
     }
+
+    /**
+     * Attaches this action to its build, then adds the build to the
+     * {@link BuildIndex}, so that the index never lists a build without its
+     * action.
+     */
+    void attach() {
+        owner.getActions().add(this);
+        BuildIndex.get(owner.getProject()).add(owner.getNumber());
+    }
+    
+    /**
+     * Adds suites published while the build is still running, and persists
+     * the merged result.
+     *
+     * <p>
+     * The result being shown is never modified : the merged copy replaces it
+     * in the {@link ResultCache}, whose lock publishes it to the threads
+     * serving the requests.
+     */
+    public synchronized void addResult(TestResult partial, BuildListener listener) {
+        TestResult r = getResult().merge(partial);
+        setSummary(r);
+        ResultCache.get().put(getCacheKey(), r);
+        try {
+            TestResultStore.save(owner.getRootDir(), r);
+        } catch (IOException e) {
+            e.printStackTrace(listener.error("Failed to save the Selenium test result"));
+        }
+    }
     
-    private XmlFile getDataFile() {
-        return new XmlFile(XSTREAM,new File(owner.getRootDir(), "seleniumhqResult.xml"));
+    private void setSummary(TestResult r) {
+        numTestPasses = r.getNumTestPasses();
+        numTestFailures = r.getNumTestFailures();
+        numCommandPasses = r.numCommandPasses();
+        numCommandFailures = r.numCommandFailures();
+        numCommandErrors = r.numCommandErrors();
+        totalTime = r.getTotalTime();
+        hasSummary = true;
     }
-	
+
+    /**
+     * Fills the summary of a build recorded by an older version, and saves it
+     * so that the result is loaded only once.
+     */
+    private synchronized void checkSummary() {
+        if (hasSummary) {
+            return;
+        }
+        setSummary(getResult());
+        if (!owner.isBuilding()) {
+            try {
+                owner.save();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to save the Selenium summary of "+owner,e);
+            }
+        }
+    }
+
+    @Exported
+    public int getNumTestPasses() {
+        checkSummary();
+        return numTestPasses;
+    }
+
+    @Exported
+    public int getNumTestFailures() {
+        checkSummary();
+        return numTestFailures;
+    }
+
+    @Exported
+    public int getNumTestTotal() {
+        checkSummary();
+        return numTestPasses + numTestFailures;
+    }
+
+    @Exported
+    public int getNumCommandPasses() {
+        checkSummary();
+        return numCommandPasses;
+    }
+
+    @Exported
+    public int getNumCommandFailures() {
+        checkSummary();
+        return numCommandFailures;
+    }
+
+    @Exported
+    public int getNumCommandErrors() {
+        checkSummary();
+        return numCommandErrors;
+    }
+
+    /**
+     * @return the duration of the suites in seconds, 0 when unknown
+     */
+    @Exported
+    public long getTotalTime() {
+        checkSummary();
+        return totalTime;
+    }
+
     public Object getTarget() {
         return getResult();  
     }
@@ -67,49 +207,263 @@ public class SeleniumhqBuildAction implements Action, Serializable {
 		return owner;
 	}
 
-	public synchronized TestResult getResult() {
-        TestResult r;
-        if(result==null) {
-            r = load();
-            result = new WeakReference<TestResult>(r);
+	/**
+	 * Gets the detailed result, through the {@link ResultCache}. An empty
+	 * result is returned, and not cached, when it cannot be loaded.
+	 */
+	public TestResult getResult() {
+        TestResult r = ResultCache.get().get(getCacheKey(), new Callable<TestResult>() {
+            public TestResult call() {
+                return load();
+            }
+        });
+        return r != null ? r : new TestResult();
+    }
+
+    /**
+     * @return the tests of this build that were flaky when it was published
+     */
+    @Exported
+    public List<String> getFlakyTests() {
+        return flakyTests == null ? Collections.<String>emptyList() : flakyTests;
+    }
+
+    /**
+     * @return the suites of this build that ran slower than usual
+     */
+    @Exported
+    public List<Slowdown> getSlowdowns() {
+        return slowdowns == null ? Collections.<Slowdown>emptyList() : slowdowns;
+    }
+
+    void setSlowdowns(List<Slowdown> slowdowns) {
+        this.slowdowns = slowdowns.isEmpty() ? null : new ArrayList<Slowdown>(slowdowns);
+    }
+
+    /**
+     * @return the time spent in each phase of the build, or null if unknown
+     */
+    @Exported
+    public PhaseTimings getPhaseTimings() {
+        return phases;
+    }
+
+    void setPhaseTimings(PhaseTimings phases) {
+        this.phases = phases;
+    }
+
+    /**
+     * Records the tests of this build that are flaky according to the
+     * {@link FlakyTestStore} of the project.
+     */
+    void updateFlakyTests(FlakyTestStore store) {
+        TestResult r = getResult();
+        List<String> flaky = new ArrayList<String>();
+        List<String> suiteNames = r.getSuiteNames();
+        for (int i = 0; i < r.getSuites().size(); i++) {
+            for (CaseResult c : r.getSuites().get(i).getCases()) {
+                TestHistory h = store.getHistory(FlakyTestStore.getTestName(suiteNames.get(i), c));
+                if (h != null && h.isFlaky()) {
+                    flaky.add(h.getName());
+                }
+            }
+        }
+        flakyTests = flaky;
+    }
+
+    /**
+     * Remote API of the summary. It is served from the counters stored with
+     * the build, the tests are paged through <tt>testPage/api</tt>, see
+     * {@link #getDynamic}.
+     */
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    /**
+     * Serves <tt>testPage</tt>, the page of the tests selected by the request
+     * parameters, see {@link #getCasePage(StaplerRequest)}, and
+     * <tt>diff</tt>, the comparison with the build given by the
+     * <tt>base</tt> request parameter, see {@link #createDiff(String)}.
+     */
+    public Object getDynamic(String token, StaplerRequest req, StaplerResponse rsp) {
+        if ("testPage".equals(token)) {
+            return getCasePage(req);
+        }
+        if ("diff".equals(token)) {
+            return createDiff(Util.fixEmptyAndTrim(req.getParameter("base")));
+        }
+        return null;
+    }
+
+    /**
+     * Compares this build with build <tt>base</tt>, by default the last one
+     * where every test passed, or else the previous one.
+     *
+     * @param base
+     *            number of the build to compare to, or null
+     * @return the differences, or null if there is no build to compare to
+     */
+    public ResultDiff createDiff(String base) {
+        SeleniumhqBuildAction other = null;
+        if (base != null) {
+            try {
+                AbstractBuild<?, ?> b = owner.getProject().getBuildByNumber(Integer.parseInt(base));
+                other = b == null ? null : b.getAction(SeleniumhqBuildAction.class);
+            } catch (NumberFormatException e) {
+                // not found
+            }
         } else {
-            r = result.get();
+            other = getLastPassingResult();
+            if (other == null) {
+                other = getPreviousResult();
+            }
+        }
+        if (other == null) {
+            return null;
+        }
+        return new ResultDiff(owner, other.owner.getNumber(), other.getResult(), getResult());
+    }
+
+    /**
+     * Looks the build up in the {@link TrendStore}, so that only that build
+     * is loaded, even when no build ever passed.
+     *
+     * @return the last result before this one without any failing test, or
+     *         null
+     */
+    public SeleniumhqBuildAction getLastPassingResult() {
+        List<TrendRecord> records;
+        try {
+            records = TrendStore.get(owner.getProject()).read(0, owner.getNumber() - 1);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to read the Selenium trend of "+owner.getProject(),e);
+            return null;
         }
-        if(r==null) {
-            r = load();
-            result = new WeakReference<TestResult>(r);
+        for (int i = records.size() - 1; i >= 0; i--) {
+            TrendRecord r = records.get(i);
+            if (r.getNumTestFailures() == 0 && r.getNumTestPasses() > 0) {
+                AbstractBuild<?, ?> b = owner.getProject().getBuildByNumber(r.getNumber());
+                SeleniumhqBuildAction a = b == null ? null : b.getAction(SeleniumhqBuildAction.class);
+                if (a != null) {
+                    return a;
+                }
+            }
         }
-        return r;
+        return null;
+    }
+
+    /**
+     * Gets a page of the test browser, selected by the <tt>status</tt>,
+     * <tt>name</tt> and <tt>page</tt> request parameters.
+     */
+    public CasePage getCasePage(StaplerRequest req) {
+        int page = 0;
+        try {
+            page = Integer.parseInt(req.getParameter("page"));
+        } catch (NumberFormatException e) {
+            // first page
+        }
+        return new CasePage(getResult(), Util.fixEmpty(req.getParameter("status")),
+                Util.fixEmptyAndTrim(req.getParameter("name")), page);
+    }
+
+    /**
+     * Serves the commands of one test, read from the raw report through a
+     * {@link ReportOffsetIndex}.
+     */
+    public void doCase(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException {
+        int suite, index;
+        try {
+            suite = Integer.parseInt(req.getParameter("suite"));
+            index = Integer.parseInt(req.getParameter("index"));
+        } catch (NumberFormatException e) {
+            rsp.sendError(StaplerResponse.SC_BAD_REQUEST);
+            return;
+        }
+        File report = suite >= 0 && suite < getResult().getSuites().size() ? getReportFile(suite) : null;
+        byte[] section = null;
+        if (report != null) {
+            File indexFile = new File(owner.getRootDir(), "seleniumhq-offsets/" + suite + ".idx");
+            section = ReportOffsetIndex.get(report, indexFile).readSection(report, index);
+        }
+        if (section == null) {
+            rsp.sendError(StaplerResponse.SC_NOT_FOUND, "The report of this test is not available");
+            return;
+        }
+        rsp.setContentType("text/html");
+        rsp.setContentLength(section.length);
+        OutputStream output = rsp.getOutputStream();
+        output.write(section);
+        output.close();
+    }
+
+    /**
+     * Finds the raw report of a suite : the copy archived as an artifact of
+     * the build, or else the copy in the project report directory when this
+     * build is the last one published.
+     * 
+     * @return the report, or null if none is left
+     */
+    File getReportFile(int suite) {
+        TestResult r = getResult();
+        String remote = r.getFiles().get(suite).replace('\\', '/');
+        for (String file : r.resultFiles) {
+            String rel = file.replace('\\', '/');
+            if (remote.endsWith("/" + rel)) {
+                File artifact = new File(owner.getArtifactsDir(), rel);
+                if (artifact.isFile()) {
+                    return artifact;
+                }
+            }
+        }
+        if (BuildIndex.get(owner.getProject()).last() == owner.getNumber()) {
+            File archived = new File(SeleniumhqPublisher.getSeleniumReportDir(owner.getProject()),
+                    suite + "/" + remote.substring(remote.lastIndexOf('/') + 1));
+            if (archived.isFile()) {
+                return archived;
+            }
+        }
+        return null;
+    }
+
+    private String getCacheKey() {
+        return owner.getRootDir().getPath();
     }
     
-    public synchronized SeleniumhqBuildAction getPreviousResult() {
-    	AbstractBuild<?, ?> b = owner;
-        while (true) {
-            b = b.getPreviousBuild();
-            if (b == null)
-                return null;
-//            if (b.getResult() == Result.FAILURE)
-//                continue;
-            SeleniumhqBuildAction r = b.getAction(SeleniumhqBuildAction.class);
+    public SeleniumhqBuildAction getPreviousResult() {
+        return getPreviousResult(owner.getProject(), owner.getNumber());
+    }
+
+    /**
+     * Gets the last result recorded before build <tt>number</tt>, through the
+     * {@link BuildIndex} of the project.
+     */
+    static SeleniumhqBuildAction getPreviousResult(AbstractProject<?, ?> project, int number) {
+        BuildIndex index = BuildIndex.get(project);
+        for (int n = index.previous(number); n != -1; n = index.previous(n)) {
+            AbstractBuild<?, ?> b = project.getBuildByNumber(n);
+            SeleniumhqBuildAction r = b == null ? null : b.getAction(SeleniumhqBuildAction.class);
             if (r != null)
                 return r;
+            // stale entry, unless the build is still publishing its result
+            if (b == null || !b.isBuilding())
+                index.remove(n);
         }
+        return null;
     }
 
-    
     /**
      * Loads a {@link TestResult} from disk.
+     *
+     * @return the result, or null if it cannot be read
      */
     private TestResult load() {
-        TestResult r;
         try {
-            r = (TestResult)getDataFile().read();
+            return TestResultStore.load(owner.getRootDir());
         } catch (IOException e) {
-            logger.log(Level.WARNING, "Failed to load "+getDataFile(),e);
-            r = new TestResult();   // return a dummy
+            logger.log(Level.WARNING, "Failed to load the Selenium result of "+owner,e);
+            return null;
         }
-        return r;
     }
-    
-    private static final XStream XSTREAM = new XStream2();
 }
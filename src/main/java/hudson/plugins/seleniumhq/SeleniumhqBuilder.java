@@ -3,10 +3,14 @@ package hudson.plugins.seleniumhq;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
+import hudson.FilePath.FileCallable;
 import hudson.model.BuildListener;
 import hudson.model.Descriptor;
 import hudson.model.Result;
 import hudson.model.AbstractBuild;
+import hudson.model.Node;
+import hudson.remoting.VirtualChannel;
 import hudson.tasks.Builder;
 import hudson.util.FormValidation;
 
@@ -15,11 +19,22 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.sf.json.JSONObject;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.tools.ant.types.FileSet;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
@@ -41,14 +56,56 @@ import org.kohsuke.stapler.StaplerRequest;
  */
 public class SeleniumhqBuilder extends Builder {
 
+	/** Port of the Selenium server when none is given in the optional parameters */
+	static final int DEFAULT_PORT = 4444;
+
+	/**
+	 * Most suites run at the same time, each one having its own server and
+	 * browser on the node.
+	 */
+	public static final int MAX_PARALLEL_SUITES = Integer.getInteger(SeleniumhqBuilder.class.getName()
+			+ ".maxParallelSuites", 8);
+
+	/** Directory of the cached profile templates, in the root of each node */
+	static final String PROFILE_CACHE_DIR = "seleniumhq-profiles";
+
 	private final String browser;
 	private final String startURL;
 	private final String suiteFile;
 	private final String resultFile;
 	private final String other;
 
-	@DataBoundConstructor
+	/**
+	 * Reuse the result of a previous run when nothing it depends on changed.
+	 * See {@link RunCache}.
+	 */
+	private final boolean cacheResults;
+
+	/**
+	 * Version of the application under test, usually a job variable, part of
+	 * the key of the {@link RunCache}.
+	 */
+	private final String appVersion;
+
+	/**
+	 * Number of suites run at the same time when {@link #suiteFile} is a
+	 * pattern, empty for one at a time.
+	 */
+	private final String parallelSuites;
+
+	/**
+	 * Directory of a Firefox profile template, cached on the nodes. See
+	 * {@link ProfileTemplateCache}.
+	 */
+	private final String profileTemplate;
+
 	public SeleniumhqBuilder(String browser, String startURL, String suiteFile, String resultFile, String other) {
+		this(browser, startURL, suiteFile, resultFile, other, false, null, null, null);
+	}
+
+	@DataBoundConstructor
+	public SeleniumhqBuilder(String browser, String startURL, String suiteFile, String resultFile, String other,
+			boolean cacheResults, String appVersion, String parallelSuites, String profileTemplate) {
 		this.browser = browser;
 
 		this.startURL = startURL;
@@ -56,6 +113,10 @@ public class SeleniumhqBuilder extends Builder {
 		this.suiteFile = suiteFile;
 		this.resultFile = resultFile;
 		this.other = other;
+		this.cacheResults = cacheResults;
+		this.appVersion = Util.fixEmptyAndTrim(appVersion);
+		this.parallelSuites = Util.fixEmptyAndTrim(parallelSuites);
+		this.profileTemplate = Util.fixEmptyAndTrim(profileTemplate);
 	}
 
 	/**
@@ -93,6 +154,60 @@ public class SeleniumhqBuilder extends Builder {
 		return resultFile;
 	}
 
+	/**
+	 * We'll use this from the <tt>config.jelly</tt>.
+	 */
+	public Boolean getCacheResults() {
+		return cacheResults;
+	}
+
+	/**
+	 * We'll use this from the <tt>config.jelly</tt>.
+	 */
+	public String getAppVersion() {
+		return appVersion;
+	}
+
+	/**
+	 * We'll use this from the <tt>config.jelly</tt>.
+	 */
+	public String getParallelSuites() {
+		return parallelSuites;
+	}
+
+	/**
+	 * We'll use this from the <tt>config.jelly</tt>.
+	 */
+	public String getProfileTemplate() {
+		return profileTemplate;
+	}
+
+	/**
+	 * @return number of suites run at the same time, between 1 and
+	 *         {@link #MAX_PARALLEL_SUITES}
+	 */
+	int getParallelSuiteCount() {
+		if (parallelSuites == null) {
+			return 1;
+		}
+		try {
+			return Math.min(MAX_PARALLEL_SUITES, Math.max(1, Integer.parseInt(parallelSuites)));
+		} catch (NumberFormatException e) {
+			return 1;
+		}
+	}
+
+	/**
+	 * Check if the suiteFile is an Ant pattern, like the result files of the
+	 * publisher
+	 * 
+	 * @return true if the suiteFile may match several files
+	 */
+	public boolean isPatternSuiteFile() {
+		return !isURLSuiteFile()
+				&& (suiteFile.indexOf('*') != -1 || suiteFile.indexOf('?') != -1 || suiteFile.indexOf(',') != -1);
+	}
+
 	/**
 	 * Check if the suiteFile is a URL
 	 * 
@@ -165,9 +280,14 @@ public class SeleniumhqBuilder extends Builder {
 			return false;
 		}
 
+		if (isPatternSuiteFile()) {
+			return performSuites(build, launcher, listener);
+		}
+
 		// -------------------------------
 		// check suiteFile type url or file
 		// -------------------------------
+		PhaseTimings timings = PhaseTimings.of(build);
 		String suiteFile = null;
 		FilePath tempSuite = null;
 		if (this.isFileSuiteFile(build, launcher)) {
@@ -178,6 +298,7 @@ public class SeleniumhqBuilder extends Builder {
 			}
 			suiteFile = suiteFilePath.getRemote();
 		} else if (this.isURLSuiteFile()) {
+			long downloadStart = System.currentTimeMillis();
 			tempSuite = build.getWorkspace().createTempFile("tempHtmlSuite", "html");
 			suiteFile = tempSuite.getRemote();
 			try {
@@ -201,6 +322,8 @@ public class SeleniumhqBuilder extends Builder {
 				listener.getLogger().println("    ...");
 				listener.getLogger().println("    Succeed");
 				sourceFile.delete();
+				timings.end(PhaseTimings.DOWNLOAD, downloadStart);
+				SeleniumhqMetrics.get().suiteDownloaded();
 			} catch (Exception e) {
 				listener.error("Downloading suite file from url failed ! Check your build configuration. ");
 				build.setResult(Result.FAILURE);
@@ -215,10 +338,22 @@ public class SeleniumhqBuilder extends Builder {
 
 		listener.getLogger().println("Start URL = " + startURL);
 
+		// the template may be in the workspace, cache it before the cleaning
+		List<String> profileArgs;
+		try {
+			profileArgs = getProfileTemplateArgs(build, launcher, listener);
+		} catch (IOException e) {
+			e.printStackTrace(listener.error("Failed to prepare the Firefox profile template"));
+			build.setResult(Result.FAILURE);
+			return false;
+		}
+
 		// Clean workspace
 		FilePath workspace = build.getWorkspace();
 		listener.error("Cleaning workspace : " + workspace.getBaseName());
+		long cleanStart = System.currentTimeMillis();
 		workspace.deleteContents();
+		timings.end(PhaseTimings.CLEAN, cleanStart);
 
 		String startURLResolved = substituteVars(startURL, build, listener.getLogger());
 		String suiteFileResolved = substituteVars(suiteFile, build, listener.getLogger());
@@ -226,6 +361,25 @@ public class SeleniumhqBuilder extends Builder {
 		String browserResolved = substituteVars(browser, build, listener.getLogger());
 		String otherResolved = substituteVars(other, build, listener.getLogger());
 
+		// -------------------------------
+		// Reuse the result of an identical run
+		// -------------------------------
+		FilePath resultPath = new FilePath(build.getWorkspace(), resultFileResolved);
+		String cacheKey = null;
+		if (cacheResults && tempSuite != null) {
+			listener.getLogger().println("Results of a suite downloaded from an url are not cached");
+		} else if (cacheResults) {
+			checkAppVersion(listener);
+			String appVersionResolved = appVersion == null ? "" : substituteVars(appVersion, build, listener.getLogger());
+			String fingerprint = new FilePath(launcher.getChannel(), suiteFileResolved).act(new SuiteFingerprint());
+			cacheKey = RunCache.key(fingerprint, startURLResolved, browserResolved, otherResolved,
+					appVersionResolved);
+			if (reuseResult(build, cacheKey, resultPath, resultFileResolved, listener)) {
+				releaseProfileTemplate(build, launcher, profileArgs, listener);
+				return true;
+			}
+		}
+
 		// -------------------------------
 		// launch : java -jar selenium-server.jar [other] -htmlSuite "{browser}"
 		// "{startURL}"
@@ -237,19 +391,33 @@ public class SeleniumhqBuilder extends Builder {
 		resultFilePath.getParent().mkdirs();
 		String resultFile = resultFilePath.getRemote();
 
-		ArrayList others = this.getOthers(otherResolved);
+		ArrayList<String> others = this.getOthers(otherResolved);
 
-		ArrayList cmd = new ArrayList();
+		ArrayList<String> cmd = new ArrayList<String>();
 		cmd.add("java");
 		cmd.add("-jar");
 		cmd.add(seleniumRunner);
 		cmd.addAll(others);
+		cmd.addAll(profileArgs);
 		cmd.add("-htmlSuite");
 		cmd.add(browserResolved);
 		cmd.add(startURLResolved);
 		cmd.add(suiteFileResolved);
 		cmd.add(resultFileResolved);
 
+		// -------------------------------
+		// Publish the results while the suite is running
+		// -------------------------------
+		IncrementalResultWatcher watcher = null;
+		SeleniumhqPublisher publisher = build.getProject().getPublishersList().get(SeleniumhqPublisher.class);
+		if (publisher != null && publisher.getIncremental()) {
+			watcher = new IncrementalResultWatcher(build, publisher, listener);
+			watcher.start();
+		}
+
+		// startup and run are told apart from the server output
+		ServerStartDetector detector = new ServerStartDetector(listener.getLogger());
+		long runStart = 0;
 		try {
 			String javaCmdString = "";
 			Iterator<String> itr = cmd.iterator();
@@ -258,8 +426,12 @@ public class SeleniumhqBuilder extends Builder {
 			}
 
 			listener.getLogger().println(javaCmdString);
-			launcher.launch().cmds(cmd).envs(build.getEnvironment(listener)).stdout(listener.getLogger())
+			runStart = System.currentTimeMillis();
+			launcher.launch().cmds(cmd).envs(build.getEnvironment(listener)).stdout(detector)
 					.pwd(build.getWorkspace()).join();
+			if (cacheKey != null) {
+				storeResult(build, cacheKey, resultPath, listener);
+			}
 			return true;
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -270,6 +442,19 @@ public class SeleniumhqBuilder extends Builder {
 			listener.getLogger().println("InterruptedException!");
 			return false;
 		} finally {
+			if (runStart != 0) {
+				long startedAt = detector.getStartedAt();
+				if (startedAt != 0) {
+					timings.add(PhaseTimings.STARTUP, startedAt - runStart);
+					timings.end(PhaseTimings.RUN, startedAt);
+				} else {
+					timings.end(PhaseTimings.RUN, runStart);
+				}
+			}
+			if (watcher != null)
+				watcher.stop();
+			releaseProfileTemplate(build, launcher, profileArgs, listener);
+
 			// -------------------------------
 			// Delete the temp suite file
 			// -------------------------------
@@ -278,6 +463,375 @@ public class SeleniumhqBuilder extends Builder {
 		}
 	}
 
+	/**
+	 * Runs the suites matched by the {@link #suiteFile} pattern, each with its
+	 * own result file, through a pool of {@link #getParallelSuiteCount()}
+	 * Selenium servers. The result files are listed in a {@link SuiteRuns}
+	 * for the publisher.
+	 * 
+	 * <p>
+	 * The suites are in the workspace, so only the result files of the
+	 * previous build are deleted instead of the whole workspace. The results
+	 * are published as the suites complete when the publisher is
+	 * incremental, and the startups of the servers, spread over the pool,
+	 * are told apart from the test run.
+	 */
+	private boolean performSuites(final AbstractBuild<?, ?> build, final Launcher launcher,
+			final BuildListener listener) throws IOException, InterruptedException {
+		PrintStream logger = listener.getLogger();
+		String pattern = substituteVars(suiteFile, build, logger);
+		final String startURLResolved = substituteVars(startURL, build, logger);
+		String resultFileResolved = substituteVars(resultFile, build, logger);
+		final String browserResolved = substituteVars(browser, build, logger);
+		final String otherResolved = substituteVars(other, build, logger);
+		final String appVersionResolved = appVersion == null ? "" : substituteVars(appVersion, build, logger);
+		if (cacheResults) {
+			checkAppVersion(listener);
+		}
+
+		final FilePath workspace = build.getWorkspace();
+		// the result files of the previous build are still in the workspace
+		String resultPattern = getSuiteResultPattern(resultFileResolved);
+		String[] suites = workspace.act(new SuiteScanner(pattern, resultPattern));
+		if (suites.length == 0) {
+			listener.error("No suite file matches " + pattern);
+			build.setResult(Result.FAILURE);
+			return false;
+		}
+		// including those of suites removed since, which would be published again
+		for (FilePath previous : workspace.list(resultPattern)) {
+			previous.delete();
+		}
+		int threads = Math.min(getParallelSuiteCount(), suites.length);
+		logger.println("Start URL = " + startURL);
+		logger.println(suites.length + " suite(s) match " + pattern + ", running " + threads + " at a time");
+
+		// each server of the pool listens on its own port
+		final ArrayList<String> others = getOthers(otherResolved);
+		List<String> profileArgs;
+		try {
+			profileArgs = getProfileTemplateArgs(build, launcher, listener);
+			others.addAll(profileArgs);
+		} catch (IOException e) {
+			e.printStackTrace(listener.error("Failed to prepare the Firefox profile template"));
+			build.setResult(Result.FAILURE);
+			return false;
+		}
+		int basePort = removePort(others);
+		if (basePort == -1 && threads > 1) {
+			basePort = DEFAULT_PORT;
+		}
+		final BlockingQueue<Integer> ports = new ArrayBlockingQueue<Integer>(threads);
+		for (int i = 0; i < threads; i++) {
+			ports.add(basePort == -1 ? -1 : basePort + i);
+		}
+
+		final AtomicLong startups = new AtomicLong();
+		List<String> resultFiles = new ArrayList<String>();
+		List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+		for (final String suite : suites) {
+			final String suiteResultFile = getSuiteResultFile(resultFileResolved, suite);
+			resultFiles.add(suiteResultFile);
+			tasks.add(new Callable<Boolean>() {
+				public Boolean call() throws Exception {
+					int port = ports.take();
+					try {
+						return runSuite(build, launcher, listener, suite, suiteResultFile, startURLResolved,
+								browserResolved, otherResolved, appVersionResolved, others, port, startups);
+					} finally {
+						ports.put(port);
+					}
+				}
+			});
+		}
+		build.getActions().add(new SuiteRuns(resultFiles));
+
+		IncrementalResultWatcher watcher = null;
+		SeleniumhqPublisher publisher = build.getProject().getPublishersList().get(SeleniumhqPublisher.class);
+		if (publisher != null && publisher.getIncremental()) {
+			watcher = new IncrementalResultWatcher(build, publisher, listener);
+			watcher.start();
+		}
+
+		PhaseTimings timings = PhaseTimings.of(build);
+		long runStart = System.currentTimeMillis();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			boolean ok = true;
+			for (Future<Boolean> f : pool.invokeAll(tasks)) {
+				try {
+					ok &= f.get();
+				} catch (ExecutionException e) {
+					e.getCause().printStackTrace(listener.error("Failed to run a Selenium suite"));
+					ok = false;
+				}
+			}
+			return ok;
+		} finally {
+			// interrupts the servers still running when the build is aborted
+			pool.shutdownNow();
+			long total = System.currentTimeMillis() - runStart;
+			long startup = Math.min(total, startups.get() / threads);
+			timings.add(PhaseTimings.STARTUP, startup);
+			timings.add(PhaseTimings.RUN, total - startup);
+			if (watcher != null)
+				watcher.stop();
+			releaseProfileTemplate(build, launcher, profileArgs, listener);
+		}
+	}
+
+	/**
+	 * Runs one of the suites matched by a pattern. Its output is copied to the
+	 * build log as it comes, through a {@link PrefixedOutputStream}, so the
+	 * suites running at the same time do not mix their lines.
+	 * 
+	 * @param port
+	 *            port of the server, or -1 for the default one
+	 * @param startups
+	 *            receives the startup time of the server, in ms
+	 */
+	private boolean runSuite(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener, String suite,
+			String suiteResultFile, String startURL, String browser, String other, String appVersion, List<String> others,
+			int port, AtomicLong startups)
+			throws IOException, InterruptedException {
+		FilePath workspace = build.getWorkspace();
+		FilePath suitePath = workspace.child(suite);
+		FilePath resultPath = workspace.child(suiteResultFile);
+
+		String cacheKey = null;
+		if (cacheResults) {
+			cacheKey = RunCache.key(suitePath.act(new SuiteFingerprint()), startURL, browser, other, appVersion);
+			synchronized (listener) {
+				listener.getLogger().println("[" + suite + "]");
+				if (reuseResult(build, cacheKey, resultPath, suiteResultFile, listener)) {
+					return true;
+				}
+			}
+		}
+		resultPath.getParent().mkdirs();
+
+		ArrayList<String> cmd = new ArrayList<String>();
+		cmd.add("java");
+		cmd.add("-jar");
+		cmd.add(FileUtil.getExecutableAbsolutePath(DESCRIPTOR.getSeleniumRunner()));
+		cmd.addAll(others);
+		if (port != -1) {
+			cmd.add("-port");
+			cmd.add(String.valueOf(port));
+		}
+		cmd.add("-htmlSuite");
+		cmd.add(browser);
+		cmd.add(startURL);
+		cmd.add(suitePath.getRemote());
+		cmd.add(resultPath.getRemote());
+
+		String javaCmdString = "";
+		for (String arg : cmd) {
+			javaCmdString += " " + arg;
+		}
+		synchronized (listener) {
+			listener.getLogger().println("[" + suite + "]" + javaCmdString);
+		}
+		PrefixedOutputStream output = new PrefixedOutputStream(listener.getLogger(), "[" + suite + "] ", listener);
+		ServerStartDetector detector = new ServerStartDetector(output);
+		long runStart = System.currentTimeMillis();
+		try {
+			launcher.launch().cmds(cmd).envs(build.getEnvironment(listener)).stdout(detector).pwd(workspace).join();
+		} finally {
+			output.close();
+			if (detector.getStartedAt() != 0) {
+				startups.addAndGet(detector.getStartedAt() - runStart);
+			}
+		}
+		if (cacheKey != null) {
+			storeResult(build, cacheKey, resultPath, listener);
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the result file of one of the suites matched by a pattern : the
+	 * configured result file, suffixed with the path of the suite.
+	 */
+	static String getSuiteResultFile(String resultFile, String suite) {
+		String name = suite.replaceAll("\\.[^./\\\\]*$", "").replaceAll("[/\\\\:,\\s]+", "_");
+		int dot = resultFile.lastIndexOf('.');
+		if (dot <= Math.max(resultFile.lastIndexOf('/'), resultFile.lastIndexOf('\\'))) {
+			return resultFile + "-" + name;
+		}
+		return resultFile.substring(0, dot) + "-" + name + resultFile.substring(dot);
+	}
+
+	/**
+	 * Gets the pattern matching the result files of all the suites.
+	 */
+	static String getSuiteResultPattern(String resultFile) {
+		return getSuiteResultFile(resultFile, "*");
+	}
+
+	/**
+	 * Removes <tt>-port &lt;nnnn&gt;</tt> from the optional parameters.
+	 * 
+	 * @return the port, or -1 if none is given
+	 */
+	static int removePort(List<String> others) {
+		int i = others.indexOf("-port");
+		if (i == -1 || i + 1 >= others.size()) {
+			return -1;
+		}
+		try {
+			int port = Integer.parseInt(others.get(i + 1));
+			others.remove(i + 1);
+			others.remove(i);
+			return port;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Gets the copy of the {@link #profileTemplate} cached on the node of the
+	 * build, see {@link ProfileTemplateCache}, and leases it for the build.
+	 * Selenium makes a fresh profile from it on each launch.
+	 * 
+	 * @return the parameters passing the template to the server, none when
+	 *         there is no template or it does not apply
+	 */
+	private List<String> getProfileTemplateArgs(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
+			throws IOException, InterruptedException {
+		List<String> args = new ArrayList<String>();
+		if (profileTemplate == null) {
+			return args;
+		}
+		PrintStream logger = listener.getLogger();
+		if (other != null && other.indexOf("-firefoxProfileTemplate") != -1) {
+			logger.println("Firefox profile template given in the optional parameters, not cached");
+			return args;
+		}
+		if (!isFirefox(substituteVars(browser, build, logger))) {
+			logger.println("The profile template only applies to Firefox, not used");
+			return args;
+		}
+		Node node = build.getBuiltOn();
+		FilePath root = node == null ? null : node.getRootPath();
+		if (root == null) {
+			logger.println("The node of the build is offline, the profile template is not used");
+			return args;
+		}
+
+		String path = substituteVars(profileTemplate, build, logger);
+		FilePath template = new FilePath(build.getWorkspace(), path);
+		if (!template.isDirectory()) {
+			template = new FilePath(launcher.getChannel(), path);
+		}
+		String cached = template.act(new ProfileTemplateCache(root.child(PROFILE_CACHE_DIR).getRemote(),
+				getProfileLease(build)));
+		logger.println("Firefox profile template : " + cached);
+		args.add("-firefoxProfileTemplate");
+		args.add(cached);
+		return args;
+	}
+
+	/**
+	 * Drops the lease of the build on the cached profile template, taken by
+	 * {@link #getProfileTemplateArgs}, so that it can be pruned.
+	 */
+	private void releaseProfileTemplate(AbstractBuild<?, ?> build, Launcher launcher, List<String> profileArgs,
+			BuildListener listener) {
+		if (profileArgs.isEmpty()) {
+			return;
+		}
+		try {
+			new FilePath(launcher.getChannel(), profileArgs.get(1)).act(new ProfileTemplateCache.Release(
+					getProfileLease(build)));
+		} catch (IOException e) {
+			e.printStackTrace(listener.error("Failed to release the Firefox profile template"));
+		} catch (InterruptedException e) {
+			e.printStackTrace(listener.error("Failed to release the Firefox profile template"));
+		}
+	}
+
+	private static String getProfileLease(AbstractBuild<?, ?> build) {
+		return SuiteFingerprint.hash(build.getProject().getFullName(), String.valueOf(build.getNumber()));
+	}
+
+	/**
+	 * @return true for the browsers launched with a Firefox profile
+	 */
+	static boolean isFirefox(String browser) {
+		return browser.startsWith("*firefox") || browser.startsWith("*chrome");
+	}
+
+	/**
+	 * Warns that the cached results do not depend on the application under
+	 * test when no version is given.
+	 */
+	private void checkAppVersion(BuildListener listener) {
+		if (appVersion == null) {
+			listener.getLogger().println("WARNING : no appVersion, cached results are reused whatever the version"
+					+ " of the application under test");
+		}
+	}
+
+	/**
+	 * Copies the result of a previous identical run from the
+	 * {@link RunCache}, if any.
+	 * 
+	 * @return true if the suite does not need to run
+	 */
+	private boolean reuseResult(AbstractBuild<?, ?> build, String cacheKey, FilePath resultPath, String resultFile,
+			BuildListener listener) throws IOException, InterruptedException {
+		RunCache.Entry cached = RunCache.get(build.getProject()).lookup(cacheKey);
+		if (cached == null) {
+			return false;
+		}
+		listener.getLogger().println("Suite, startURL, browser and application version unchanged since build #"
+				+ cached.getBuild() + ", reusing its result");
+		resultPath.getParent().mkdirs();
+		new FilePath(cached.getFile()).copyTo(resultPath);
+		build.getActions().add(new CachedRun(resultFile, cached.getBuild()));
+		SeleniumhqMetrics.get().runCacheHit();
+		return true;
+	}
+
+	/**
+	 * Finds the suites matching a pattern in the workspace.
+	 */
+	private static final class SuiteScanner implements FileCallable<String[]> {
+		private static final long serialVersionUID = 1L;
+
+		private final String pattern;
+		private final String excludes;
+
+		SuiteScanner(String pattern, String excludes) {
+			this.pattern = pattern;
+			this.excludes = excludes;
+		}
+
+		public String[] invoke(File ws, VirtualChannel channel) throws IOException {
+			FileSet fileSet = Util.createFileSet(ws, pattern);
+			fileSet.setExcludes(excludes);
+			String[] files = fileSet.getDirectoryScanner().getIncludedFiles();
+			Arrays.sort(files);
+			return files;
+		}
+	}
+
+	/**
+	 * Keeps the result of the run in the {@link RunCache} if it passed. A
+	 * failure only loses the cache entry.
+	 */
+	private void storeResult(AbstractBuild<?, ?> build, String cacheKey, FilePath resultPath, BuildListener listener)
+			throws InterruptedException {
+		try {
+			if (resultPath.exists() && RunCache.get(build.getProject()).store(cacheKey, build.getNumber(), resultPath)) {
+				listener.getLogger().println("Result cached for the next runs of this suite");
+			}
+		} catch (IOException e) {
+			e.printStackTrace(listener.error("Failed to cache the Selenium result"));
+		}
+	}
+
 	protected String substituteVars(String initialValue, AbstractBuild<?, ?> build, PrintStream logger) {
 		String resolvedValue = initialValue;
 		// Localize variable to substitute
@@ -317,8 +871,8 @@ public class SeleniumhqBuilder extends Builder {
 	 *
 	 * @return  ArrayList containing parameters
 	 */
-	private static final ArrayList getOthers(String other) {
-		ArrayList cmdParams = new ArrayList();
+	private static final ArrayList<String> getOthers(String other) {
+		ArrayList<String> cmdParams = new ArrayList<String>();
 
 		// fix https://issues.jenkins-ci.org/browse/JENKINS-7246 caused by patch
 		// in https://issues.jenkins-ci.org/browse/JENKINS-6996
@@ -392,6 +946,25 @@ public class SeleniumhqBuilder extends Builder {
 			return FormValidation.validateExecutable(value);
 		}
 
+		/**
+		 * Checks the number of suites run at the same time.
+		 */
+		public FormValidation doCheckParallelSuites(@QueryParameter final String value) {
+			String n = Util.fixEmptyAndTrim(value);
+			if (n == null) {
+				return FormValidation.ok();
+			}
+			try {
+				int count = Integer.parseInt(n);
+				if (count >= 1 && count <= MAX_PARALLEL_SUITES) {
+					return FormValidation.ok();
+				}
+			} catch (NumberFormatException e) {
+				// reported below
+			}
+			return FormValidation.error("Expecting a number between 1 and " + MAX_PARALLEL_SUITES);
+		}
+
 		/**
 		 * This human readable name is used in the configuration screen.
 		 */
@@ -0,0 +1,127 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.model.Api;
+import hudson.model.Hudson;
+import hudson.model.Item;
+import hudson.model.RootAction;
+import hudson.model.listeners.ItemListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Health of all the projects that publish Selenium results, on one page.
+ *
+ * <p>
+ * The {@link ProjectSummary} of each project is cached until the project
+ * publishes again, so no test result is read between two publications. The
+ * aggregation is not cached : it depends on the projects the current user
+ * can read, and is computed from the cached summaries on each request.
+ *
+ * @author Pascal Martin
+ */
+@Extension
+@ExportedBean
+public class SeleniumhqDashboard implements RootAction {
+
+    /** Summaries by project full name */
+    private static final ConcurrentMap<String, ProjectSummary> PROJECTS = new ConcurrentHashMap<String, ProjectSummary>();
+
+    private static final Object LOCK = new Object();
+
+    /** Incremented on each invalidation. Guarded by LOCK. */
+    private static long generation;
+
+    /**
+     * Drops the cached summary of a project, after a publication or the
+     * deletion of a build.
+     */
+    public static void invalidate(AbstractProject<?, ?> project) {
+        invalidate(project.getFullName());
+    }
+
+    private static void invalidate(String fullName) {
+        synchronized (LOCK) {
+            generation++;
+            if (fullName == null) {
+                PROJECTS.clear();
+            } else {
+                PROJECTS.remove(fullName);
+            }
+        }
+    }
+
+    public String getIconFileName() {
+        return "/plugin/seleniumhq/icons/sla-24x24.png";
+    }
+
+    public String getDisplayName() {
+        return "Selenium Dashboard";
+    }
+
+    public String getUrlName() {
+        return "seleniumhq-dashboard";
+    }
+
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    /**
+     * @return the aggregation of the projects the current user can read
+     */
+    @Exported(inline = true)
+    public DashboardSummary getSummary() {
+        long gen;
+        synchronized (LOCK) {
+            gen = generation;
+        }
+
+        List<ProjectSummary> projects = new ArrayList<ProjectSummary>();
+        for (AbstractProject<?, ?> project : Hudson.getInstance().getAllItems(AbstractProject.class)) {
+            if (!project.hasPermission(Item.READ)
+                    || project.getPublishersList().get(SeleniumhqPublisher.class) == null) {
+                continue;
+            }
+            ProjectSummary p = PROJECTS.get(project.getFullName());
+            if (p == null) {
+                p = ProjectSummary.of(project);
+                if (p == null) {
+                    continue;
+                }
+                synchronized (LOCK) {
+                    // not cached if the project published in the meantime
+                    if (gen == generation) {
+                        PROJECTS.put(project.getFullName(), p);
+                    }
+                }
+            }
+            projects.add(p);
+        }
+        return new DashboardSummary(projects);
+    }
+
+    /**
+     * Drops the summaries of deleted or renamed projects.
+     */
+    @Extension
+    public static class ItemListenerImpl extends ItemListener {
+        @Override
+        public void onDeleted(Item item) {
+            invalidate(item.getFullName());
+        }
+
+        @Override
+        public void onRenamed(Item item, String oldName, String newName) {
+            // the full names of the items below have changed too
+            invalidate((String) null);
+        }
+    }
+}
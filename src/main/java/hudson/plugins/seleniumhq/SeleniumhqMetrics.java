@@ -0,0 +1,227 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.ObjectName;
+
+/**
+ * Activity of the plugin since the start of the master.
+ *
+ * <p>
+ * The counters are updated on the build and request paths, so they are
+ * {@link StripedCounter}s rather than shared atomic values. They are
+ * registered in JMX as <tt>hudson.plugins.seleniumhq:type=Metrics</tt>, and
+ * served in the Prometheus text format by {@link SeleniumhqMetricsAction}.
+ *
+ * @author Pascal Martin
+ */
+public class SeleniumhqMetrics implements SeleniumhqMetricsMBean {
+
+    /** Buckets of the parse time, in ms */
+    static final long[] PARSE_BUCKETS = { 10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000 };
+
+    /** Buckets of the size of an archived report, in bytes */
+    static final long[] REPORT_BUCKETS = { 10 * 1024, 100 * 1024, 1024 * 1024, 10 * 1024 * 1024, 100 * 1024 * 1024 };
+
+    private static final SeleniumhqMetrics INSTANCE = new SeleniumhqMetrics();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+                    new ObjectName("hudson.plugins.seleniumhq:type=Metrics"));
+        } catch (Exception e) {
+            Logger.getLogger(SeleniumhqMetrics.class.getName()).log(Level.WARNING, "Failed to register the metrics MBean", e);
+        }
+    }
+
+    public static SeleniumhqMetrics get() {
+        return INSTANCE;
+    }
+
+    private final StripedCounter suitesRun = new StripedCounter();
+    private final StripedCounter testsPassed = new StripedCounter();
+    private final StripedCounter testsFailed = new StripedCounter();
+    private final StripedCounter commandsPassed = new StripedCounter();
+    private final StripedCounter commandsFailed = new StripedCounter();
+    private final StripedCounter commandErrors = new StripedCounter();
+    private final StripedCounter suiteDownloads = new StripedCounter();
+    private final StripedCounter runCacheHits = new StripedCounter();
+    private final Histogram parseTime = new Histogram(PARSE_BUCKETS);
+    private final Histogram reportSize = new Histogram(REPORT_BUCKETS);
+
+    SeleniumhqMetrics() {
+    }
+
+    /**
+     * Counts the suites and outcomes of a published result.
+     */
+    public void published(SeleniumhqBuildAction action) {
+        suitesRun.add(action.getResult().getSuites().size());
+        testsPassed.add(action.getNumTestPasses());
+        testsFailed.add(action.getNumTestFailures());
+        commandsPassed.add(action.getNumCommandPasses());
+        commandsFailed.add(action.getNumCommandFailures());
+        commandErrors.add(action.getNumCommandErrors());
+    }
+
+    /**
+     * @param millis
+     *            time spent parsing the result files of a build
+     */
+    public void parsed(long millis) {
+        parseTime.observe(millis);
+    }
+
+    /**
+     * @param bytes
+     *            size of a report copied to the report directory
+     */
+    public void archived(long bytes) {
+        reportSize.observe(bytes);
+    }
+
+    public void suiteDownloaded() {
+        suiteDownloads.increment();
+    }
+
+    public void runCacheHit() {
+        runCacheHits.increment();
+    }
+
+    public long getSuitesRun() {
+        return suitesRun.sum();
+    }
+
+    public long getTestsPassed() {
+        return testsPassed.sum();
+    }
+
+    public long getTestsFailed() {
+        return testsFailed.sum();
+    }
+
+    public long getCommandsPassed() {
+        return commandsPassed.sum();
+    }
+
+    public long getCommandsFailed() {
+        return commandsFailed.sum();
+    }
+
+    public long getCommandErrors() {
+        return commandErrors.sum();
+    }
+
+    public long getParseCount() {
+        return parseTime.getCount();
+    }
+
+    public long getParseTimeMillis() {
+        return parseTime.getSum();
+    }
+
+    public long getReportsArchived() {
+        return reportSize.getCount();
+    }
+
+    public long getBytesArchived() {
+        return reportSize.getSum();
+    }
+
+    public long getSuiteDownloads() {
+        return suiteDownloads.sum();
+    }
+
+    public long getRunCacheHits() {
+        return runCacheHits.sum();
+    }
+
+    public long getResultCacheHits() {
+        return ResultCache.get().getHits() + ResultCache.get().getSoftHits();
+    }
+
+    public long getResultCacheMisses() {
+        return ResultCache.get().getMisses();
+    }
+
+    public long getGraphRenders() {
+        return GraphCache.get().getRenders();
+    }
+
+    public long getGraphCacheHits() {
+        return GraphCache.get().getHits();
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text exposition format, version
+     * 0.0.4.
+     */
+    public void writePrometheus(Writer writer) throws IOException {
+        // the format requires \n line endings, whatever the platform
+        StringBuilder out = new StringBuilder();
+        counter(out, "seleniumhq_suites_total", "Suites of the published results", getSuitesRun());
+        out.append("# HELP seleniumhq_tests_total Tests of the published results, by outcome").append('\n');
+        out.append("# TYPE seleniumhq_tests_total counter").append('\n');
+        out.append("seleniumhq_tests_total{outcome=\"passed\"} " + getTestsPassed()).append('\n');
+        out.append("seleniumhq_tests_total{outcome=\"failed\"} " + getTestsFailed()).append('\n');
+        out.append("# HELP seleniumhq_commands_total Commands of the published results, by outcome").append('\n');
+        out.append("# TYPE seleniumhq_commands_total counter").append('\n');
+        out.append("seleniumhq_commands_total{outcome=\"passed\"} " + getCommandsPassed()).append('\n');
+        out.append("seleniumhq_commands_total{outcome=\"failed\"} " + getCommandsFailed()).append('\n');
+        out.append("seleniumhq_commands_total{outcome=\"error\"} " + getCommandErrors()).append('\n');
+        histogram(out, "seleniumhq_parse_seconds", "Time spent parsing the result files of a build", parseTime,
+                1000.0);
+        histogram(out, "seleniumhq_archived_report_bytes", "Size of the reports copied to the report directory",
+                reportSize, 1.0);
+        counter(out, "seleniumhq_suite_downloads_total", "Suite files downloaded by the builder",
+                getSuiteDownloads());
+        counter(out, "seleniumhq_run_cache_hits_total", "Suite runs skipped by reusing a cached result",
+                getRunCacheHits());
+        counter(out, "seleniumhq_result_cache_hits_total", "Results served from the result cache",
+                getResultCacheHits());
+        counter(out, "seleniumhq_result_cache_misses_total", "Results loaded from disk", getResultCacheMisses());
+        counter(out, "seleniumhq_graph_renders_total", "Trend graphs rendered", getGraphRenders());
+        counter(out, "seleniumhq_graph_cache_hits_total", "Trend graphs served from the graph cache",
+                getGraphCacheHits());
+        gauge(out, "seleniumhq_result_cache_bytes", "Estimated size of the results held by the result cache",
+                ResultCache.get().getBytes());
+        writer.write(out.toString());
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP " + name + " " + help).append('\n');
+        out.append("# TYPE " + name + " counter").append('\n');
+        out.append(name + " " + value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP " + name + " " + help).append('\n');
+        out.append("# TYPE " + name + " gauge").append('\n');
+        out.append(name + " " + value).append('\n');
+    }
+
+    /**
+     * @param scale
+     *            divides the observed values to get the exposed unit
+     */
+    private static void histogram(StringBuilder out, String name, String help, Histogram h, double scale) {
+        out.append("# HELP " + name + " " + help).append('\n');
+        out.append("# TYPE " + name + " histogram").append('\n');
+        long[] bounds = h.getBounds();
+        long[] counts = h.getCumulativeCounts();
+        for (int i = 0; i < bounds.length; i++) {
+            out.append(name + "_bucket{le=\"" + format(bounds[i], scale) + "\"} " + counts[i]).append('\n');
+        }
+        out.append(name + "_bucket{le=\"+Inf\"} " + counts[bounds.length]).append('\n');
+        out.append(name + "_sum " + format(h.getSum(), scale)).append('\n');
+        out.append(name + "_count " + counts[bounds.length]).append('\n');
+    }
+
+    private static String format(long value, double scale) {
+        return scale == 1.0 ? Long.toString(value) : Double.toString(value / scale);
+    }
+}
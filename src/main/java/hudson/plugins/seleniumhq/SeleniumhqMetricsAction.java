@@ -0,0 +1,39 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.Extension;
+import hudson.model.Hudson;
+import hudson.model.RootAction;
+
+import java.io.IOException;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Serves the {@link SeleniumhqMetrics} as <tt>/seleniumhq/metrics</tt>, for
+ * Prometheus to scrape. Hidden from the side panel.
+ *
+ * @author Pascal Martin
+ */
+@Extension
+public class SeleniumhqMetricsAction implements RootAction {
+
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return null;
+    }
+
+    public String getUrlName() {
+        return "seleniumhq";
+    }
+
+    public void doMetrics(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        Hudson.getInstance().checkPermission(Hudson.READ);
+        rsp.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+        rsp.setHeader("Cache-Control", "no-cache");
+        SeleniumhqMetrics.get().writePrometheus(rsp.getWriter());
+    }
+}
@@ -0,0 +1,52 @@
+package hudson.plugins.seleniumhq;
+
+/**
+ * JMX view of the {@link SeleniumhqMetrics}.
+ *
+ * @author Pascal Martin
+ */
+public interface SeleniumhqMetricsMBean {
+
+    /** Suites of the published results */
+    long getSuitesRun();
+
+    long getTestsPassed();
+
+    long getTestsFailed();
+
+    long getCommandsPassed();
+
+    long getCommandsFailed();
+
+    long getCommandErrors();
+
+    /** Result files parsed by the publisher */
+    long getParseCount();
+
+    /** Time spent parsing the result files, in ms */
+    long getParseTimeMillis();
+
+    /** Reports copied to the report directory of the projects */
+    long getReportsArchived();
+
+    /** Size of the reports copied, in bytes */
+    long getBytesArchived();
+
+    /** Suite files downloaded by the builder */
+    long getSuiteDownloads();
+
+    /** Suite runs skipped by the builder, see {@link RunCache} */
+    long getRunCacheHits();
+
+    /** See {@link ResultCacheMBean#getHits()} */
+    long getResultCacheHits();
+
+    /** See {@link ResultCacheMBean#getMisses()} */
+    long getResultCacheMisses();
+
+    /** Trend graphs rendered */
+    long getGraphRenders();
+
+    /** Trend graphs served from the {@link GraphCache} */
+    long getGraphCacheHits();
+}
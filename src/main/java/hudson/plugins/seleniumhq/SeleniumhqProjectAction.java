@@ -2,8 +2,9 @@ package hudson.plugins.seleniumhq;
 
 import hudson.FilePath;
 import hudson.Functions;
+import hudson.Util;
 import hudson.model.Actionable;
-import hudson.model.Build;
+import hudson.model.Api;
 import hudson.model.DirectoryBrowserSupport;
 import hudson.model.Project;
 import hudson.model.ProminentProjectAction;
@@ -14,29 +15,47 @@ import hudson.util.ColorPalette;
 import hudson.util.DataSetBuilder;
 import hudson.util.ShiftedCategoryAxis;
 import hudson.util.StackedAreaRenderer2;
-import hudson.util.ChartUtil.NumberOnlyBuildLabel;
 
 import java.awt.Color;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import javax.servlet.ServletException;
 
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
 import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartRenderingInfo;
+import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.CategoryAxis;
 import org.jfree.chart.axis.CategoryLabelPositions;
 import org.jfree.chart.axis.NumberAxis;
 import org.jfree.chart.plot.CategoryPlot;
 import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.renderer.category.LineAndShapeRenderer;
 import org.jfree.chart.renderer.category.StackedAreaRenderer;
 import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.category.DefaultCategoryDataset;
 import org.jfree.ui.RectangleInsets;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
 
+@ExportedBean
 public class SeleniumhqProjectAction extends Actionable implements ProminentProjectAction {
+
+    /** Largest graph served, in pixels */
+    private static final int MAX_GRAPH_SIZE = 2000;
     
 	private final Project<?, ?> project;
 
@@ -60,57 +79,329 @@ public class SeleniumhqProjectAction extends Actionable implements ProminentProj
 		return getUrlName();
 	}
 
+	/**
+	 * Serves the reports archived by the last publication. The landing page
+	 * is written by the publisher, see {@link ReportIndexPage}.
+	 */
 	public DirectoryBrowserSupport doDynamic(StaplerRequest req, StaplerResponse rsp) throws IOException, ServletException,InterruptedException
 	{
 		File rootFile = SeleniumhqPublisher.getSeleniumReportDir(project);
-		if (!rootFile.exists())rootFile.mkdir();		
-		FilePath rootTarget =  new FilePath(rootFile);		
-		if (rootTarget.list().size() == 0)
+		if (!rootFile.exists())
 		{
-			// Make index
-			String index = "<html><head><title>Selenium result</title></head><body><center><br/><h2>No Selenium Test Result</h2></center></body></html>";
-        	OutputStream output = rootTarget.child("index.html").write();
-        	output.write(index.getBytes());
-        	output.close();
+			rsp.forward(this, "noResult", req);
+			return null;
 		}
-		return new DirectoryBrowserSupport(this, rootTarget, "Seleniumhq", "graph.gif", false);
+		return new DirectoryBrowserSupport(this, new FilePath(rootFile), "Seleniumhq", "graph.gif", false);
 	}
 	
+    public Api getApi() {
+        return new Api(this);
+    }
+
+    @Exported
     public SeleniumhqBuildAction getLastResult() {
-        for (Build<?, ?> b = project.getLastBuild(); b != null; b = b.getPreviousBuild()) {
-//            if (b.getResult() == Result.FAILURE)
-//                continue;
-            SeleniumhqBuildAction r = b.getAction(SeleniumhqBuildAction.class);
-            if (r != null)
-                return r;
-        }
-        return null;
+        return SeleniumhqBuildAction.getPreviousResult(project, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the flakiest tests of the project
+     */
+    public List<TestHistory> getFlakyTests() {
+        return FlakyTestStore.get(project).getFlakyTests(10);
+    }
+
+    /**
+     * Flakiest tests of the remote API. They are left out while the
+     * {@link FlakyTestStore} would have to be rebuilt from the builds, as a
+     * request of the API should not trigger that.
+     */
+    @Exported(name = "flakyTests")
+    public List<TestHistory> getStoredFlakyTests() {
+        FlakyTestStore store = FlakyTestStore.getIfStored(project);
+        return store == null ? new ArrayList<TestHistory>() : store.getFlakyTests(10);
     }
 	
+    /**
+     * Searches the history of the tests of the project, see
+     * {@link TestSearchIndex}.
+     * 
+     * @return the tests whose name contains <tt>query</tt>, at most 100
+     */
+    public List<TestOutcomes> searchTests(String query) {
+        query = Util.fixEmptyAndTrim(query);
+        if (query == null) {
+            return new ArrayList<TestOutcomes>();
+        }
+        return TestSearchIndex.get(project).search(query, BuildIndex.get(project).range(0, Integer.MAX_VALUE), 100);
+    }
+
+    /**
+     * Trend graph image.
+     */
     public void doGraph(StaplerRequest req, StaplerResponse rsp) throws IOException {
-        if (ChartUtil.awtProblemCause != null || getLastResult() == null) {
+        GraphCache.Graph graph = getGraph(req, rsp);
+        if (graph == null) {
+            return;
+        }
+        writeImage(graph, rsp);
+    }
+
+    /**
+     * Graph of the time spent in each phase of the builds, see
+     * {@link PhaseTimings}.
+     */
+    public void doPhaseGraph(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        if (ChartUtil.awtProblemCause != null) {
             // not available. send out error message
             rsp.sendRedirect2(req.getContextPath() + "/images/headless.png");
             return;
         }
-        
-        if (req.checkIfModified(project.getLastBuild().getTimestamp(), rsp))
-            return; 
 
-        
-        ChartUtil.generateGraph(req, rsp, createChart(req, buildDataSet()), calcDefaultSize());
+        Area size = getGraphSize(req);
+        int builds = getTrendBuildCount();
+        PhaseStore store = PhaseStore.get(project);
+        String etag = "\"phases-" + store.getVersion() + "-" + size.width + "x" + size.height + "-" + builds + "\"";
+        if (etag.equals(req.getHeader("If-None-Match"))) {
+            rsp.setStatus(StaplerResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String key = project.getRootDir().getPath() + etag;
+        GraphCache.Graph graph = GraphCache.get().lookup(key);
+        if (graph == null) {
+            CategoryDataset dataset = buildPhaseDataSet(selectPhases(store.read(), builds, size.width));
+            JFreeChart chart = createPhaseChart(dataset);
+            BufferedImage image = chart.createBufferedImage(size.width, size.height);
+            graph = new GraphCache.Graph(ChartUtilities.encodeAsPNG(image), "");
+            GraphCache.get().put(key, graph);
+        }
+        rsp.setHeader("ETag", etag);
+        writeImage(graph, rsp);
+    }
+
+    private static void writeImage(GraphCache.Graph graph, StaplerResponse rsp) throws IOException {
+        rsp.setContentType("image/png");
+        rsp.setContentLength(graph.png.length);
+        OutputStream output = rsp.getOutputStream();
+        output.write(graph.png);
+        output.close();
+    }
+
+    /**
+     * Clickable map of the trend graph.
+     */
+    public void doMap(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        GraphCache.Graph graph = getGraph(req, rsp);
+        if (graph == null) {
+            return;
+        }
+        rsp.setContentType("text/plain;charset=UTF-8");
+        rsp.getWriter().println(graph.map);
+    }
+
+    /**
+     * Trend data in JSON, for the browser side chart.
+     *
+     * <p>
+     * Returns the builds numbered between the <tt>from</tt> and <tt>to</tt>
+     * parameters, limited to the <tt>limit</tt> most recent ones (the number
+     * of builds configured for the graph by default). When builds are left
+     * out, <tt>previous</tt> is the number to pass as <tt>to</tt> to get the
+     * preceding page.
+     */
+    public void doTrend(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        TrendStore store = TrendStore.get(project);
+        int from = getIntParameter(req, "from", 0);
+        int to = getIntParameter(req, "to", Integer.MAX_VALUE);
+        int limit = Math.max(1, getIntParameter(req, "limit", getTrendBuildCount()));
+        String etag = "\"" + store.getVersion() + "-" + from + "-" + to + "-" + limit + "\"";
+        if (etag.equals(req.getHeader("If-None-Match"))) {
+            rsp.setStatus(StaplerResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        List<TrendRecord> records = store.read(from, to);
+        JSONObject json = new JSONObject();
+        if (records.size() > limit) {
+            json.put("previous", records.get(records.size() - limit - 1).getNumber());
+            records = records.subList(records.size() - limit, records.size());
+        }
+        JSONArray builds = new JSONArray();
+        for (TrendRecord r : records) {
+            builds.add(r.toJSON());
+        }
+        json.put("builds", builds);
+
+        rsp.setContentType("application/json;charset=UTF-8");
+        rsp.setHeader("ETag", etag);
+        rsp.getWriter().print(json.toString());
+    }
+
+    /**
+     * Gets the rendered graph from the {@link GraphCache}, rendering it if
+     * needed. The response is completed here (redirect or 304) when null is
+     * returned.
+     */
+    private GraphCache.Graph getGraph(StaplerRequest req, StaplerResponse rsp) throws IOException {
+        SeleniumhqBuildAction last = getLastResult();
+        if (ChartUtil.awtProblemCause != null || last == null) {
+            // not available. send out error message
+            rsp.sendRedirect2(req.getContextPath() + "/images/headless.png");
+            return null;
+        }
+
+        Area size = getGraphSize(req);
+        int builds = getTrendBuildCount();
+        String relPath = getRelPath(req);
+        TrendStore store = TrendStore.get(project);
+        String etag = "\"" + last.getOwner().getNumber() + "-" + store.getVersion() + "-" + size.width + "x"
+                + size.height + "-" + builds + "-" + Integer.toHexString(relPath.hashCode()) + "\"";
+        if (etag.equals(req.getHeader("If-None-Match"))) {
+            rsp.setStatus(StaplerResponse.SC_NOT_MODIFIED);
+            return null;
+        }
+
+        String key = project.getRootDir().getPath() + etag;
+        GraphCache.Graph graph = GraphCache.get().lookup(key);
+        if (graph == null) {
+            List<TrendRecord> records = selectRecords(store.read(), builds, size.width);
+            JFreeChart chart = createChart(relPath, buildDataSet(records), buildDurationDataSet(records));
+            ChartRenderingInfo info = new ChartRenderingInfo();
+            BufferedImage image = chart.createBufferedImage(size.width, size.height, info);
+            graph = new GraphCache.Graph(ChartUtilities.encodeAsPNG(image), ChartUtilities.getImageMap("map", info));
+            GraphCache.get().put(key, graph);
+        }
+        rsp.setHeader("ETag", etag);
+        return graph;
+    }
+
+    /**
+     * @return number of builds plotted, as configured in the publisher
+     */
+    private int getTrendBuildCount() {
+        SeleniumhqPublisher publisher = project.getPublishersList().get(SeleniumhqPublisher.class);
+        return publisher == null ? Integer.MAX_VALUE : publisher.getTrendBuildCount();
+    }
+
+    /**
+     * Selects the records plotted : the last <tt>builds</tt> ones, downsampled
+     * to a few points per pixel column when the history is very long.
+     */
+    static List<TrendRecord> selectRecords(List<TrendRecord> records, int builds, int width) {
+        if (records.size() > builds) {
+            records = records.subList(records.size() - builds, records.size());
+        }
+        int threshold = Math.max(10, width / 4);
+        if (records.size() <= threshold) {
+            return records;
+        }
+        // keep the failure spikes visible
+        double[] failures = new double[records.size()];
+        for (int i = 0; i < failures.length; i++) {
+            failures[i] = records.get(i).getNumTestFailures();
+        }
+        List<TrendRecord> r = new ArrayList<TrendRecord>(threshold);
+        for (int i : TrendDownsampler.lttb(failures, threshold)) {
+            r.add(records.get(i));
+        }
+        return r;
     }
     
-    private CategoryDataset buildDataSet() {
-    	DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel> dsb = new DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel>();
+    /**
+     * Selects the builds of the phase graph like {@link #selectRecords}, the
+     * downsampling keeping the spikes of the total time.
+     */
+    static SortedMap<Integer, PhaseTimings> selectPhases(SortedMap<Integer, PhaseTimings> phases, int builds,
+            int width) {
+        List<Integer> numbers = new ArrayList<Integer>(phases.keySet());
+        if (numbers.size() > builds) {
+            numbers = numbers.subList(numbers.size() - builds, numbers.size());
+        }
+        int threshold = Math.max(10, width / 4);
+        if (numbers.size() > threshold) {
+            double[] totals = new double[numbers.size()];
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] = phases.get(numbers.get(i)).getTotal();
+            }
+            List<Integer> kept = new ArrayList<Integer>(threshold);
+            for (int i : TrendDownsampler.lttb(totals, threshold)) {
+                kept.add(numbers.get(i));
+            }
+            numbers = kept;
+        }
+        SortedMap<Integer, PhaseTimings> r = new TreeMap<Integer, PhaseTimings>();
+        for (Integer n : numbers) {
+            r.put(n, phases.get(n));
+        }
+        return r;
+    }
 
-        for (SeleniumhqBuildAction a = getLastResult(); a != null; a = a.getPreviousResult()) {
-            ChartUtil.NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(a.getOwner());            
-            dsb.add(a.getResult().getNumTestPasses(), "passes", label);
-            dsb.add(a.getResult().getNumTestFailures(), "failed", label);
+    /**
+     * @return the time of each phase in seconds, stacked in execution order
+     */
+    static CategoryDataset buildPhaseDataSet(SortedMap<Integer, PhaseTimings> phases) {
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        for (int p = 0; p < PhaseTimings.COUNT; p++) {
+            for (Map.Entry<Integer, PhaseTimings> e : phases.entrySet()) {
+                dataset.addValue(e.getValue().get(p) / 1000.0, PhaseTimings.LABELS[p], new BuildLabel(e.getKey()));
+            }
+        }
+        return dataset;
+    }
+
+    static CategoryDataset buildDataSet(List<TrendRecord> records) {
+    	DataSetBuilder<String, BuildLabel> dsb = new DataSetBuilder<String, BuildLabel>();
+
+        for (TrendRecord r : records) {
+            BuildLabel label = new BuildLabel(r.getNumber());
+            dsb.add(r.getNumTestPasses(), "passes", label);
+            dsb.add(r.getNumTestFailures(), "failed", label);
         }
         return dsb.build();
     }
+
+    /**
+     * @return the total time of the suites, or null when no build has one
+     */
+    static CategoryDataset buildDurationDataSet(List<TrendRecord> records) {
+        DataSetBuilder<String, BuildLabel> dsb = new DataSetBuilder<String, BuildLabel>();
+        boolean known = false;
+        for (TrendRecord r : records) {
+            dsb.add(r.getTotalTime(), "seconds", new BuildLabel(r.getNumber()));
+            known |= r.getTotalTime() > 0;
+        }
+        return known ? dsb.build() : null;
+    }
+
+    /**
+     * Category of the trend graph, built from the {@link TrendStore} only.
+     */
+    static final class BuildLabel implements Comparable<BuildLabel> {
+        final int number;
+
+        BuildLabel(int number) {
+            this.number = number;
+        }
+
+        public int compareTo(BuildLabel o) {
+            return number - o.number;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof BuildLabel && ((BuildLabel) o).number == number;
+        }
+
+        @Override
+        public int hashCode() {
+            return number;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + number;
+        }
+    }
     
     /**
      * Determines the default size of the trend graph.
@@ -125,10 +416,34 @@ public class SeleniumhqProjectAction extends Actionable implements ProminentProj
         else
             return new Area(500,200);
     }
+
+    /**
+     * Size requested with the <tt>width</tt> and <tt>height</tt> parameters,
+     * like {@link ChartUtil#generateGraph}.
+     */
+    private Area getGraphSize(StaplerRequest req) {
+        Area size = calcDefaultSize();
+        int width = getIntParameter(req, "width", size.width);
+        int height = getIntParameter(req, "height", size.height);
+        if (width > 0 && height > 0) {
+            return new Area(Math.min(width, MAX_GRAPH_SIZE), Math.min(height, MAX_GRAPH_SIZE));
+        }
+        return size;
+    }
+
+    private static int getIntParameter(StaplerRequest req, String name, int defaultValue) {
+        String value = req.getParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
     
-    private JFreeChart createChart(StaplerRequest req, CategoryDataset dataset) {
-    	
-    	final String relPath = getRelPath(req);
+    private JFreeChart createChart(final String relPath, CategoryDataset dataset, CategoryDataset durations) {
     	 
         final JFreeChart chart = ChartFactory.createStackedAreaChart(
             null,                   // chart title
@@ -166,20 +481,60 @@ public class SeleniumhqProjectAction extends Actionable implements ProminentProj
 
 			@Override
             public String generateURL(CategoryDataset dataset, int row, int column) {
-                NumberOnlyBuildLabel label = (NumberOnlyBuildLabel) dataset.getColumnKey(column);
-                return relPath+label.build.getNumber()+"/testReport/";
+                BuildLabel label = (BuildLabel) dataset.getColumnKey(column);
+                return relPath+label.number+"/seleniumhq/";
             }
         };
         plot.setRenderer(ar);
         ar.setSeriesPaint(0,ColorPalette.RED); // Failures.
         ar.setSeriesPaint(1,ColorPalette.BLUE); // Total.
 
+        // total time of the suites, on its own axis
+        if (durations != null) {
+            plot.setDataset(1, durations);
+            NumberAxis timeAxis = new NumberAxis("seconds");
+            timeAxis.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
+            plot.setRangeAxis(1, timeAxis);
+            plot.mapDatasetToRangeAxis(1, 1);
+            LineAndShapeRenderer lr = new LineAndShapeRenderer(true, false);
+            lr.setSeriesPaint(0, Color.DARK_GRAY);
+            plot.setRenderer(1, lr);
+        }
+
         // crop extra space around the graph
         plot.setInsets(new RectangleInsets(0,0,0,5.0));
 
         return chart;
     }
     
+    private JFreeChart createPhaseChart(CategoryDataset dataset) {
+        final JFreeChart chart = ChartFactory.createStackedAreaChart(null, null, "seconds", dataset,
+                PlotOrientation.VERTICAL, true, false, false);
+
+        chart.setBackgroundPaint(Color.white);
+
+        final CategoryPlot plot = chart.getCategoryPlot();
+        plot.setBackgroundPaint(Color.WHITE);
+        plot.setOutlinePaint(null);
+        plot.setForegroundAlpha(0.8f);
+        plot.setRangeGridlinesVisible(true);
+        plot.setRangeGridlinePaint(Color.black);
+
+        CategoryAxis domainAxis = new ShiftedCategoryAxis(null);
+        plot.setDomainAxis(domainAxis);
+        domainAxis.setCategoryLabelPositions(CategoryLabelPositions.UP_90);
+        domainAxis.setLowerMargin(0.0);
+        domainAxis.setUpperMargin(0.0);
+        domainAxis.setCategoryMargin(0.0);
+
+        plot.setRenderer(new StackedAreaRenderer2());
+
+        // crop extra space around the graph
+        plot.setInsets(new RectangleInsets(0,0,0,5.0));
+
+        return chart;
+    }
+
     private String getRelPath(StaplerRequest req) {
         String relPath = req.getParameter("rel");
         if(relPath==null)   return "";
@@ -21,11 +21,23 @@ import hudson.util.FormValidation;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
 import java.io.Serializable;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import net.sf.json.JSONObject;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
 import org.apache.tools.ant.DirectoryScanner;
 import org.apache.tools.ant.types.FileSet;
 import org.kohsuke.stapler.AncestorInPath;
@@ -52,16 +64,77 @@ public class SeleniumhqPublisher extends Recorder implements Serializable {
     
     private final boolean useTestCommands;
 
+    /**
+     * Publish the result files while the suite is still running.
+     * See {@link IncrementalResultWatcher}.
+     */
+    private final boolean incremental;
+
+    /**
+     * Number of kilobytes kept in each log section of the archived reports,
+     * empty to archive the reports untouched. See {@link ReportLogStripper}.
+     */
+    private final String maxLogSize;
+
+    /**
+     * Keep a gzipped copy of the original report when its logs are stripped.
+     */
+    private final boolean keepOriginalReport;
+
+    /**
+     * Number of builds plotted by the trend graph, empty for all.
+     */
+    private final String trendBuilds;
+
+    /**
+     * Slowdown of a suite, in percent of its usual duration, that makes the
+     * build unstable. Empty to only report slow suites.
+     * See {@link DurationStore}.
+     */
+    private final String durationThreshold;
+
+    /**
+     * Limit on the total time of the suites, see {@link TimeBudget}. Empty for
+     * none.
+     */
+    private final String timeBudget;
+
+    /**
+     * Mark the build FAILED instead of UNSTABLE when the time budget is
+     * exceeded.
+     */
+    private final boolean timeBudgetFailure;
+
+    public SeleniumhqPublisher(final String testResults, final boolean useTestCommands) {
+        this(testResults, useTestCommands, false, null, false, null, null, null, false);
+    }
+
     /**
      * 
      * @param testResults
      * @param useTestCommands
+     * @param incremental
+     * @param maxLogSize
+     * @param keepOriginalReport
+     * @param trendBuilds
+     * @param durationThreshold
+     * @param timeBudget
+     * @param timeBudgetFailure
      * @stapler-constructor
      */
     @DataBoundConstructor
-    public SeleniumhqPublisher(final String testResults, final boolean useTestCommands) {
+    public SeleniumhqPublisher(final String testResults, final boolean useTestCommands, final boolean incremental,
+            final String maxLogSize, final boolean keepOriginalReport, final String trendBuilds,
+            final String durationThreshold, final String timeBudget, final boolean timeBudgetFailure) {
         this.testResults = testResults;
         this.useTestCommands = useTestCommands;
+        this.incremental = incremental;
+        this.maxLogSize = Util.fixEmptyAndTrim(maxLogSize);
+        this.keepOriginalReport = keepOriginalReport;
+        this.trendBuilds = Util.fixEmptyAndTrim(trendBuilds);
+        this.durationThreshold = Util.fixEmptyAndTrim(durationThreshold);
+        this.timeBudget = Util.fixEmptyAndTrim(timeBudget);
+        this.timeBudgetFailure = timeBudgetFailure;
     }
 
     public String getTestResults() {
@@ -71,6 +144,80 @@ public class SeleniumhqPublisher extends Recorder implements Serializable {
     public Boolean getUseTestCommands() {
         return useTestCommands;
     }
+
+    public Boolean getIncremental() {
+        return incremental;
+    }
+
+    public String getMaxLogSize() {
+        return maxLogSize;
+    }
+
+    public Boolean getKeepOriginalReport() {
+        return keepOriginalReport;
+    }
+
+    public String getTrendBuilds() {
+        return trendBuilds;
+    }
+
+    public String getDurationThreshold() {
+        return durationThreshold;
+    }
+
+    public String getTimeBudget() {
+        return timeBudget;
+    }
+
+    public Boolean getTimeBudgetFailure() {
+        return timeBudgetFailure;
+    }
+
+    /**
+     * @return slowdown in percent that makes the build unstable, or -1 when
+     *         slow suites are only reported
+     */
+    int getDurationThresholdPercent() {
+        if (durationThreshold == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(durationThreshold));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return number of builds plotted by the trend graph, or
+     *         {@link Integer#MAX_VALUE} for all
+     */
+    int getTrendBuildCount() {
+        if (trendBuilds == null) {
+            return Integer.MAX_VALUE;
+        }
+        try {
+            int count = Integer.parseInt(trendBuilds);
+            return count > 0 ? count : Integer.MAX_VALUE;
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return number of characters kept in each log section, or -1 when the
+     *         reports are archived untouched
+     */
+    long getMaxLogChars() {
+        if (maxLogSize == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(maxLogSize)) * 1024;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
     
     public BuildStepMonitor getRequiredMonitorService() {
         return BuildStepMonitor.BUILD;
@@ -86,21 +233,34 @@ public class SeleniumhqPublisher extends Recorder implements Serializable {
         return new File(project.getRootDir(), "seleniumhq");
     }
 
+    /** Gets the directory where the plugin keeps its indexes for the given project. */
+    public static File getSeleniumDataDir(AbstractItem project) {
+        return new File(project.getRootDir(), "seleniumhq-data");
+    }
+
     @Override
     public boolean perform(AbstractBuild<?, ?> build, Launcher launcher, BuildListener listener)
             throws InterruptedException, IOException {
         listener.getLogger().println("Publishing Selenium report...");
+        PhaseTimings timings = new PhaseTimings();
+        long start = System.currentTimeMillis();
 
-        SeleniumhqBuildAction action;
+        // results already published by the IncrementalResultWatcher
+        SeleniumhqBuildAction action = build.getAction(SeleniumhqBuildAction.class);
+        final Collection<String> known = action == null ? new HashSet<String>()
+                : new HashSet<String>(action.getResult().getFiles());
 
-        // clear result directory
         FilePath rootTarget = new FilePath(getSeleniumReportDir(build.getParent()));
-        rootTarget.deleteContents();
+        if (action == null) {
+            // clear result directory
+            rootTarget.deleteContents();
+        }
 
         try {
             final long buildTime = build.getTimestamp().getTimeInMillis();
             final long nowMaster = System.currentTimeMillis();
 
+            final String includes = getIncludes(build);
             FilePath workspacePath = build.getWorkspace();
             TestResult result = workspacePath.act(new FileCallable<TestResult>() {
                 private static final long serialVersionUID = 1L;
@@ -108,7 +268,7 @@ public class SeleniumhqPublisher extends Recorder implements Serializable {
                 public TestResult invoke(File ws, VirtualChannel channel) throws IOException {
                     final long nowSlave = System.currentTimeMillis();
 
-                    FileSet fs = Util.createFileSet(ws, testResults);
+                    FileSet fs = Util.createFileSet(ws, includes);
                     DirectoryScanner ds = fs.getDirectoryScanner();
 
                     String[] files = ds.getIncludedFiles();
@@ -118,39 +278,42 @@ public class SeleniumhqPublisher extends Recorder implements Serializable {
                         throw new AbortException("No Test Report Found");
                     }
 
-                    return new TestResult(buildTime + (nowSlave - nowMaster), ds);
+                    return new TestResult(buildTime + (nowSlave - nowMaster), ds, known);
                 }
             });
-
-            if (result.getNumTestTotal() == 0) {
-                throw new AbortException("Result does not have test");
-            }
-
-            action = new SeleniumhqBuildAction(build, result, listener);
-      
-            // Store result file
-            List<String> files = result.getFiles();
-            if (files.size() == 1) {
-                FilePath source = new FilePath(build.getWorkspace() ,files.get(0));
-                source.copyTo(new FilePath(rootTarget, "index.html"));
+            long parseMillis = System.currentTimeMillis() - start;
+            timings.add(PhaseTimings.PARSE, parseMillis);
+            SeleniumhqMetrics.get().parsed(parseMillis);
+
+            start = System.currentTimeMillis();
+            if (action == null) {
+                if (result.getNumTestTotal() == 0) {
+                    throw new AbortException("Result does not have test");
+                }
+                action = new SeleniumhqBuildAction(build, result, listener);
             } else {
-                String header = "<html><head><title>Selenium result</title></head><body><center><br/><h2>Selenium Test Result</h2><ul>";
-                String footer = "</ul></center></body></html>";
-                OutputStream output = rootTarget.child("index.html").write();
-                output.write(header.getBytes());
-                int index = 0;
-                // Make test index file
-                for (String file : files) {        
-                	FilePath source = new FilePath(build.getWorkspace(), file);
-                    String dest = index + "/" + source.getName();
-                    source.copyTo(new FilePath(rootTarget, dest));
-                    String link = "<li><a href=\"" + dest + "\">" + source.getName() + "</a></li>";
-                    output.write(link.getBytes());
-                    ++index;
+                listener.getLogger().println("  " + known.size() + " report(s) already published, "
+                        + result.getFiles().size() + " left");
+                if (!result.getFiles().isEmpty()) {
+                    action.addResult(result, listener);
+                }
+                if (action.getNumTestTotal() == 0) {
+                    throw new AbortException("Result does not have test");
+                }
+            }
+            timings.end(PhaseTimings.PERSIST, start);
+            for (Action a : build.getActions()) {
+                if (a instanceof CachedRun) {
+                    CachedRun cached = (CachedRun) a;
+                    listener.getLogger().println("  " + cached.getResultFile() + " : cached result of build #"
+                            + cached.getBuild() + ", the suite was not run");
                 }
-                output.write(footer.getBytes());
-                output.close();
             }
+      
+            // Store result file
+            start = System.currentTimeMillis();
+            archiveReports(build.getWorkspace(), rootTarget, action.getResult(), true, listener.getLogger());
+            timings.end(PhaseTimings.ARCHIVE, start);
 
         } catch (IOException e) {
             listener.error("Failed to archive Selenium reports");
@@ -165,31 +328,66 @@ public class SeleniumhqPublisher extends Recorder implements Serializable {
             return true;
         }
 
-        build.getActions().add(action);
+        if (!build.getActions().contains(action)) {
+            action.attach();
+        }
+
+        start = System.currentTimeMillis();
+        TrendStore trend = TrendStore.get(build.getProject());
+        try {
+            checkTimeBudget(build, action, trend, listener);
+        } catch (IOException e) {
+            e.printStackTrace(listener.error("Failed to check the Selenium time budget"));
+        }
+        try {
+            trend.append(TrendRecord.of(action));
+        } catch (IOException e) {
+            e.printStackTrace(listener.error("Failed to record the Selenium trend"));
+        }
+        FlakyTestStore flakyTests = FlakyTestStore.get(build.getProject());
+        flakyTests.update(build.getNumber(), action.getResult());
+        action.updateFlakyTests(flakyTests);
+        TestSearchIndex.get(build.getProject()).update(build.getNumber(), action.getResult());
+
+        List<Slowdown> slowdowns = DurationStore.get(build.getProject()).update(build.getNumber(),
+                action.getResult());
+        action.setSlowdowns(slowdowns);
+        int durationThresholdPercent = getDurationThresholdPercent();
+        for (Slowdown s : slowdowns) {
+            listener.getLogger().println("  Slower suite : " + s.getName() + " took " + s.getDuration()
+                    + "s, usually " + s.getUsualDuration() + "s (+" + s.getPercent() + "%)");
+            if (durationThresholdPercent >= 0 && s.getPercent() > durationThresholdPercent) {
+                build.setResult(Result.UNSTABLE);
+            }
+        }
+        timings.end(PhaseTimings.INDEX, start);
+        recordPhaseTimings(build, action, timings, listener);
+        SeleniumhqMetrics.get().published(action);
+        SeleniumhqDashboard.invalidate(build.getProject());
 
-        listener.getLogger().println("  Test failures: " + action.getResult().getNumTestFailures());
-        listener.getLogger().println("  Test totals  : " + action.getResult().getNumTestTotal());
+        listener.getLogger().println("  Test failures: " + action.getNumTestFailures());
+        listener.getLogger().println("  Test totals  : " + action.getNumTestTotal());
         listener.getLogger().println("------------------------");        
-        listener.getLogger().println("  Command Passes   : " + action.getResult().numCommandPasses());
-        listener.getLogger().println("  Command Failures : " + action.getResult().numCommandFailures());
-        listener.getLogger().println("  Command Errors   : " + action.getResult().numCommandErrors());
+        listener.getLogger().println("  Command Passes   : " + action.getNumCommandPasses());
+        listener.getLogger().println("  Command Failures : " + action.getNumCommandFailures());
+        listener.getLogger().println("  Command Errors   : " + action.getNumCommandErrors());
         
         listener.getLogger().println("  USe test commands: " + useTestCommands);
         
         if (useTestCommands)
         {
-            if (action.getResult().numCommandFailures() > 0)
+            if (action.getNumCommandFailures() > 0)
             {
                 build.setResult(Result.UNSTABLE);
             }
-            if (action.getResult().numCommandErrors() > 0)
+            if (action.getNumCommandErrors() > 0)
             {
                 build.setResult(Result.FAILURE);
             }
         }
         else
         {
-            if (action.getResult().getNumTestFailures() > 0)
+            if (action.getNumTestFailures() > 0)
             {
                 build.setResult(Result.FAILURE);
             }
@@ -198,6 +396,156 @@ public class SeleniumhqPublisher extends Recorder implements Serializable {
         return true;
     }
 
+    /**
+     * @return the {@link #testResults} pattern, plus the result files of the
+     *         suites run from a pattern, see {@link SuiteRuns}
+     */
+    String getIncludes(AbstractBuild<?, ?> build) {
+        StringBuilder includes = new StringBuilder(testResults);
+        for (Action a : build.getActions()) {
+            if (a instanceof SuiteRuns) {
+                for (String file : ((SuiteRuns) a).getResultFiles()) {
+                    includes.append(',').append(file);
+                }
+            }
+        }
+        return includes.toString();
+    }
+
+    /**
+     * Adds the phases timed by the {@link SeleniumhqBuilder} to the ones of
+     * this publication, and keeps them with the result.
+     */
+    private void recordPhaseTimings(AbstractBuild<?, ?> build, SeleniumhqBuildAction action, PhaseTimings timings,
+            BuildListener listener) {
+        PhaseTimings builder = build.getAction(PhaseTimings.class);
+        if (builder != null) {
+            timings.addAll(builder);
+            build.getActions().remove(builder);
+        }
+        action.setPhaseTimings(timings);
+        try {
+            PhaseStore.get(build.getProject()).append(build.getNumber(), timings);
+        } catch (IOException e) {
+            e.printStackTrace(listener.error("Failed to record the Selenium phase timings"));
+        }
+    }
+
+    /**
+     * Compares the total time of the suites with the {@link TimeBudget}, taking
+     * the previous builds from the trend.
+     */
+    private void checkTimeBudget(AbstractBuild<?, ?> build, SeleniumhqBuildAction action, TrendStore trend,
+            BuildListener listener) throws IOException {
+        long totalTime = action.getTotalTime();
+        TimeBudget budget = TimeBudget.parse(timeBudget);
+        if (budget == null) {
+            listener.getLogger().println("  Total time   : " + totalTime + "s");
+            return;
+        }
+        List<Long> previous = trend.readTotalTimes(build.getNumber(), TimeBudget.TRAILING_BUILDS);
+        long limit = budget.getLimit(previous);
+        if (limit < 0) {
+            listener.getLogger().println("  Total time   : " + totalTime + "s, no previous build to compare with");
+            return;
+        }
+        listener.getLogger().println("  Total time   : " + totalTime + "s, budget " + limit + "s (" + budget + ")");
+        if (totalTime > limit) {
+            listener.getLogger().println("  Time budget exceeded");
+            build.setResult(timeBudgetFailure ? Result.FAILURE : Result.UNSTABLE);
+        }
+    }
+
+    /**
+     * Copies the result files into the report directory, each one in its own
+     * numbered sub directory, and writes the {@link ReportIndexPage} linking
+     * to them. Files already copied by a previous call are left untouched.
+     * Once complete, a single result file is also copied as the index page,
+     * which is where it was always served.
+     * 
+     * @param complete false while the suite is still running
+     */
+    void archiveReports(FilePath workspace, FilePath rootTarget, TestResult result, boolean complete,
+            PrintStream logger) throws IOException, InterruptedException {
+        List<String> reports = new ArrayList<String>();
+        int index = 0;
+        for (String file : result.getFiles()) {
+            FilePath source = new FilePath(workspace, file);
+            String dest = index + "/" + source.getName();
+            if (!new FilePath(rootTarget, dest).exists()) {
+                archiveReport(source, rootTarget, dest, logger);
+                SeleniumhqMetrics.get().archived(new FilePath(rootTarget, dest).length());
+            }
+            reports.add(dest);
+            ++index;
+        }
+
+        // written aside then renamed, so that a request never reads a partial page
+        FilePath page = rootTarget.child(ReportIndexPage.FILE_NAME);
+        FilePath tmp = rootTarget.child(ReportIndexPage.FILE_NAME + ".tmp");
+        if (complete && reports.size() == 1) {
+            rootTarget.child(reports.get(0)).copyTo(tmp);
+        } else {
+            Writer writer = new OutputStreamWriter(tmp.write(), "UTF-8");
+            try {
+                ReportIndexPage.write(result, reports, complete, writer);
+            } finally {
+                writer.close();
+            }
+        }
+        tmp.renameTo(page);
+        if (tmp.exists()) {
+            // File.renameTo does not replace an existing file on Windows
+            page.delete();
+            tmp.renameTo(page);
+        }
+    }
+
+    /**
+     * Copies one result file, stripping its logs when {@link #maxLogSize} is
+     * set. The file is transformed while it is streamed from the slave.
+     */
+    private void archiveReport(FilePath source, FilePath rootTarget, String dest, PrintStream logger)
+            throws IOException, InterruptedException {
+        FilePath target = new FilePath(rootTarget, dest);
+        long maxLogChars = getMaxLogChars();
+        if (maxLogChars < 0) {
+            source.copyTo(target);
+            return;
+        }
+
+        target.getParent().mkdirs();
+        OutputStream original = null;
+        InputStream in = null;
+        Writer writer = null;
+        try {
+            in = source.read();
+            if (keepOriginalReport) {
+                original = new GZIPOutputStream(new FilePath(rootTarget, dest + ".gz").write());
+                in = new TeeInputStream(in, original);
+            }
+            // ISO-8859-1 maps every byte to one char, so the content is copied as is
+            Reader reader = new InputStreamReader(in, "ISO-8859-1");
+            writer = new OutputStreamWriter(target.write(), "ISO-8859-1");
+            ReportLogStripper stripper = new ReportLogStripper(maxLogChars);
+            stripper.strip(reader, writer);
+            if (stripper.getRemoved() > 0) {
+                logger.println("  Stripped " + stripper.getRemoved() + " characters of log from " + source.getName());
+            }
+            // closed here so that a failure to flush the copies is reported
+            writer.close();
+            if (original != null) {
+                original.close();
+            }
+            reader.close();
+        } finally {
+            // only left open on failure
+            IOUtils.closeQuietly(in);
+            IOUtils.closeQuietly(writer);
+            IOUtils.closeQuietly(original);
+        }
+    }
+
     @Extension
     public static class DescriptorImpl extends BuildStepDescriptor<Publisher> {
 
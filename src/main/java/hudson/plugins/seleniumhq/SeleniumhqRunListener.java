@@ -0,0 +1,43 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.listeners.RunListener;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the per-project Selenium indexes in sync when builds are deleted.
+ *
+ * @author Pascal Martin
+ */
+@Extension
+public class SeleniumhqRunListener extends RunListener<AbstractBuild> {
+
+    private static final Logger logger = Logger.getLogger(SeleniumhqRunListener.class.getName());
+
+    public SeleniumhqRunListener() {
+        super(AbstractBuild.class);
+    }
+
+    @Override
+    public void onDeleted(AbstractBuild build) {
+        if (build.getAction(SeleniumhqBuildAction.class) == null) {
+            return;
+        }
+        BuildIndex.get(build.getProject()).remove(build.getNumber());
+        try {
+            TrendStore.get(build.getProject()).remove(build.getNumber());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to compact the Selenium trend of " + build.getProject(), e);
+        }
+        try {
+            PhaseStore.get(build.getProject()).remove(build.getNumber());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to compact the Selenium phase timings of " + build.getProject(), e);
+        }
+        SeleniumhqDashboard.invalidate(build.getProject());
+    }
+}
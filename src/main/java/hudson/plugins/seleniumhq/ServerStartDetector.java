@@ -0,0 +1,71 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Copies the output of the Selenium server and notes when the server has
+ * started, i.e. when it logs the start of its embedded Jetty, to tell the
+ * startup from the test run.
+ *
+ * @author Pascal Martin
+ */
+public class ServerStartDetector extends FilterOutputStream {
+
+    static final String MARKER = "Started org.openqa.jetty.jetty.Server";
+
+    /** Longest line examined, the rest of a longer line is ignored */
+    private static final int MAX_LINE = 1024;
+
+    private final StringBuilder line = new StringBuilder();
+    private volatile long startedAt;
+
+    public ServerStartDetector(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        scan(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        for (int i = off; i < off + len; i++) {
+            scan(b[i]);
+        }
+    }
+
+    private void scan(int b) {
+        if (startedAt != 0) {
+            return;
+        }
+        if (b == '\n') {
+            if (line.indexOf(MARKER) != -1) {
+                startedAt = System.currentTimeMillis();
+            }
+            line.setLength(0);
+        } else if (line.length() < MAX_LINE) {
+            line.append((char) (b & 0xFF));
+        }
+    }
+
+    /**
+     * Leaves the build log open.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * @return when the server started, as a value of
+     *         {@link System#currentTimeMillis()}, or 0 if it was not seen
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+}
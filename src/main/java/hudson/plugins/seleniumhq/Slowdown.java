@@ -0,0 +1,60 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.Serializable;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * A suite that ran significantly slower than usual in a build, see
+ * {@link DurationStore}.
+ * 
+ * @author Pascal Martin
+ */
+@ExportedBean(defaultVisibility = 2)
+public class Slowdown implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+    private final long duration;
+    private final long usualDuration;
+
+    public Slowdown(String name, long duration, long usualDuration) {
+        this.name = name;
+        this.duration = duration;
+        this.usualDuration = usualDuration;
+    }
+
+    /**
+     * @return suite identifier, the name of its result file
+     */
+    @Exported
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return duration of the suite in this build, in seconds
+     */
+    @Exported
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return mean duration of the suite before this build, in seconds
+     */
+    @Exported
+    public long getUsualDuration() {
+        return usualDuration;
+    }
+
+    /**
+     * @return the slowdown, in percent of the usual duration
+     */
+    @Exported
+    public int getPercent() {
+        return usualDuration == 0 ? 100 : (int) ((duration - usualDuration) * 100 / usualDuration);
+    }
+}
@@ -0,0 +1,56 @@
+package hudson.plugins.seleniumhq;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter updated from many threads at little cost.
+ *
+ * <p>
+ * Each thread adds to one of several cells, chosen from its id, so that
+ * concurrent updates seldom contend on the same value. The cells are spread
+ * one cache line apart. Reading sums all the cells, and is not atomic with
+ * respect to concurrent updates.
+ *
+ * @author Pascal Martin
+ */
+public final class StripedCounter {
+
+    /** Longs between two cells, 64 bytes */
+    private static final int PADDING = 8;
+
+    /** Number of cells, a power of 2 */
+    static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    static int stripes(int processors) {
+        int n = 1;
+        while (n < 2 * processors && n < 64) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long n) {
+        cells.addAndGet(cell(), n);
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private static int cell() {
+        long id = Thread.currentThread().getId();
+        // spread the ids, which are usually small and consecutive
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((h ^ (h >>> 16)) & (STRIPES - 1)) * PADDING;
+    }
+}
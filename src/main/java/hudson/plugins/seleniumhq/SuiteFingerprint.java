@@ -0,0 +1,104 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.FilePath.FileCallable;
+import hudson.remoting.VirtualChannel;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Digest of an HTML suite and of the test cases it links to, computed on the
+ * node where the suite is.
+ *
+ * <p>
+ * Test cases are found from the <tt>href</tt> of the suite table, relative to
+ * the suite. Absolute links and missing files only contribute their name.
+ *
+ * @author Pascal Martin
+ */
+public class SuiteFingerprint implements FileCallable<String> {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Pattern HREF = Pattern.compile("href\\s*=\\s*[\"']([^\"'#?]+)", Pattern.CASE_INSENSITIVE);
+
+    public String invoke(File suite, VirtualChannel channel) throws IOException {
+        return compute(suite);
+    }
+
+    /**
+     * @return the SHA-1 of the suite and its test cases, in hexadecimal
+     */
+    static String compute(File suite) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] content = FileUtils.readFileToByteArray(suite);
+        digest.update(content);
+        // ISO-8859-1 keeps the links whatever the encoding of the suite
+        Matcher m = HREF.matcher(new String(content, "ISO-8859-1"));
+        while (m.find()) {
+            String href = m.group(1).trim();
+            digest.update(href.getBytes("UTF-8"));
+            digest.update((byte) 0);
+            if (href.indexOf(':') == -1) {
+                File testCase = new File(suite.getParentFile(), href);
+                if (testCase.isFile()) {
+                    update(digest, testCase);
+                }
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return the SHA-1 of the given values, in hexadecimal
+     */
+    static String hash(String... values) {
+        MessageDigest digest = newDigest();
+        for (String v : values) {
+            try {
+                digest.update(String.valueOf(v).getBytes("UTF-8"));
+            } catch (IOException e) {
+                throw new Error(e); // UTF-8 is always supported
+            }
+            digest.update((byte) 0);
+        }
+        return toHex(digest.digest());
+    }
+
+    static void update(MessageDigest digest, File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new Error(e); // SHA-1 is always supported
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder r = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            r.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return r.toString();
+    }
+}
@@ -5,6 +5,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * 
@@ -19,6 +21,9 @@ public class SuiteResult implements Serializable {
 	private int numCommandFailures;
 	private int numCommandErrors;
 	private String htmlResultFile = "";
+	private List<CaseResult> cases = new ArrayList<CaseResult>();
+	/** Duration of the suite in seconds, 0 when unknown */
+	private long totalTime;
 
 	public SuiteResult(int numTestPasses, int numTestFailures) {
 		this.numTestPasses = numTestPasses;
@@ -34,6 +39,25 @@ public class SuiteResult implements Serializable {
 		this.numCommandErrors = numCommandErrors;
 	}
 
+	SuiteResult(int numTestPasses, int numTestFailures, int numCommandPasses, int numCommandFailures,
+			int numCommandErrors, String htmlResultFile) {
+		this(numTestPasses, numTestFailures, numCommandPasses, numCommandFailures, numCommandErrors);
+		this.htmlResultFile = htmlResultFile;
+	}
+
+	SuiteResult(int numTestPasses, int numTestFailures, int numCommandPasses, int numCommandFailures,
+			int numCommandErrors, String htmlResultFile, List<CaseResult> cases) {
+		this(numTestPasses, numTestFailures, numCommandPasses, numCommandFailures, numCommandErrors, htmlResultFile);
+		this.cases = cases;
+	}
+
+	SuiteResult(int numTestPasses, int numTestFailures, int numCommandPasses, int numCommandFailures,
+			int numCommandErrors, String htmlResultFile, List<CaseResult> cases, long totalTime) {
+		this(numTestPasses, numTestFailures, numCommandPasses, numCommandFailures, numCommandErrors, htmlResultFile,
+				cases);
+		this.totalTime = totalTime;
+	}
+
 	public int getNumTestPasses() {
 		return numTestPasses;
 	}
@@ -60,16 +84,27 @@ public class SuiteResult implements Serializable {
 		int numCommandPasses = 0;
 		int numCommandFailures = 0;
 		int numCommandErrors = 0;
+		long totalTime = 0;
 
+		List<CaseResult> cases;
 		BufferedReader buff = null;
 		try {
 			buff = new BufferedReader(new InputStreamReader(xmlReport));
 
-			numTestPasses = Integer.valueOf(readInfo(buff, "numTestPasses:")).intValue();
+			String[] start = readInfo(buff, "totalTime:", "numTestPasses:");
+			if (start[0] != null) {
+				try {
+					totalTime = Long.parseLong(start[0].trim());
+				} catch (NumberFormatException e) {
+					// unknown duration
+				}
+			}
+			numTestPasses = Integer.valueOf(start[1]).intValue();
 			numTestFailures = Integer.valueOf(readInfo(buff, "numTestFailures:")).intValue();
 			numCommandPasses = Integer.valueOf(readInfo(buff, "numCommandPasses:")).intValue();
 			numCommandFailures = Integer.valueOf(readInfo(buff, "numCommandFailures:")).intValue();
 			numCommandErrors = Integer.valueOf(readInfo(buff, "numCommandErrors:")).intValue();
+			cases = readCases(buff);
 
 			buff.close();
 		} finally {
@@ -78,7 +113,77 @@ public class SuiteResult implements Serializable {
 			}
 		}
 
-		return new SuiteResult(numTestPasses, numTestFailures, numCommandPasses, numCommandFailures, numCommandErrors);
+		return new SuiteResult(numTestPasses, numTestFailures, numCommandPasses, numCommandFailures, numCommandErrors,
+				"", cases, totalTime);
+	}
+
+	/**
+	 * Reads the value of info <tt>infoName</tt>, and of the info
+	 * <tt>optionalName</tt> if it comes first.
+	 * 
+	 * @return the values of <tt>optionalName</tt> and <tt>infoName</tt>, null
+	 *         when not found
+	 */
+	private static String[] readInfo(BufferedReader buff, String optionalName, String infoName) throws IOException {
+		String[] values = new String[2];
+		String line;
+		int next = -1;
+		while ((line = buff.readLine()) != null) {
+			if (next != -1) {
+				values[next] = line.substring(4, line.length() - 5);
+				if (next == 1) {
+					break;
+				}
+				next = -1;
+			} else if (line.indexOf(optionalName) != -1) {
+				next = 0;
+			} else if (line.indexOf(infoName) != -1) {
+				next = 1;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Reads the tests listed in the suite table, up to the first test table.
+	 * A test failed when its row has the <tt>status_failed</tt> class.
+	 */
+	private static List<CaseResult> readCases(BufferedReader buff) throws IOException {
+		List<CaseResult> cases = new ArrayList<CaseResult>();
+		boolean passed = true;
+		String line;
+		while ((line = buff.readLine()) != null) {
+			String lower = line.toLowerCase();
+			if (lower.indexOf("name=\"testresult") != -1) {
+				break;
+			}
+			int pos = 0;
+			while (true) {
+				int tr = lower.indexOf("<tr", pos);
+				int href = lower.indexOf("href=\"#testresult", pos);
+				if (tr != -1 && (href == -1 || tr < href)) {
+					int end = lower.indexOf('>', tr);
+					passed = lower.substring(tr, end == -1 ? lower.length() : end).indexOf("status_failed") == -1;
+					pos = tr + 3;
+				} else if (href != -1) {
+					int start = line.indexOf('>', href) + 1;
+					int end = start == 0 ? -1 : lower.indexOf("</a>", start);
+					if (end == -1) {
+						break;
+					}
+					cases.add(new CaseResult(unescape(line.substring(start, end).trim()), passed));
+					pos = end;
+				} else {
+					break;
+				}
+			}
+		}
+		return cases;
+	}
+
+	private static String unescape(String html) {
+		return html.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&nbsp;", " ")
+				.replace("&amp;", "&");
 	}
 
 	private static String readInfo(BufferedReader buff, String infoName) throws IOException {
@@ -100,4 +205,25 @@ public class SuiteResult implements Serializable {
 	public String getHtmlResultFile() {
 		return htmlResultFile;
 	}
+
+	/**
+	 * @return the duration of the suite in seconds, 0 when unknown
+	 */
+	public long getTotalTime() {
+		return totalTime;
+	}
+
+	/**
+	 * @return the tests of the suite, in the order of the report. Empty for
+	 *         results recorded by older versions.
+	 */
+	public List<CaseResult> getCases() {
+		return cases;
+	}
+
+	private Object readResolve() {
+		if (htmlResultFile == null) htmlResultFile = "";
+		if (cases == null) cases = new ArrayList<CaseResult>();
+		return this;
+	}
 }
@@ -0,0 +1,48 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.model.Action;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result files of the suites run by a {@link SeleniumhqBuilder} whose suite
+ * file is a pattern, for the {@link SeleniumhqPublisher} to collect them
+ * along with its own <tt>testResults</tt>.
+ *
+ * @author Pascal Martin
+ */
+public class SuiteRuns implements Action, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> resultFiles;
+
+    public SuiteRuns(List<String> resultFiles) {
+        this.resultFiles = new ArrayList<String>(resultFiles);
+    }
+
+    /**
+     * @return the result files, relative to the workspace
+     */
+    public List<String> getResultFiles() {
+        return Collections.unmodifiableList(resultFiles);
+    }
+
+    /**
+     * Hidden : the results are shown by the {@link SeleniumhqBuildAction}.
+     */
+    public String getIconFileName() {
+        return null;
+    }
+
+    public String getDisplayName() {
+        return null;
+    }
+
+    public String getUrlName() {
+        return null;
+    }
+}
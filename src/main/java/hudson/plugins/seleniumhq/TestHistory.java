@@ -0,0 +1,139 @@
+package hudson.plugins.seleniumhq;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Outcomes of one test over its last {@link #MAX_RUNS} runs, kept by
+ * {@link FlakyTestStore}.
+ *
+ * <p>
+ * Bit <tt>i</tt> of the history is set when the test failed <tt>i</tt> runs
+ * ago, so recording a run is a shift. The flakiness score is the share of
+ * consecutive runs where the outcome flipped.
+ *
+ * @author Pascal Martin
+ */
+@ExportedBean(defaultVisibility = 2)
+public class TestHistory {
+
+    /** Number of runs remembered */
+    public static final int MAX_RUNS = 64;
+
+    /** Runs needed before a test can be reported as flaky */
+    static final int MIN_RUNS = 5;
+
+    /** Flips needed before a test can be reported as flaky */
+    static final int MIN_FLIPS = 2;
+
+    /** Score from which a test is reported as flaky */
+    static final double FLAKY_SCORE = 0.1;
+
+    private final String name;
+    private long failures;
+    private int runs;
+    private int lastBuild;
+
+    public TestHistory(String name) {
+        this.name = name;
+    }
+
+    TestHistory(String name, long failures, int runs, int lastBuild) {
+        this.name = name;
+        this.failures = failures;
+        this.runs = runs;
+        this.lastBuild = lastBuild;
+    }
+
+    /**
+     * Records the outcome of a run.
+     */
+    void record(int build, boolean passed) {
+        failures = (failures << 1) | (passed ? 0 : 1);
+        runs = Math.min(runs + 1, MAX_RUNS);
+        lastBuild = build;
+    }
+
+    /**
+     * @return test identifier, <tt>file/test</tt>
+     */
+    @Exported
+    public String getName() {
+        return name;
+    }
+
+    long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return number of runs remembered
+     */
+    @Exported
+    public int getRuns() {
+        return runs;
+    }
+
+    /**
+     * @return number of the last build the test ran in
+     */
+    @Exported
+    public int getLastBuild() {
+        return lastBuild;
+    }
+
+    /**
+     * @return number of failures among the runs remembered
+     */
+    @Exported
+    public int getFailureCount() {
+        return Long.bitCount(failures & mask(runs));
+    }
+
+    /**
+     * @return number of times the outcome changed from one run to the next
+     */
+    @Exported
+    public int getFlips() {
+        if (runs < 2) {
+            return 0;
+        }
+        return Long.bitCount((failures ^ (failures >>> 1)) & mask(runs - 1));
+    }
+
+    /**
+     * @return flips per pair of consecutive runs, between 0 and 1
+     */
+    @Exported
+    public double getScore() {
+        return runs < 2 ? 0 : (double) getFlips() / (runs - 1);
+    }
+
+    /**
+     * @return the score as a percentage, for display
+     */
+    public int getScorePercent() {
+        return (int) Math.round(getScore() * 100);
+    }
+
+    public boolean isFlaky() {
+        return runs >= MIN_RUNS && getFlips() >= MIN_FLIPS && getScore() >= FLAKY_SCORE;
+    }
+
+    /**
+     * @return the outcomes, oldest first, as <tt>P</tt> for passed and
+     *         <tt>F</tt> for failed
+     */
+    @Exported
+    public String getOutcomes() {
+        StringBuilder b = new StringBuilder(runs);
+        for (int i = runs - 1; i >= 0; i--) {
+            b.append((failures >>> i & 1) == 0 ? 'P' : 'F');
+        }
+        return b.toString();
+    }
+
+    private static long mask(int bits) {
+        return bits >= 64 ? -1L : (1L << bits) - 1;
+    }
+}
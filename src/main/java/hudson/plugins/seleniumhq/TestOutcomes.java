@@ -0,0 +1,118 @@
+package hudson.plugins.seleniumhq;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Runs of one test across the history of a project, as found by
+ * {@link TestSearchIndex}.
+ *
+ * @author Pascal Martin
+ */
+@ExportedBean(defaultVisibility = 2)
+public class TestOutcomes {
+
+    /** Runs listed by {@link #getRecentRuns()} */
+    public static final int RECENT_RUNS = 20;
+
+    private final String name;
+    /** Build numbers, ascending, in builds[0..count-1] */
+    private final int[] builds;
+    private final boolean[] passed;
+    private final int count;
+
+    TestOutcomes(String name, int[] builds, boolean[] passed, int count) {
+        this.name = name;
+        this.builds = builds;
+        this.passed = passed;
+        this.count = count;
+    }
+
+    /**
+     * @return test identifier, <tt>file/test</tt>
+     */
+    @Exported
+    public String getName() {
+        return name;
+    }
+
+    @Exported
+    public int getRuns() {
+        return count;
+    }
+
+    @Exported
+    public int getFailureCount() {
+        int failures = 0;
+        for (int i = 0; i < count; i++) {
+            if (!passed[i]) {
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return the last build where the test passed, or -1
+     */
+    @Exported
+    public int getLastPassed() {
+        return last(true);
+    }
+
+    /**
+     * @return the last build where the test failed, or -1
+     */
+    @Exported
+    public int getLastFailed() {
+        return last(false);
+    }
+
+    private int last(boolean outcome) {
+        for (int i = count - 1; i >= 0; i--) {
+            if (passed[i] == outcome) {
+                return builds[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the last {@link #RECENT_RUNS} runs, newest first
+     */
+    @Exported
+    public List<Run> getRecentRuns() {
+        List<Run> r = new ArrayList<Run>();
+        for (int i = count - 1; i >= Math.max(0, count - RECENT_RUNS); i--) {
+            r.add(new Run(builds[i], passed[i]));
+        }
+        return r;
+    }
+
+    /**
+     * Outcome of a test in one build.
+     */
+    @ExportedBean(defaultVisibility = 3)
+    public static class Run {
+        private final int build;
+        private final boolean passed;
+
+        Run(int build, boolean passed) {
+            this.build = build;
+            this.passed = passed;
+        }
+
+        @Exported
+        public int getBuild() {
+            return build;
+        }
+
+        @Exported
+        public boolean isPassed() {
+            return passed;
+        }
+    }
+}
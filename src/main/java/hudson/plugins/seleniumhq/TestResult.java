@@ -9,7 +9,11 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.tools.ant.DirectoryScanner;
 
@@ -35,6 +39,16 @@ public class TestResult implements Serializable {
 		parse(buildTime, results);
 	}
 
+	/**
+	 * Parses the result files that are not already in <tt>known</tt>.
+	 * 
+	 * @param known remote paths of the files already published for this build
+	 */
+	public TestResult(long buildTime, DirectoryScanner results, Collection<String> known)
+			throws IOException {
+		parse(buildTime, results, known);
+	}
+
 	public int getNumTestPasses() {
 		int count = 0;
 		for (SuiteResult suite : suites) {
@@ -75,6 +89,17 @@ public class TestResult implements Serializable {
 		return count;
 	}
 
+	/**
+	 * @return the duration of the suites in seconds, 0 when unknown
+	 */
+	public long getTotalTime() {
+		long totalTime = 0;
+		for (SuiteResult s : suites) {
+			totalTime += s.getTotalTime();
+		}
+		return totalTime;
+	}
+
 	public int getNumTestTotal()
 	{
 		return getNumTestPasses() + getNumTestFailures();
@@ -91,17 +116,90 @@ public class TestResult implements Serializable {
 	public List<String> getFiles() {
 		return files;
 	}
+
+	List<SuiteResult> getSuites() {
+		return suites;
+	}
+
+	/**
+	 * Names of the result files of the suites, relative to the workspace,
+	 * so that suites with the same file name in different directories are
+	 * told apart. A file whose relative path is unknown, as in results
+	 * recorded by older versions, is named by its base name.
+	 * 
+	 * @return the name of the result file of each suite, in order
+	 */
+	List<String> getSuiteNames() {
+		Set<String> relative = new HashSet<String>();
+		for (String f : resultFiles) {
+			relative.add(f.replace('\\', '/'));
+		}
+		List<String> names = new ArrayList<String>(suites.size());
+		for (int i = 0; i < suites.size(); i++) {
+			String remote = i < files.size() ? files.get(i).replace('\\', '/') : "";
+			String name = remote.substring(remote.lastIndexOf('/') + 1);
+			// longest suffix first
+			for (int p = remote.indexOf('/'); p != -1; p = remote.indexOf('/', p + 1)) {
+				if (relative.contains(remote.substring(p + 1))) {
+					name = remote.substring(p + 1);
+					break;
+				}
+			}
+			names.add(name);
+		}
+		return names;
+	}
+
+	/**
+	 * Rough estimate of the heap used by this result, see {@link ResultCache}.
+	 */
+	long estimateSize() {
+		long size = 64;
+		size += suites.size() * 48L;
+		for (SuiteResult s : suites) {
+			for (CaseResult c : s.getCases()) {
+				size += 64 + 2L * c.getName().length();
+			}
+		}
+		for (String f : files) {
+			size += 40 + 2L * f.length();
+		}
+		for (String f : resultFiles) {
+			size += 40 + 2L * f.length();
+		}
+		return size;
+	}
+
+	/**
+	 * Fills the lists missing from results recorded by older versions.
+	 */
+	private Object readResolve() {
+		if (suites == null) suites = new ArrayList<SuiteResult>();
+		if (files == null) files = new ArrayList<String>();
+		if (resultFiles == null) resultFiles = new ArrayList<String>();
+		return this;
+	}
 ArrayList<String> resultFiles = new ArrayList<String>();
 	public void parse(long buildTime, DirectoryScanner results)
 			throws IOException {
+		parse(buildTime, results, Collections.<String>emptySet());
+	}
+
+	public void parse(long buildTime, DirectoryScanner results, Collection<String> known)
+			throws IOException {
 		String[] includedFiles = results.getIncludedFiles();
 		File baseDir = results.getBasedir();
 
 		boolean parsed = false;
 		
 		for (String value : includedFiles) {
-			resultFiles.add(value);
 			File reportFile = new File(baseDir, value);
+			if (known.contains(new FilePath(reportFile).getRemote())) {
+				// already published while the suite was running
+				parsed = true;
+				continue;
+			}
+			resultFiles.add(value);
 			// only count files that were actually updated during this build
 			if (buildTime - 1000/* error margin */<= reportFile.lastModified()) {
 				if (reportFile.length() != 0) 
@@ -139,6 +237,52 @@ ArrayList<String> resultFiles = new ArrayList<String>();
 		}
 	}
 
+	/**
+	 * Parses the result files that are complete, i.e. new for this build and
+	 * left untouched for <tt>quietPeriod</tt> milliseconds. Unlike
+	 * {@link #parse(long, DirectoryScanner)} this never fails: files that are
+	 * still being written are simply picked up by a later scan.
+	 * 
+	 * @param known remote paths of the files already published for this build
+	 */
+	public void parseCompleted(long buildTime, long now, long quietPeriod, DirectoryScanner results,
+			Collection<String> known) {
+		File baseDir = results.getBasedir();
+		for (String value : results.getIncludedFiles()) {
+			File reportFile = new File(baseDir, value);
+			String remote = new FilePath(reportFile).getRemote();
+			long lastModified = reportFile.lastModified();
+			if (known.contains(remote) || lastModified < buildTime - 1000 /* error margin */
+					|| now - lastModified < quietPeriod || reportFile.length() == 0) {
+				continue;
+			}
+			try {
+				parse(reportFile);
+			} catch (IOException e) {
+				// incomplete file, retry on next scan
+				continue;
+			}
+			resultFiles.add(value);
+			files.add(remote);
+		}
+	}
+
+	/**
+	 * Merges the suites of <tt>other</tt> after those of this result, in a
+	 * new result. Neither result is modified, so a result that a request may
+	 * be reading is never changed under it.
+	 */
+	public TestResult merge(TestResult other) {
+		TestResult r = new TestResult();
+		r.suites.addAll(suites);
+		r.suites.addAll(other.suites);
+		r.files.addAll(files);
+		r.files.addAll(other.files);
+		r.resultFiles.addAll(resultFiles);
+		r.resultFiles.addAll(other.resultFiles);
+		return r;
+	}
+
 	public void parse(File reportFile) throws IOException {
 		try 
 		{
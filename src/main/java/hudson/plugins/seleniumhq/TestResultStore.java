@@ -0,0 +1,288 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.XmlFile;
+import hudson.util.IOException2;
+import hudson.util.XStream2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * Persists the {@link TestResult} of a build.
+ *
+ * <p>
+ * Results are stored in <tt>seleniumhqResult.bin</tt>, a compact versioned
+ * binary format. Builds recorded by older versions of the plugin have a
+ * <tt>seleniumhqResult.xml</tt> XStream file instead, which is still read
+ * transparently until {@link ResultMigrator} converts it.
+ *
+ * <p>
+ * Binary layout, all integers being unsigned varints :
+ * <pre>
+ * "SHQR" version
+ * stringCount (length utf8Bytes)*      string table
+ * fileCount (stringIndex)*             {@link TestResult#getFiles()}
+ * resultFileCount (stringIndex)*
+ * suiteCount (testPasses testFailures commandPasses commandFailures commandErrors htmlResultFile
+ *             caseCount (stringIndex passed)* totalTime)*
+ * </pre>
+ * The cases of the suites were added in version 2, their total time in
+ * version 3.
+ *
+ * @author Pascal Martin
+ */
+public class TestResultStore {
+
+    static final String XML_FILE = "seleniumhqResult.xml";
+    static final String BINARY_FILE = "seleniumhqResult.bin";
+
+    private static final byte[] MAGIC = { 'S', 'H', 'Q', 'R' };
+
+    /** Version written by this code, readers accept any version up to it */
+    static final int VERSION = 3;
+
+    private static final XStream XSTREAM = new XStream2();
+
+    /**
+     * Saves the result in the binary format.
+     *
+     * @param dir build root directory
+     */
+    public static void save(File dir, TestResult result) throws IOException {
+        File file = new File(dir, BINARY_FILE);
+        File tmp = new File(dir, BINARY_FILE + ".tmp");
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp));
+        try {
+            write(result, out);
+        } finally {
+            out.close();
+        }
+        AtomicFiles.replace(tmp, file);
+    }
+
+    /**
+     * Loads the result of a build, from the binary file or else from the
+     * legacy XML file.
+     *
+     * @param dir build root directory
+     */
+    public static TestResult load(File dir) throws IOException {
+        File file = new File(dir, BINARY_FILE);
+        if (file.exists()) {
+            try {
+                return read(file);
+            } catch (FileNotFoundException e) {
+                // being replaced, on Windows
+            }
+        }
+        XmlFile xml = new XmlFile(XSTREAM, new File(dir, XML_FILE));
+        try {
+            return (TestResult) xml.read();
+        } catch (IOException e) {
+            // converted by the migrator or replaced by a save in between
+            if (file.exists()) {
+                return read(file);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Converts the legacy XML file of a build to the binary format.
+     *
+     * @param dir build root directory
+     * @return true if a file has been converted
+     */
+    public static boolean migrate(File dir) throws IOException {
+        File xmlFile = new File(dir, XML_FILE);
+        if (!xmlFile.exists() || new File(dir, BINARY_FILE).exists()) {
+            return false;
+        }
+        TestResult result = (TestResult) new XmlFile(XSTREAM, xmlFile).read();
+        save(dir, result);
+
+        // check the copy before dropping the original
+        TestResult copy = read(new File(dir, BINARY_FILE));
+        if (copy.getNumTestPasses() != result.getNumTestPasses()
+                || copy.getNumTestFailures() != result.getNumTestFailures()
+                || !copy.getFiles().equals(result.getFiles())) {
+            new File(dir, BINARY_FILE).delete();
+            throw new IOException("Converted result differs from " + xmlFile);
+        }
+        xmlFile.delete();
+        return true;
+    }
+
+    private static TestResult read(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return read(in);
+        } catch (IOException e) {
+            throw new IOException2("Failed to read " + file, e);
+        } finally {
+            in.close();
+        }
+    }
+
+    static void write(TestResult result, OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(output);
+        out.write(MAGIC);
+        writeVarint(out, VERSION);
+
+        // string table
+        List<String> strings = new ArrayList<String>();
+        Map<String, Integer> index = new HashMap<String, Integer>();
+        for (String f : result.getFiles()) {
+            intern(f, strings, index);
+        }
+        for (String f : result.resultFiles) {
+            intern(f, strings, index);
+        }
+        for (SuiteResult suite : result.getSuites()) {
+            intern(suite.getHtmlResultFile(), strings, index);
+            for (CaseResult c : suite.getCases()) {
+                intern(c.getName(), strings, index);
+            }
+        }
+        writeVarint(out, strings.size());
+        for (String s : strings) {
+            byte[] bytes = s.getBytes("UTF-8");
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+        }
+
+        writeVarint(out, result.getFiles().size());
+        for (String f : result.getFiles()) {
+            writeVarint(out, index.get(f));
+        }
+        writeVarint(out, result.resultFiles.size());
+        for (String f : result.resultFiles) {
+            writeVarint(out, index.get(f));
+        }
+        writeVarint(out, result.getSuites().size());
+        for (SuiteResult suite : result.getSuites()) {
+            writeVarint(out, suite.getNumTestPasses());
+            writeVarint(out, suite.getNumTestFailures());
+            writeVarint(out, suite.numCommandPasses());
+            writeVarint(out, suite.numCommandFailures());
+            writeVarint(out, suite.numCommandErrors());
+            writeVarint(out, index.get(suite.getHtmlResultFile()));
+            writeVarint(out, suite.getCases().size());
+            for (CaseResult c : suite.getCases()) {
+                writeVarint(out, index.get(c.getName()));
+                out.writeBoolean(c.isPassed());
+            }
+            writeVarint(out, suite.getTotalTime());
+        }
+        out.flush();
+    }
+
+    static TestResult read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("Not a Selenium result file");
+            }
+        }
+        int version = readVarint(in);
+        if (version > VERSION) {
+            throw new IOException("Unsupported Selenium result version " + version);
+        }
+
+        String[] strings = new String[readVarint(in)];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readVarint(in)];
+            in.readFully(bytes);
+            strings[i] = new String(bytes, "UTF-8");
+        }
+
+        TestResult result = new TestResult();
+        int count = readVarint(in);
+        for (int i = 0; i < count; i++) {
+            result.getFiles().add(strings[readVarint(in)]);
+        }
+        count = readVarint(in);
+        for (int i = 0; i < count; i++) {
+            result.resultFiles.add(strings[readVarint(in)]);
+        }
+        count = readVarint(in);
+        for (int i = 0; i < count; i++) {
+            int testPasses = readVarint(in);
+            int testFailures = readVarint(in);
+            int commandPasses = readVarint(in);
+            int commandFailures = readVarint(in);
+            int commandErrors = readVarint(in);
+            String htmlResultFile = strings[readVarint(in)];
+            List<CaseResult> cases = new ArrayList<CaseResult>();
+            if (version >= 2) {
+                int caseCount = readVarint(in);
+                for (int j = 0; j < caseCount; j++) {
+                    cases.add(new CaseResult(strings[readVarint(in)], in.readBoolean()));
+                }
+            }
+            long totalTime = version >= 3 ? readVarLong(in) : 0;
+            result.getSuites().add(new SuiteResult(testPasses, testFailures, commandPasses, commandFailures,
+                    commandErrors, htmlResultFile, cases, totalTime));
+        }
+        return result;
+    }
+
+    private static void intern(String s, List<String> strings, Map<String, Integer> index) {
+        if (!index.containsKey(s)) {
+            index.put(s, strings.size());
+            strings.add(s);
+        }
+    }
+
+    static void writeVarint(DataOutputStream out, long value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static int readVarint(DataInputStream in) throws IOException {
+        long value = readVarLong(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Value out of range " + value);
+        }
+        return (int) value;
+    }
+
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
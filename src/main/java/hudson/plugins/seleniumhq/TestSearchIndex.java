@@ -0,0 +1,351 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.model.AbstractProject;
+
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Inverted index from the name of a test to the builds where it ran, and its
+ * outcome in each of them, to search the whole history of a project.
+ *
+ * <p>
+ * The runs of a test are kept as a byte array of varints, one per run, each
+ * holding the distance to the previous build shifted left by one, the low
+ * bit being set for a failure. A run usually costs a single byte. The index
+ * is kept in <tt>search.idx</tt> in the project data directory, rebuilt from
+ * all the results when missing or unreadable. Runs of deleted builds are filtered out when searching.
+ *
+ * <p>
+ * A publication only appends the outcomes of its build to
+ * <tt>search.idx.log</tt>, replayed when loading. The index file is
+ * rewritten, and the log emptied, once the log has grown larger than it, so
+ * that the cost of the rewrites stays proportional to what was appended.
+ *
+ * <p>
+ * Layout : <tt>"SHQS" version lastBuild count (name lastBuild runs length
+ * bytes)*</tt>, and for the log <tt>(number count (name passed)*)*</tt>.
+ *
+ * @author Pascal Martin
+ */
+public class TestSearchIndex extends ProjectStore {
+
+    static final String FILE_NAME = "search.idx";
+
+    private static final byte[] MAGIC = { 'S', 'H', 'Q', 'S' };
+    static final int VERSION = 2;
+
+    /** Size under which the log is never compacted */
+    static final long MIN_LOG_SIZE = 64 * 1024;
+
+    private static final Logger logger = Logger.getLogger(TestSearchIndex.class.getName());
+
+    private static final ProjectStore.Factory<TestSearchIndex> FACTORY = new ProjectStore.Factory<TestSearchIndex>() {
+        public TestSearchIndex create(File file) {
+            return new TestSearchIndex(file);
+        }
+    };
+
+    /**
+     * Gets the index of a project, loading or rebuilding it if needed.
+     */
+    public static TestSearchIndex get(AbstractProject<?, ?> project) {
+        return get(project, FILE_NAME, FACTORY);
+    }
+
+    private final File log;
+
+    /** Runs of each test, sorted by name. Guarded by this. */
+    private final TreeMap<String, Postings> tests = new TreeMap<String, Postings>();
+
+    TestSearchIndex(File file) {
+        super(file, MAGIC, VERSION, "search index");
+        this.log = new File(file.getPath() + ".log");
+    }
+
+    @Override
+    int[] getRebuildBuilds(BuildIndex index) {
+        return index.range(0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    void clear() {
+        tests.clear();
+    }
+
+    @Override
+    synchronized void load() throws IOException {
+        super.load();
+        replay();
+    }
+
+    @Override
+    void read(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            Postings p = new Postings();
+            p.lastBuild = TestResultStore.readVarint(in);
+            p.runs = TestResultStore.readVarint(in);
+            p.length = TestResultStore.readVarint(in);
+            p.data = new byte[Math.max(16, p.length)];
+            in.readFully(p.data, 0, p.length);
+            tests.put(name, p);
+        }
+    }
+
+    /**
+     * Records the builds appended to the log since the index file was
+     * written. A partially written last entry is dropped, so that the next
+     * one is appended at the right place.
+     */
+    private void replay() throws IOException {
+        if (!log.exists()) {
+            return;
+        }
+        byte[] bytes = new byte[(int) log.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(log));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        ByteArrayInputStream buffer = new ByteArrayInputStream(bytes);
+        DataInputStream entries = new DataInputStream(buffer);
+        int end = 0;
+        try {
+            while (end < bytes.length) {
+                int number = entries.readInt();
+                int count = entries.readInt();
+                Map<String, Boolean> runs = new LinkedHashMap<String, Boolean>();
+                for (int i = 0; i < count; i++) {
+                    String name = entries.readUTF();
+                    runs.put(name, entries.readBoolean());
+                }
+                // builds already written to the index file are ignored
+                add(number, runs);
+                end = bytes.length - buffer.available();
+            }
+        } catch (EOFException e) {
+            logger.warning("Dropping " + (bytes.length - end) + " trailing bytes of " + log);
+            RandomAccessFile out = new RandomAccessFile(log, "rw");
+            try {
+                out.setLength(end);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Writes the index file and empties the log, or deletes both on failure.
+     */
+    @Override
+    synchronized void save() {
+        super.save();
+        log.delete();
+    }
+
+    @Override
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(tests.size());
+        for (Map.Entry<String, Postings> e : tests.entrySet()) {
+            Postings p = e.getValue();
+            out.writeUTF(e.getKey());
+            TestResultStore.writeVarint(out, p.lastBuild);
+            TestResultStore.writeVarint(out, p.runs);
+            TestResultStore.writeVarint(out, p.length);
+            out.write(p.data, 0, p.length);
+        }
+    }
+
+    /**
+     * Appends the runs of a build to the log, compacting it into the index
+     * file once it has grown larger than that file.
+     */
+    private void append(int number, Map<String, Boolean> runs) {
+        try {
+            file.getParentFile().mkdirs();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(log, true)));
+            try {
+                out.writeInt(number);
+                out.writeInt(runs.size());
+                for (Map.Entry<String, Boolean> e : runs.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeBoolean(e.getValue());
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to append to " + log, e);
+            save();
+            return;
+        }
+        if (!file.exists() || log.length() > Math.max(MIN_LOG_SIZE, file.length())) {
+            save();
+        }
+    }
+
+    /**
+     * Records the outcomes of build <tt>number</tt>. A build already
+     * recorded, or older than the last one recorded, is ignored.
+     */
+    public synchronized void update(int number, TestResult result) {
+        Map<String, Boolean> runs = getRuns(result);
+        if (add(number, runs)) {
+            append(number, runs);
+        }
+    }
+
+    /**
+     * @return whether each test of a result passed, by name
+     */
+    private static Map<String, Boolean> getRuns(TestResult result) {
+        Map<String, Boolean> runs = new LinkedHashMap<String, Boolean>();
+        List<SuiteResult> suites = result.getSuites();
+        List<String> suiteNames = result.getSuiteNames();
+        for (int i = 0; i < suites.size(); i++) {
+            for (CaseResult c : suites.get(i).getCases()) {
+                runs.put(FlakyTestStore.getTestName(suiteNames.get(i), c), c.isPassed());
+            }
+        }
+        return runs;
+    }
+
+    @Override
+    boolean record(int number, TestResult result) {
+        return add(number, getRuns(result));
+    }
+
+    private boolean add(int number, Map<String, Boolean> runs) {
+        if (number <= lastBuild) {
+            return false;
+        }
+        lastBuild = number;
+        for (Map.Entry<String, Boolean> e : runs.entrySet()) {
+            Postings p = tests.get(e.getKey());
+            if (p == null) {
+                p = new Postings();
+                tests.put(e.getKey(), p);
+            }
+            p.add(number, e.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Finds the tests whose name contains <tt>query</tt>, case insensitive.
+     * 
+     * @param builds
+     *            the builds still present, sorted, or null to keep every run
+     * @return at most <tt>max</tt> tests, by name
+     */
+    public synchronized List<TestOutcomes> search(String query, int[] builds, int max) {
+        String filter = query.toLowerCase();
+        List<TestOutcomes> r = new ArrayList<TestOutcomes>();
+        for (Map.Entry<String, Postings> e : tests.entrySet()) {
+            if (e.getKey().toLowerCase().indexOf(filter) == -1) {
+                continue;
+            }
+            TestOutcomes t = e.getValue().decode(e.getKey(), builds);
+            if (t.getRuns() > 0) {
+                r.add(t);
+                if (r.size() == max) {
+                    break;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return the runs of a test, or null if it is unknown
+     */
+    public synchronized TestOutcomes getOutcomes(String name) {
+        Postings p = tests.get(name);
+        return p == null ? null : p.decode(name, null);
+    }
+
+    public synchronized int size() {
+        return tests.size();
+    }
+
+    /**
+     * @return the number of bytes used by the runs of all the tests
+     */
+    synchronized long getDataSize() {
+        long size = 0;
+        for (Postings p : tests.values()) {
+            size += p.length;
+        }
+        return size;
+    }
+
+    /**
+     * Runs of one test, delta encoded.
+     */
+    private static final class Postings {
+        byte[] data = new byte[16];
+        int length;
+        int runs;
+        int lastBuild;
+
+        void add(int number, boolean passed) {
+            long value = ((long) (number - lastBuild) << 1) | (passed ? 0 : 1);
+            if (length + 10 > data.length) {
+                byte[] grown = new byte[Math.max(data.length * 2, length + 10)];
+                System.arraycopy(data, 0, grown, 0, length);
+                data = grown;
+            }
+            while ((value & ~0x7FL) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+            runs++;
+            lastBuild = number;
+        }
+
+        TestOutcomes decode(String name, int[] builds) {
+            int[] numbers = new int[runs];
+            boolean[] passed = new boolean[runs];
+            int n = 0;
+            int build = 0;
+            long value = 0;
+            int shift = 0;
+            for (int i = 0; i < length; i++) {
+                value |= (long) (data[i] & 0x7F) << shift;
+                shift += 7;
+                if ((data[i] & 0x80) != 0) {
+                    continue;
+                }
+                build += (int) (value >>> 1);
+                if (builds == null || Arrays.binarySearch(builds, build) >= 0) {
+                    numbers[n] = build;
+                    passed[n] = (value & 1) == 0;
+                    n++;
+                }
+                value = 0;
+                shift = 0;
+            }
+            return new TestOutcomes(name, numbers, passed, n);
+        }
+    }
+}
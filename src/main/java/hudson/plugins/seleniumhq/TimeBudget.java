@@ -0,0 +1,85 @@
+package hudson.plugins.seleniumhq;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Limit on the total time of the suites of a build, configured in the
+ * {@link SeleniumhqPublisher}.
+ *
+ * <p>
+ * The budget is either a number of seconds, like <tt>600</tt>, or a
+ * percentage over the median of the previous builds, like <tt>20%</tt>.
+ *
+ * @author Pascal Martin
+ */
+public class TimeBudget {
+
+    /** Number of previous builds the median is taken from */
+    public static final int TRAILING_BUILDS = 10;
+
+    private final long seconds;
+    private final int percent;
+
+    private TimeBudget(long seconds, int percent) {
+        this.seconds = seconds;
+        this.percent = percent;
+    }
+
+    /**
+     * @return the budget, or null if <tt>value</tt> is not a valid budget
+     */
+    public static TimeBudget parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        try {
+            if (value.endsWith("%")) {
+                int percent = Integer.parseInt(value.substring(0, value.length() - 1).trim());
+                return percent >= 0 ? new TimeBudget(-1, percent) : null;
+            }
+            long seconds = Long.parseLong(value);
+            return seconds > 0 ? new TimeBudget(seconds, -1) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public boolean isRelative() {
+        return percent >= 0;
+    }
+
+    /**
+     * @param previous
+     *            total times of the previous builds, most recent last. Only
+     *            the last {@link #TRAILING_BUILDS} known ones are used.
+     * @return the limit in seconds, or -1 when a relative budget has no
+     *         previous build to compare with
+     */
+    public long getLimit(List<Long> previous) {
+        if (!isRelative()) {
+            return seconds;
+        }
+        List<Long> times = new ArrayList<Long>();
+        for (int i = previous.size() - 1; i >= 0 && times.size() < TRAILING_BUILDS; i--) {
+            if (previous.get(i) > 0) {
+                times.add(previous.get(i));
+            }
+        }
+        if (times.isEmpty()) {
+            return -1;
+        }
+        Collections.sort(times);
+        int middle = times.size() / 2;
+        long median = times.size() % 2 == 1 ? times.get(middle) : (times.get(middle - 1) + times.get(middle)) / 2;
+        return median + median * percent / 100;
+    }
+
+    @Override
+    public String toString() {
+        return isRelative() ? percent + "% over the median of the last " + TRAILING_BUILDS + " builds" : seconds
+                + "s";
+    }
+}
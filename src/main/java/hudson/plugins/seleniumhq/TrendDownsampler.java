@@ -0,0 +1,71 @@
+package hudson.plugins.seleniumhq;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling of a trend series.
+ *
+ * <p>
+ * Picks <tt>threshold</tt> points out of a long series so that the plotted
+ * shape stays close to the original one : the first and last points are
+ * kept, and in each bucket in between the point forming the largest triangle
+ * with the previously selected point and the average of the next bucket.
+ *
+ * @author Pascal Martin
+ */
+public class TrendDownsampler {
+
+    /**
+     * @param y
+     *            values of the series, at regularly spaced positions
+     * @param threshold
+     *            number of points to keep
+     * @return indices of the kept points, in ascending order
+     */
+    public static int[] lttb(double[] y, int threshold) {
+        int n = y.length;
+        if (threshold >= n || threshold < 3) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] selected = new int[threshold];
+        selected[0] = 0;
+        double bucketSize = (double) (n - 2) / (threshold - 2);
+        int a = 0;
+
+        for (int i = 0; i < threshold - 2; i++) {
+            // average of the next bucket
+            int nextStart = (int) Math.floor((i + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((i + 2) * bucketSize) + 1, n);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += j;
+                avgY += y[j];
+            }
+            int nextLength = nextEnd - nextStart;
+            avgX /= nextLength;
+            avgY /= nextLength;
+
+            // point of the current bucket with the largest triangle
+            int start = (int) Math.floor(i * bucketSize) + 1;
+            int end = (int) Math.floor((i + 1) * bucketSize) + 1;
+            double maxArea = -1;
+            int maxIndex = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((a - avgX) * (y[j] - y[a]) - (a - j) * (avgY - y[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = j;
+                }
+            }
+            selected[i + 1] = maxIndex;
+            a = maxIndex;
+        }
+
+        selected[threshold - 1] = n - 1;
+        return selected;
+    }
+}
@@ -0,0 +1,126 @@
+package hudson.plugins.seleniumhq;
+
+import java.nio.ByteBuffer;
+
+import net.sf.json.JSONObject;
+
+/**
+ * Summary of one build, as stored by {@link TrendStore}.
+ *
+ * @author Pascal Martin
+ */
+public class TrendRecord implements Comparable<TrendRecord> {
+
+    /** Size of a record in the trend file */
+    static final int SIZE = 4 + 8 + 5 * 4 + 8;
+
+    private final int number;
+    private final long timestamp;
+    private final int numTestPasses;
+    private final int numTestFailures;
+    private final int numCommandPasses;
+    private final int numCommandFailures;
+    private final int numCommandErrors;
+    private final long totalTime;
+
+    public TrendRecord(int number, long timestamp, int numTestPasses, int numTestFailures, int numCommandPasses,
+            int numCommandFailures, int numCommandErrors, long totalTime) {
+        this.number = number;
+        this.timestamp = timestamp;
+        this.numTestPasses = numTestPasses;
+        this.numTestFailures = numTestFailures;
+        this.numCommandPasses = numCommandPasses;
+        this.numCommandFailures = numCommandFailures;
+        this.numCommandErrors = numCommandErrors;
+        this.totalTime = totalTime;
+    }
+
+    /**
+     * Creates the record of a build from the counters of its action.
+     */
+    static TrendRecord of(SeleniumhqBuildAction a) {
+        return new TrendRecord(a.getOwner().getNumber(), a.getOwner().getTimestamp().getTimeInMillis(),
+                a.getNumTestPasses(), a.getNumTestFailures(), a.getNumCommandPasses(),
+                a.getNumCommandFailures(), a.getNumCommandErrors(), a.getTotalTime());
+    }
+
+    static TrendRecord read(ByteBuffer buffer, int offset) {
+        return new TrendRecord(buffer.getInt(offset), buffer.getLong(offset + 4), buffer.getInt(offset + 12),
+                buffer.getInt(offset + 16), buffer.getInt(offset + 20), buffer.getInt(offset + 24),
+                buffer.getInt(offset + 28), buffer.getLong(offset + 32));
+    }
+
+    void write(ByteBuffer buffer) {
+        buffer.putInt(number);
+        buffer.putLong(timestamp);
+        buffer.putInt(numTestPasses);
+        buffer.putInt(numTestFailures);
+        buffer.putInt(numCommandPasses);
+        buffer.putInt(numCommandFailures);
+        buffer.putInt(numCommandErrors);
+        buffer.putLong(totalTime);
+    }
+
+    /**
+     * @return the record as served by the trend data of the project
+     */
+    JSONObject toJSON() {
+        JSONObject tests = new JSONObject();
+        tests.put("passes", numTestPasses);
+        tests.put("failures", numTestFailures);
+        JSONObject commands = new JSONObject();
+        commands.put("passes", numCommandPasses);
+        commands.put("failures", numCommandFailures);
+        commands.put("errors", numCommandErrors);
+        JSONObject r = new JSONObject();
+        r.put("number", number);
+        r.put("timestamp", timestamp);
+        r.put("tests", tests);
+        r.put("commands", commands);
+        r.put("duration", totalTime);
+        return r;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getNumTestPasses() {
+        return numTestPasses;
+    }
+
+    public int getNumTestFailures() {
+        return numTestFailures;
+    }
+
+    public int getNumTestTotal() {
+        return numTestPasses + numTestFailures;
+    }
+
+    public int getNumCommandPasses() {
+        return numCommandPasses;
+    }
+
+    public int getNumCommandFailures() {
+        return numCommandFailures;
+    }
+
+    public int getNumCommandErrors() {
+        return numCommandErrors;
+    }
+
+    /**
+     * @return total time of the suites, in seconds
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    public int compareTo(TrendRecord o) {
+        return number < o.number ? -1 : (number == o.number ? 0 : 1);
+    }
+}
@@ -0,0 +1,206 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only time series of the Selenium results of a project.
+ *
+ * <p>
+ * Each publication appends a fixed-width {@link TrendRecord} to
+ * <tt>trend.dat</tt> in the project data directory, and the trend graph reads
+ * the whole history with one memory-mapped scan instead of loading every
+ * build. Records of deleted builds are dropped by rewriting the file. A
+ * missing file is rebuilt from the {@link BuildIndex} on first use.
+ *
+ * <p>
+ * Layout : <tt>"SHQT" version</tt> header, then the records in publication
+ * order, in a {@link RecordFile}. A record appended again for the same build
+ * replaces the earlier one.
+ *
+ * @author Pascal Martin
+ */
+public class TrendStore {
+
+    static final String FILE_NAME = "trend.dat";
+
+    private static final byte[] MAGIC = { 'S', 'H', 'Q', 'T' };
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = RecordFile.HEADER_SIZE;
+
+    private static final Logger logger = Logger.getLogger(TrendStore.class.getName());
+
+    private static final ConcurrentMap<String, TrendStore> STORES = new ConcurrentHashMap<String, TrendStore>();
+
+    /**
+     * Gets the store of a project, rebuilding it if needed.
+     */
+    public static TrendStore get(AbstractProject<?, ?> project) {
+        String key = project.getRootDir().getPath();
+        TrendStore store = STORES.get(key);
+        if (store == null) {
+            store = new TrendStore(new File(SeleniumhqPublisher.getSeleniumDataDir(project), FILE_NAME));
+            TrendStore existing = STORES.putIfAbsent(key, store);
+            if (existing != null) {
+                store = existing;
+            }
+        }
+        store.checkExists(project);
+        return store;
+    }
+
+    private final RecordFile file;
+
+    TrendStore(File file) {
+        this.file = new RecordFile(file, MAGIC, VERSION, TrendRecord.SIZE, "trend");
+    }
+
+    private synchronized void checkExists(AbstractProject<?, ?> project) {
+        if (file.exists()) {
+            return;
+        }
+        List<TrendRecord> records = new ArrayList<TrendRecord>();
+        BuildIndex index = BuildIndex.get(project);
+        for (int n : index.range(0, Integer.MAX_VALUE)) {
+            AbstractBuild<?, ?> b = project.getBuildByNumber(n);
+            SeleniumhqBuildAction a = b == null ? null : b.getAction(SeleniumhqBuildAction.class);
+            if (a != null) {
+                records.add(TrendRecord.of(a));
+            }
+        }
+        try {
+            rewrite(records);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to rebuild " + file.getFile(), e);
+        }
+    }
+
+    /**
+     * @return a value that changes whenever the content of the store changes
+     */
+    public synchronized String getVersion() {
+        return file.getVersion();
+    }
+
+    /**
+     * Appends the record of a build.
+     */
+    public synchronized void append(TrendRecord record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(TrendRecord.SIZE);
+        record.write(buffer);
+        buffer.flip();
+        file.append(buffer);
+    }
+
+    /**
+     * Drops the record of a build.
+     */
+    public synchronized void remove(int number) throws IOException {
+        List<TrendRecord> records = new ArrayList<TrendRecord>(read());
+        boolean found = false;
+        for (int i = records.size() - 1; i >= 0; i--) {
+            if (records.get(i).getNumber() == number) {
+                records.remove(i);
+                found = true;
+            }
+        }
+        if (found) {
+            rewrite(records);
+        }
+    }
+
+    /**
+     * Reads all the records, sorted by build number.
+     */
+    public synchronized List<TrendRecord> read() throws IOException {
+        ByteBuffer buffer = file.read();
+        if (buffer == null) {
+            return Collections.emptyList();
+        }
+        TrendRecord[] records = new TrendRecord[file.count(buffer)];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = TrendRecord.read(buffer, file.offset(i));
+        }
+        return sort(records);
+    }
+
+    /**
+     * Reads the total times of the last <tt>count</tt> builds numbered below
+     * <tt>before</tt> that recorded one, by build number. Only the end of the
+     * file is scanned, backwards from the last record appended.
+     */
+    public synchronized List<Long> readTotalTimes(int before, int count) throws IOException {
+        ByteBuffer buffer = file.read();
+        if (buffer == null) {
+            return Collections.emptyList();
+        }
+        // the last record appended for a build wins
+        Set<Integer> seen = new HashSet<Integer>();
+        SortedMap<Integer, Long> times = new TreeMap<Integer, Long>();
+        int i = file.count(buffer);
+        while (--i >= 0 && times.size() < count) {
+            TrendRecord record = TrendRecord.read(buffer, file.offset(i));
+            // builds summarized before the total time was recorded have none
+            if (record.getNumber() < before && seen.add(record.getNumber()) && record.getTotalTime() > 0) {
+                times.put(record.getNumber(), record.getTotalTime());
+            }
+        }
+        return new ArrayList<Long>(times.values());
+    }
+
+    /**
+     * Reads the records of the builds between <tt>from</tt> and <tt>to</tt>
+     * included.
+     */
+    public List<TrendRecord> read(int from, int to) throws IOException {
+        List<TrendRecord> r = new ArrayList<TrendRecord>();
+        for (TrendRecord record : read()) {
+            if (record.getNumber() >= from && record.getNumber() <= to) {
+                r.add(record);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Sorts the records by build number, keeping the last one appended for
+     * each build.
+     */
+    private static List<TrendRecord> sort(TrendRecord[] records) {
+        // stable sort : for a given build the last appended stays last
+        Arrays.sort(records);
+        List<TrendRecord> r = new ArrayList<TrendRecord>(records.length);
+        for (int i = 0; i < records.length; i++) {
+            if (i + 1 < records.length && records[i + 1].getNumber() == records[i].getNumber()) {
+                continue;
+            }
+            r.add(records[i]);
+        }
+        return r;
+    }
+
+    private void rewrite(List<TrendRecord> records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(records.size() * TrendRecord.SIZE);
+        for (TrendRecord record : records) {
+            record.write(buffer);
+        }
+        buffer.flip();
+        file.rewrite(buffer);
+    }
+}
@@ -0,0 +1,24 @@
+/*
+ * Test browser of a Selenium build : shows or hides the commands of a test,
+ * loading them from the server the first time.
+ */
+function seleniumhqCase(suite, index) {
+    var div = document.getElementById("seleniumhq-case-" + suite + "-" + index);
+    if (div.style.display == "none") {
+        div.style.display = "block";
+        if (!div.loaded) {
+            div.loaded = true;
+            new Ajax.Updater(div, "case?suite=" + suite + "&index=" + index, { method : "get" });
+        }
+    } else {
+        div.style.display = "none";
+    }
+    return false;
+}
+
+function seleniumhqPage(page) {
+    var form = document.getElementById("seleniumhq-tests");
+    form.page.value = page;
+    form.submit();
+    return false;
+}
@@ -0,0 +1,173 @@
+/*
+ * Trend chart of the Selenium results of a project, drawn in the browser
+ * from the JSON trend data served by SeleniumhqProjectAction.doTrend.
+ *
+ * The chart is a stacked area chart of one group of series (tests, commands
+ * or duration). Clicking on the chart opens the Selenium report of the
+ * nearest build, and the older/newer links page through the history.
+ * Browsers without canvas get the image rendered by the server instead,
+ * with its clickable map.
+ */
+function SeleniumhqTrend(id, url, fallback, map) {
+    this.canvas = document.getElementById(id);
+    this.url = url;
+    this.series = "tests";
+    this.pages = [];
+    this.data = null;
+    if (!this.canvas) {
+        return;
+    }
+    if (!this.canvas.getContext) {
+        var img = document.createElement("img");
+        img.src = fallback;
+        this.canvas.parentNode.replaceChild(img, this.canvas);
+        this.canvas = null;
+        SeleniumhqTrend.loadMap(img, map);
+        return;
+    }
+    var self = this;
+    this.canvas.onclick = function(e) { self.click(e || window.event); };
+    this.load(null);
+}
+
+SeleniumhqTrend.SERIES = {
+    tests : [
+        { name : "passes", color : "#729FCF", value : function(b) { return b.tests.passes; } },
+        { name : "failures", color : "#EF2929", value : function(b) { return b.tests.failures; } }
+    ],
+    commands : [
+        { name : "passes", color : "#729FCF", value : function(b) { return b.commands.passes; } },
+        { name : "failures", color : "#EF2929", value : function(b) { return b.commands.failures; } },
+        { name : "errors", color : "#FCE94F", value : function(b) { return b.commands.errors; } }
+    ],
+    duration : [
+        { name : "seconds", color : "#8AE234", value : function(b) { return b.duration; } }
+    ]
+};
+
+/**
+ * Loads the image map of the server rendered chart, as Hudson does for the
+ * images with a lazymap attribute.
+ */
+SeleniumhqTrend.loadMap = function(img, url) {
+    new Ajax.Request(url, {
+        method : "get",
+        onSuccess : function(rsp) {
+            var div = document.createElement("div");
+            document.body.appendChild(div);
+            div.innerHTML = rsp.responseText;
+            var id = "seleniumhq-trend-map";
+            div.firstChild.setAttribute("name", id);
+            img.setAttribute("usemap", "#" + id);
+        }
+    });
+};
+
+SeleniumhqTrend.MARGIN = { left : 40, right : 5, top : 5, bottom : 20 };
+
+SeleniumhqTrend.prototype.load = function(to) {
+    if (!this.canvas) {
+        return;
+    }
+    var self = this;
+    new Ajax.Request(this.url + (to == null ? "" : "?to=" + to), {
+        method : "get",
+        onSuccess : function(rsp) {
+            self.data = rsp.responseText.evalJSON();
+            self.draw();
+        }
+    });
+};
+
+SeleniumhqTrend.prototype.older = function() {
+    if (this.data && this.data.previous != null) {
+        this.pages.push(this.data.previous);
+        this.load(this.data.previous);
+    }
+    return false;
+};
+
+SeleniumhqTrend.prototype.newer = function() {
+    if (this.pages.length > 0) {
+        this.pages.pop();
+        this.load(this.pages.length > 0 ? this.pages[this.pages.length - 1] : null);
+    }
+    return false;
+};
+
+SeleniumhqTrend.prototype.show = function(series) {
+    this.series = series;
+    this.draw();
+};
+
+SeleniumhqTrend.prototype.draw = function() {
+    if (!this.canvas) {
+        return;
+    }
+    var ctx = this.canvas.getContext("2d");
+    var w = this.canvas.width, h = this.canvas.height, m = SeleniumhqTrend.MARGIN;
+    var builds = this.data ? this.data.builds : [];
+    var series = SeleniumhqTrend.SERIES[this.series];
+    ctx.clearRect(0, 0, w, h);
+    if (builds.length == 0) {
+        return;
+    }
+
+    // cumulated values of the stacked series
+    var stacks = [], max = 0, i, j;
+    for (j = 0; j < series.length; j++) {
+        stacks[j] = [];
+        for (i = 0; i < builds.length; i++) {
+            stacks[j][i] = series[j].value(builds[i]) + (j > 0 ? stacks[j - 1][i] : 0);
+            max = Math.max(max, stacks[j][i]);
+        }
+    }
+    max = max || 1;
+    var pw = w - m.left - m.right, ph = h - m.top - m.bottom;
+    var x = function(i) { return m.left + (builds.length == 1 ? pw / 2 : i * pw / (builds.length - 1)); };
+    var y = function(v) { return m.top + ph - v * ph / max; };
+
+    // top series first, the lower ones are drawn over it
+    for (j = series.length - 1; j >= 0; j--) {
+        ctx.fillStyle = series[j].color;
+        ctx.beginPath();
+        ctx.moveTo(x(0), y(0));
+        for (i = 0; i < builds.length; i++) {
+            ctx.lineTo(x(i), y(stacks[j][i]));
+        }
+        ctx.lineTo(x(builds.length - 1), y(0));
+        ctx.closePath();
+        ctx.fill();
+    }
+
+    ctx.strokeStyle = "#000000";
+    ctx.beginPath();
+    ctx.moveTo(m.left, m.top);
+    ctx.lineTo(m.left, m.top + ph);
+    ctx.lineTo(m.left + pw, m.top + ph);
+    ctx.stroke();
+
+    ctx.fillStyle = "#000000";
+    if (ctx.fillText) {
+        ctx.textAlign = "right";
+        ctx.fillText(String(max), m.left - 3, m.top + 8);
+        ctx.fillText("0", m.left - 3, m.top + ph);
+        ctx.textAlign = "left";
+        ctx.fillText("#" + builds[0].number, m.left, h - 5);
+        ctx.textAlign = "right";
+        ctx.fillText("#" + builds[builds.length - 1].number, m.left + pw, h - 5);
+    }
+};
+
+SeleniumhqTrend.prototype.click = function(e) {
+    var builds = this.data ? this.data.builds : [];
+    if (builds.length == 0) {
+        return;
+    }
+    var m = SeleniumhqTrend.MARGIN;
+    var offset = e.offsetX != null ? e.offsetX : e.layerX;
+    var pw = this.canvas.width - m.left - m.right;
+    var i = builds.length == 1 ? 0 : Math.round((offset - m.left) * (builds.length - 1) / pw);
+    i = Math.max(0, Math.min(builds.length - 1, i));
+    window.location = builds[i].number + "/seleniumhq/";
+};
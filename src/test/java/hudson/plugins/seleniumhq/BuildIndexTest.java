@@ -0,0 +1,59 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link BuildIndex}
+ */
+public class BuildIndexTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("builds", ".idx");
+		file.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	public void testLookups() throws Exception {
+		BuildIndex index = new BuildIndex(file);
+		for (int n : new int[] { 7, 2, 40, 3, 12 }) {
+			index.add(n);
+		}
+		assertEquals(40, index.last());
+		assertEquals(12, index.previous(40));
+		assertEquals(12, index.previous(20));
+		assertEquals(2, index.previous(3));
+		assertEquals(-1, index.previous(2));
+		assertEquals(40, index.previous(Integer.MAX_VALUE));
+
+		int[] range = index.range(3, 12);
+		assertEquals(3, range.length);
+		assertEquals(3, range[0]);
+		assertEquals(12, range[2]);
+		assertEquals(0, index.range(13, 39).length);
+		assertEquals(12, index.last(2)[0]);
+	}
+
+	public void testRemoveAndReload() throws Exception {
+		BuildIndex index = new BuildIndex(file);
+		for (int n = 1; n <= 100; n++) {
+			index.add(n);
+		}
+		index.remove(50);
+		assertEquals(49, index.previous(51));
+
+		BuildIndex reloaded = new BuildIndex(file);
+		reloaded.load();
+		assertEquals(99, reloaded.size());
+		assertEquals(49, reloaded.previous(51));
+		assertEquals(100, reloaded.last());
+	}
+}
@@ -0,0 +1,70 @@
+package hudson.plugins.seleniumhq;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link CasePage}
+ */
+public class CasePageTest extends TestCase {
+
+	private TestResult result;
+
+	@Override
+	protected void setUp() throws Exception {
+		result = new TestResult();
+		for (int s = 0; s < 3; s++) {
+			List<CaseResult> cases = new ArrayList<CaseResult>();
+			for (int i = 0; i < 40; i++) {
+				cases.add(new CaseResult("Suite" + s + "Test" + i, i % 10 != 0));
+			}
+			result.getSuites().add(new SuiteResult(36, 4, 0, 0, 0, "", cases));
+			result.getFiles().add("/ws/results/suite" + s + ".html");
+		}
+	}
+
+	public void testPaging() throws Exception {
+		CasePage page = new CasePage(result, null, null, 2);
+		assertEquals(120, page.getTotal());
+		assertEquals(3, page.getPageCount());
+		assertEquals(2, page.getPage());
+		assertEquals(20, page.getEntries().size());
+		CasePage.Entry e = page.getEntries().get(0);
+		assertEquals(2, e.getSuite());
+		assertEquals(20, e.getIndex());
+		assertEquals("suite2.html", e.getFile());
+	}
+
+	public void testPageOutOfRange() throws Exception {
+		CasePage page = new CasePage(result, null, null, 10);
+		assertEquals(2, page.getPage());
+		assertEquals(20, page.getEntries().size());
+	}
+
+	public void testNegativePage() throws Exception {
+		CasePage page = new CasePage(result, null, null, -5);
+		assertEquals(0, page.getPage());
+		assertEquals(CasePage.PAGE_SIZE, page.getEntries().size());
+		assertEquals(0, page.getEntries().get(0).getIndex());
+	}
+
+	public void testNoMatch() throws Exception {
+		CasePage page = new CasePage(result, "failed", "nothing", 3);
+		assertEquals(0, page.getTotal());
+		assertEquals(0, page.getPageCount());
+		assertEquals(0, page.getPage());
+		assertTrue(page.getEntries().isEmpty());
+	}
+
+	public void testFilters() throws Exception {
+		CasePage page = new CasePage(result, "failed", null, 0);
+		assertEquals(12, page.getTotal());
+		assertFalse(page.getEntries().get(0).getResult().isPassed());
+
+		page = new CasePage(result, "passed", "suite1test1", 0);
+		// Test1, Test11 to Test19 but Test10
+		assertEquals(10, page.getTotal());
+	}
+}
@@ -0,0 +1,80 @@
+package hudson.plugins.seleniumhq;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link DashboardSummary}
+ */
+public class DashboardSummaryTest extends TestCase {
+
+	private static DurationStats suite(String name, long seconds) {
+		DurationStats s = new DurationStats(name);
+		s.record(1, seconds);
+		return s;
+	}
+
+	private static TestHistory flaky(String name, boolean... outcomes) {
+		TestHistory h = new TestHistory(name);
+		for (int i = 0; i < outcomes.length; i++) {
+			h.record(i + 1, outcomes[i]);
+		}
+		return h;
+	}
+
+	private static ProjectSummary project(String name, int passes, int failures, List<DurationStats> suites,
+			List<TestHistory> flaky) {
+		return new ProjectSummary(name, "job/" + name + "/", 1, passes, failures, 60, suites, flaky);
+	}
+
+	public void testAggregation() throws Exception {
+		List<ProjectSummary> projects = new ArrayList<ProjectSummary>();
+		projects.add(project("a", 90, 10, Arrays.asList(suite("a1.html", 100), suite("a2.html", 10)),
+				Arrays.asList(flaky("a1.html/t", true, false, true, false, true, false))));
+		projects.add(project("b", 50, 0, Arrays.asList(suite("b1.html", 50)),
+				Arrays.asList(flaky("b1.html/t", true, true, false, true, true, true))));
+		projects.add(project("c", 0, 0, Collections.<DurationStats>emptyList(),
+				Collections.<TestHistory>emptyList()));
+
+		DashboardSummary s = new DashboardSummary(projects);
+		assertEquals(140, s.getNumTestPasses());
+		assertEquals(10, s.getNumTestFailures());
+		assertEquals(93, s.getPassRate());
+		assertEquals(1, s.getFailingProjects());
+
+		// lowest pass rate first
+		assertEquals("a", s.getProjects().get(0).getName());
+		assertEquals(90, s.getProjects().get(0).getPassRate());
+		assertEquals("b", s.getProjects().get(1).getName());
+
+		assertEquals(3, s.getSlowestSuites().size());
+		assertEquals("a1.html", s.getSlowestSuites().get(0).getName());
+		assertEquals(100, s.getSlowestSuites().get(0).getMean());
+		assertEquals("b1.html", s.getSlowestSuites().get(1).getName());
+		assertEquals("b", s.getSlowestSuites().get(1).getProject());
+
+		assertEquals(2, s.getFlakyTests().size());
+		assertEquals("a1.html/t", s.getFlakyTests().get(0).getName());
+		assertEquals("a", s.getFlakyTests().get(0).getProject());
+	}
+
+	public void testLimits() throws Exception {
+		List<ProjectSummary> projects = new ArrayList<ProjectSummary>();
+		for (int p = 0; p < 20; p++) {
+			List<DurationStats> suites = new ArrayList<DurationStats>();
+			for (int i = 0; i < 3; i++) {
+				suites.add(suite("s" + i + ".html", p * 10 + i + 1));
+			}
+			projects.add(project("p" + p, 1, 0, suites, Collections.<TestHistory>emptyList()));
+		}
+		DashboardSummary s = new DashboardSummary(projects);
+		assertEquals(20, s.getProjects().size());
+		assertEquals(DashboardSummary.MAX_ITEMS, s.getSlowestSuites().size());
+		assertEquals(193, s.getSlowestSuites().get(0).getMean());
+		assertEquals("p19", s.getSlowestSuites().get(0).getProject());
+	}
+}
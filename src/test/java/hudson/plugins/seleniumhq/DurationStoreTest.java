@@ -0,0 +1,75 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link DurationStore} and {@link DurationStats}
+ */
+public class DurationStoreTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("durations", ".dat");
+		file.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private static TestResult result(long... totalTimes) {
+		TestResult result = new TestResult();
+		for (int i = 0; i < totalTimes.length; i++) {
+			result.getSuites().add(new SuiteResult(1, 0, 1, 0, 0, "", new ArrayList<CaseResult>(), totalTimes[i]));
+			result.getFiles().add("/ws/results/suite" + i + ".html");
+		}
+		return result;
+	}
+
+	public void testStats() throws Exception {
+		DurationStats s = new DurationStats("suite.html");
+		long[] durations = { 10, 12, 11, 9, 10 };
+		for (int i = 0; i < durations.length; i++) {
+			s.record(i + 1, durations[i]);
+		}
+		assertEquals(10.4, s.getMean(), 0.001);
+		assertFalse(s.isSlow(12));
+		assertTrue(s.isSlow(30));
+	}
+
+	public void testNotEnoughRuns() throws Exception {
+		DurationStats s = new DurationStats("suite.html");
+		s.record(1, 10);
+		s.record(2, 10);
+		assertFalse(s.isSlow(100));
+	}
+
+	public void testUpdate() throws Exception {
+		DurationStore store = new DurationStore(file);
+		for (int n = 1; n <= 10; n++) {
+			assertTrue(store.update(n, result(20, 5)).isEmpty());
+		}
+		List<Slowdown> slowdowns = store.update(11, result(60, 5));
+		assertEquals(1, slowdowns.size());
+		Slowdown slowdown = slowdowns.get(0);
+		assertEquals("suite0.html", slowdown.getName());
+		assertEquals(60, slowdown.getDuration());
+		assertEquals(20, slowdown.getUsualDuration());
+		assertEquals(200, slowdown.getPercent());
+
+		// already recorded
+		assertTrue(store.update(11, result(600, 600)).isEmpty());
+
+		DurationStore copy = new DurationStore(file);
+		copy.load();
+		assertEquals(2, copy.size());
+		assertEquals(11, copy.getStats("suite1.html").getRuns());
+	}
+}
@@ -0,0 +1,137 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link FlakyTestStore} and {@link TestHistory}
+ */
+public class FlakyTestStoreTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("flaky", ".dat");
+		file.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private static TestResult result(boolean... passed) {
+		TestResult result = new TestResult();
+		List<CaseResult> cases = new ArrayList<CaseResult>();
+		for (int i = 0; i < passed.length; i++) {
+			cases.add(new CaseResult("Test" + i, passed[i]));
+		}
+		result.getSuites().add(new SuiteResult(0, 0, 0, 0, 0, "", cases));
+		result.getFiles().add("/ws/results/suite.html");
+		return result;
+	}
+
+	public void testHistory() throws Exception {
+		TestHistory h = new TestHistory("suite.html/Test0");
+		boolean[] outcomes = { true, false, true, true, false, true };
+		for (int i = 0; i < outcomes.length; i++) {
+			h.record(i + 1, outcomes[i]);
+		}
+		assertEquals("PFPPFP", h.getOutcomes());
+		assertEquals(6, h.getRuns());
+		assertEquals(2, h.getFailureCount());
+		assertEquals(4, h.getFlips());
+		assertEquals(80, h.getScorePercent());
+		assertTrue(h.isFlaky());
+	}
+
+	public void testHistoryWindow() throws Exception {
+		TestHistory h = new TestHistory("t");
+		h.record(1, false);
+		for (int i = 0; i < TestHistory.MAX_RUNS; i++) {
+			h.record(i + 2, true);
+		}
+		// the failure has left the window
+		assertEquals(TestHistory.MAX_RUNS, h.getRuns());
+		assertEquals(0, h.getFailureCount());
+		assertEquals(0, h.getFlips());
+		assertFalse(h.isFlaky());
+	}
+
+	public void testBrokenIsNotFlaky() throws Exception {
+		TestHistory h = new TestHistory("t");
+		for (int i = 0; i < 10; i++) {
+			h.record(i + 1, i < 5);
+		}
+		assertEquals(1, h.getFlips());
+		assertFalse(h.isFlaky());
+	}
+
+	public void testUpdateAndReload() throws Exception {
+		FlakyTestStore store = new FlakyTestStore(file);
+		for (int n = 1; n <= 10; n++) {
+			store.update(n, result(true, n % 2 == 0));
+		}
+		// already recorded
+		store.update(10, result(false, false));
+
+		List<TestHistory> flaky = store.getFlakyTests(10);
+		assertEquals(1, flaky.size());
+		assertEquals("suite.html/Test1", flaky.get(0).getName());
+		assertEquals(9, flaky.get(0).getFlips());
+
+		FlakyTestStore copy = new FlakyTestStore(file);
+		copy.load();
+		assertEquals(2, copy.size());
+		assertEquals("FPFPFPFPFP", copy.getHistory("suite.html/Test1").getOutcomes());
+		assertEquals(10, copy.getHistory("suite.html/Test0").getLastBuild());
+	}
+
+	public void testIdleTestsForgotten() throws Exception {
+		FlakyTestStore store = new FlakyTestStore(file);
+		store.update(1, result(true, true));
+		store.update(2 + FlakyTestStore.MAX_IDLE_BUILDS, result(true));
+		assertEquals(1, store.size());
+		assertNull(store.getHistory("suite.html/Test1"));
+	}
+
+	public void testSameFileNameInTwoDirectories() throws Exception {
+		TestResult result = result(true);
+		result.getSuites().add(new SuiteResult(0, 0, 0, 0, 0, "", new ArrayList<CaseResult>(
+				result.getSuites().get(0).getCases())));
+		result.getFiles().set(0, "/ws/login/suite.html");
+		result.getFiles().add("/ws/admin/suite.html");
+		result.resultFiles.add("login/suite.html");
+		result.resultFiles.add("admin/suite.html");
+
+		FlakyTestStore store = new FlakyTestStore(file);
+		store.update(1, result);
+		assertEquals(2, store.size());
+		assertNotNull(store.getHistory("login/suite.html/Test0"));
+		assertNotNull(store.getHistory("admin/suite.html/Test0"));
+	}
+
+	public void testOutdatedFileRejected() throws Exception {
+		FlakyTestStore store = new FlakyTestStore(file);
+		store.update(1, result(true));
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(4);
+			raf.writeInt(FlakyTestStore.VERSION - 1);
+		} finally {
+			raf.close();
+		}
+		try {
+			new FlakyTestStore(file).load();
+			fail("Should have IOException");
+		} catch (IOException expected) {
+			// rebuilt by the caller
+		}
+	}
+}
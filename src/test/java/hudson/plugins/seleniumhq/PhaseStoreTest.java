@@ -0,0 +1,117 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.SortedMap;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link PhaseStore}, {@link PhaseTimings} and
+ * {@link ServerStartDetector}
+ */
+public class PhaseStoreTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("phases", ".dat");
+		file.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private static PhaseTimings timings(long run) {
+		PhaseTimings t = new PhaseTimings();
+		t.add(PhaseTimings.STARTUP, 2000);
+		t.add(PhaseTimings.RUN, run);
+		t.add(PhaseTimings.PARSE, 500);
+		return t;
+	}
+
+	public void testAppendAndRead() throws Exception {
+		PhaseStore store = new PhaseStore(file);
+		store.append(2, timings(6000));
+		store.append(1, timings(5000));
+		assertEquals(PhaseStore.HEADER_SIZE + 2 * PhaseStore.RECORD_SIZE, file.length());
+
+		SortedMap<Integer, PhaseTimings> phases = store.read();
+		assertEquals(2, phases.size());
+		assertEquals(Integer.valueOf(1), phases.firstKey());
+		assertEquals(5000L, phases.get(1).get(PhaseTimings.RUN));
+		assertEquals(8500L, phases.get(2).getTotal());
+		assertEquals(0L, phases.get(2).get(PhaseTimings.DOWNLOAD));
+	}
+
+	public void testLastAppendWins() throws Exception {
+		PhaseStore store = new PhaseStore(file);
+		store.append(1, timings(5000));
+		store.append(1, timings(9000));
+		assertEquals(1, store.read().size());
+		assertEquals(9000L, store.read().get(1).get(PhaseTimings.RUN));
+	}
+
+	public void testRemove() throws Exception {
+		PhaseStore store = new PhaseStore(file);
+		for (int n = 1; n <= 10; n++) {
+			store.append(n, timings(n * 1000));
+		}
+		store.remove(5);
+		store.remove(42);
+		assertEquals(9, store.read().size());
+		assertFalse(store.read().containsKey(5));
+		assertEquals(PhaseStore.HEADER_SIZE + 9 * PhaseStore.RECORD_SIZE, file.length());
+	}
+
+	public void testPartialRecordIgnored() throws Exception {
+		PhaseStore store = new PhaseStore(file);
+		store.append(1, timings(5000));
+		FileOutputStream out = new FileOutputStream(file, true);
+		out.write(new byte[] { 0, 0, 0, 2, 0 });
+		out.close();
+		assertEquals(1, store.read().size());
+	}
+
+	public void testAppendAfterPartialRecord() throws Exception {
+		PhaseStore store = new PhaseStore(file);
+		store.append(1, timings(5000));
+		FileOutputStream out = new FileOutputStream(file, true);
+		out.write(new byte[] { 0, 0, 0, 2, 0 });
+		out.close();
+		store.append(3, timings(7000));
+		assertEquals(PhaseStore.HEADER_SIZE + 2 * PhaseStore.RECORD_SIZE, file.length());
+		SortedMap<Integer, PhaseTimings> phases = store.read();
+		assertEquals(2, phases.size());
+		assertEquals(7000L, phases.get(3).get(PhaseTimings.RUN));
+	}
+
+	public void testPhases() throws Exception {
+		PhaseTimings t = timings(5500);
+		t.add(PhaseTimings.CLEAN, -10);
+		List<PhaseTimings.Phase> phases = t.getPhases();
+		assertEquals(3, phases.size());
+		assertEquals("startup", phases.get(0).getName());
+		assertEquals("run", phases.get(1).getName());
+		assertEquals(68, phases.get(1).getPercent());
+	}
+
+	public void testServerStartDetected() throws Exception {
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		ServerStartDetector detector = new ServerStartDetector(log);
+		String before = "12:00:01.000 INFO - Java: Sun Microsystems Inc.\n";
+		detector.write(before.getBytes());
+		assertEquals(0, detector.getStartedAt());
+		long start = System.currentTimeMillis();
+		String started = "12:00:02.000 INFO - " + ServerStartDetector.MARKER + "@1a2b3c\n";
+		detector.write(started.getBytes());
+		assertTrue(detector.getStartedAt() >= start);
+		detector.close();
+		assertEquals(before + started, log.toString());
+	}
+}
@@ -0,0 +1,130 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link ProfileTemplateCache}
+ */
+public class ProfileTemplateCacheTest extends TestCase {
+
+	private File dir;
+	private File template;
+	private File root;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = File.createTempFile("profiles", "");
+		dir.delete();
+		template = new File(dir, "template");
+		root = new File(dir, "cache");
+		new File(template, "extensions").mkdirs();
+		FileUtils.writeStringToFile(new File(template, "prefs.js"), "user_pref(\"browser.startup.page\", 0);");
+		FileUtils.writeStringToFile(new File(template, "extensions/addon.xpi"), "addon");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	public void testCopiedOnce() throws Exception {
+		File copy = ProfileTemplateCache.prepare(template, root, 3, "a");
+		assertEquals("addon", FileUtils.readFileToString(new File(copy, "extensions/addon.xpi")));
+		assertTrue(new File(copy, ProfileTemplateCache.COMPLETE).exists());
+
+		// an unchanged template is not copied again
+		new File(copy, "marker").createNewFile();
+		assertEquals(copy, ProfileTemplateCache.prepare(template, root, 3, "a"));
+		assertTrue(new File(copy, "marker").exists());
+		assertEquals(1, copies());
+	}
+
+	private int copies() {
+		int n = 0;
+		for (File f : root.listFiles()) {
+			if (f.isDirectory()) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	public void testStamp() throws Exception {
+		File prefs = new File(template, "prefs.js");
+		long modified = prefs.lastModified();
+		File copy = ProfileTemplateCache.prepare(template, root, 3, "a");
+
+		// same names, sizes and times : the files are not read again
+		FileUtils.writeStringToFile(prefs, "user_pref(\"browser.startup.page\", 1);");
+		prefs.setLastModified(modified);
+		assertEquals(copy, ProfileTemplateCache.prepare(template, root, 3, "a"));
+
+		prefs.setLastModified(modified + 2000);
+		assertFalse(copy.equals(ProfileTemplateCache.prepare(template, root, 3, "a")));
+	}
+
+	public void testLeasedCopyKept() throws Exception {
+		File first = ProfileTemplateCache.prepare(template, root, 1, "running");
+		first.setLastModified(System.currentTimeMillis() - 20000);
+		FileUtils.writeStringToFile(new File(template, "prefs.js"), "user_pref(\"browser.startup.page\", 1);");
+		File second = ProfileTemplateCache.prepare(template, root, 1, "other");
+		// still used by the first build
+		assertTrue(first.exists());
+		assertTrue(second.exists());
+
+		ProfileTemplateCache.release(first, "running");
+		ProfileTemplateCache.release(second, "other");
+		second.setLastModified(System.currentTimeMillis() - 10000);
+		FileUtils.writeStringToFile(new File(template, "prefs.js"), "user_pref(\"browser.startup.page\", 2);");
+		File third = ProfileTemplateCache.prepare(template, root, 1, "other");
+		assertFalse(first.exists());
+		assertFalse(second.exists());
+		assertTrue(third.exists());
+	}
+
+	public void testChecksum() throws Exception {
+		String checksum = ProfileTemplateCache.checksum(template);
+		assertEquals(checksum, ProfileTemplateCache.checksum(ProfileTemplateCache.prepare(template, root, 3, "a")));
+
+		FileUtils.writeStringToFile(new File(template, "extensions/addon.xpi"), "addon 2");
+		assertFalse(checksum.equals(ProfileTemplateCache.checksum(template)));
+		new File(template, "extensions/addon.xpi").renameTo(new File(template, "extensions/other.xpi"));
+		String renamed = ProfileTemplateCache.checksum(template);
+		FileUtils.writeStringToFile(new File(template, "extensions/other.xpi"), "addon");
+		assertFalse(checksum.equals(ProfileTemplateCache.checksum(template)));
+		assertFalse(renamed.equals(ProfileTemplateCache.checksum(template)));
+	}
+
+	public void testChangeInvalidates() throws Exception {
+		File first = ProfileTemplateCache.prepare(template, root, 2, "a");
+		ProfileTemplateCache.release(first, "a");
+		first.setLastModified(System.currentTimeMillis() - 20000);
+		FileUtils.writeStringToFile(new File(template, "prefs.js"), "user_pref(\"browser.startup.page\", 1);");
+		File second = ProfileTemplateCache.prepare(template, root, 2, "a");
+		ProfileTemplateCache.release(second, "a");
+		assertFalse(first.equals(second));
+		assertTrue(first.exists());
+		second.setLastModified(System.currentTimeMillis() - 10000);
+
+		// only the 2 most recently used are kept
+		FileUtils.writeStringToFile(new File(template, "prefs.js"), "user_pref(\"browser.startup.page\", 2);");
+		File third = ProfileTemplateCache.prepare(template, root, 2, "a");
+		assertFalse(first.exists());
+		assertTrue(second.exists());
+		assertTrue(third.exists());
+	}
+
+	public void testMissingTemplate() throws Exception {
+		try {
+			ProfileTemplateCache.prepare(new File(dir, "none"), root, 3, "a");
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link ReportIndexPage}
+ */
+public class ReportIndexPageTest extends TestCase {
+
+	public void testFailuresFirst() throws Exception {
+		TestResult result = new TestResult();
+		result.parse(new File(getClass().getResource("testResult.html").toURI()));
+		result.parse(new File(getClass().getResource("testResultWithFailure.html").toURI()));
+
+		StringWriter out = new StringWriter();
+		ReportIndexPage.write(result, Arrays.asList("0/passed.html", "1/with failure.html"), true, out);
+		String page = out.toString();
+
+		assertTrue(page.indexOf("(running)") == -1);
+		assertTrue(page.indexOf("1/with%20failure.html#testresult0") != -1);
+		// the failing file and test are listed first
+		assertTrue(page.indexOf("1/with%20failure.html\"") < page.indexOf("0/passed.html\""));
+		assertTrue(page.indexOf(">TestErrorChecking<") < page.indexOf(">TestType<"));
+	}
+
+	public void testRunning() throws Exception {
+		StringWriter out = new StringWriter();
+		ReportIndexPage.write(new TestResult(), Arrays.<String>asList(), false, out);
+		assertTrue(out.toString().indexOf("(running)") != -1);
+	}
+}
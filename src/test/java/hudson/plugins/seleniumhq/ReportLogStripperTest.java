@@ -0,0 +1,49 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link ReportLogStripper}
+ */
+public class ReportLogStripperTest extends TestCase {
+
+	private static final String REPORT = "<table><tr class=\"  status_failed\"><td>verifyText</td></tr></table>"
+			+ "<pre>info: Executing: |open | / |  |\ninfo: Executing: |click | link |  |\n</pre></body></html>";
+
+	private String strip(ReportLogStripper stripper, String input) throws Exception {
+		StringWriter out = new StringWriter();
+		stripper.strip(new StringReader(input), out);
+		return out.toString();
+	}
+
+	public void testRemoveLog() throws Exception {
+		ReportLogStripper stripper = new ReportLogStripper(0);
+		String result = strip(stripper, REPORT);
+		assertTrue(result.startsWith("<table><tr class=\"  status_failed\"><td>verifyText</td></tr></table><pre>"));
+		assertTrue(result.endsWith("</pre></body></html>"));
+		assertFalse(result.contains("info: Executing"));
+		assertEquals(68, stripper.getRemoved());
+	}
+
+	public void testTruncateLog() throws Exception {
+		ReportLogStripper stripper = new ReportLogStripper(10);
+		String result = strip(stripper, REPORT);
+		assertTrue(result.contains("<pre>info: Exec\n[... 58 characters of log removed ...]\n</pre>"));
+		assertEquals(58, stripper.getRemoved());
+	}
+
+	public void testSmallLogUntouched() throws Exception {
+		ReportLogStripper stripper = new ReportLogStripper(1024);
+		assertEquals(REPORT, strip(stripper, REPORT));
+		assertEquals(0, stripper.getRemoved());
+	}
+
+	public void testUpperCaseTags() throws Exception {
+		ReportLogStripper stripper = new ReportLogStripper(0);
+		assertEquals("<PRE class=\"log\">\n[... 9 characters of log removed ...]\n</PRE>x",
+				strip(stripper, "<PRE class=\"log\">a<b>c</b></PRE>x"));
+	}
+}
@@ -0,0 +1,60 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link ReportOffsetIndex}
+ */
+public class ReportOffsetIndexTest extends TestCase {
+
+	private File report;
+	private File index;
+
+	@Override
+	protected void setUp() throws Exception {
+		report = new File(getClass().getResource("testResultWithFailure.html").toURI());
+		index = File.createTempFile("offsets", ".idx");
+		index.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		index.delete();
+	}
+
+	public void testSections() throws Exception {
+		ReportOffsetIndex offsets = ReportOffsetIndex.get(report, index);
+		assertEquals(3, offsets.size());
+		assertTrue(index.exists());
+
+		String section = new String(offsets.readSection(report, 1), "ISO-8859-1");
+		assertTrue(section.startsWith("<a name=\"testresult1\">./TestType.html</a>"));
+		assertTrue(section.indexOf("testresult2") == -1);
+		assertNull(offsets.readSection(report, 3));
+
+		// reloaded from the index file
+		offsets = ReportOffsetIndex.get(report, index);
+		assertEquals(3, offsets.size());
+		assertTrue(new String(offsets.readSection(report, 2), "ISO-8859-1").indexOf("TestSelect") != -1);
+	}
+
+	public void testOutOfDateIndex() throws Exception {
+		File copy = File.createTempFile("report", ".html");
+		try {
+			FileOutputStream out = new FileOutputStream(copy);
+			out.write("<a name=\"testresult0\">A</a>".getBytes());
+			out.close();
+			assertEquals(1, ReportOffsetIndex.get(copy, index).size());
+
+			out = new FileOutputStream(copy, true);
+			out.write("<A NAME=\"testresult1\">B</A>".getBytes());
+			out.close();
+			assertEquals(2, ReportOffsetIndex.get(copy, index).size());
+		} finally {
+			copy.delete();
+		}
+	}
+}
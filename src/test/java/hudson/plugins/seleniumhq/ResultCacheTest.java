@@ -0,0 +1,97 @@
+package hudson.plugins.seleniumhq;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link ResultCache}
+ */
+public class ResultCacheTest extends TestCase {
+
+	private static Callable<TestResult> loader(final AtomicInteger loads) {
+		return new Callable<TestResult>() {
+			public TestResult call() {
+				loads.incrementAndGet();
+				return new TestResult();
+			}
+		};
+	}
+
+	public void testHitAndMiss() throws Exception {
+		ResultCache cache = new ResultCache(1024 * 1024);
+		AtomicInteger loads = new AtomicInteger();
+		TestResult r = cache.get("a", loader(loads));
+		assertSame(r, cache.get("a", loader(loads)));
+		assertEquals(1, loads.get());
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+	}
+
+	public void testFailedLoadNotCached() throws Exception {
+		ResultCache cache = new ResultCache(1024 * 1024);
+		final AtomicInteger loads = new AtomicInteger();
+		Callable<TestResult> failing = new Callable<TestResult>() {
+			public TestResult call() {
+				loads.incrementAndGet();
+				return null;
+			}
+		};
+		assertNull(cache.get("a", failing));
+		assertEquals(0, cache.getSize());
+		assertNotNull(cache.get("a", loader(loads)));
+		assertEquals(2, loads.get());
+	}
+
+	public void testEvictionToSoftReference() throws Exception {
+		long size = new TestResult().estimateSize();
+		ResultCache cache = new ResultCache(2 * size);
+		AtomicInteger loads = new AtomicInteger();
+		TestResult a = cache.get("a", loader(loads));
+		cache.get("b", loader(loads));
+		cache.get("c", loader(loads));
+		assertEquals(2, cache.getSize());
+		assertEquals(1, cache.getEvictions());
+		assertEquals(2 * size, cache.getBytes());
+
+		// still reachable, so served by the soft reference
+		assertSame(a, cache.get("a", loader(loads)));
+		assertEquals(3, loads.get());
+		assertEquals(1, cache.getSoftHits());
+	}
+
+	public void testSingleLoad() throws Exception {
+		final ResultCache cache = new ResultCache(1024 * 1024);
+		final AtomicInteger loads = new AtomicInteger();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Callable<TestResult> slow = new Callable<TestResult>() {
+			public TestResult call() throws Exception {
+				loads.incrementAndGet();
+				started.countDown();
+				release.await();
+				return new TestResult();
+			}
+		};
+		Thread first = new Thread() {
+			public void run() {
+				cache.get("a", slow);
+			}
+		};
+		first.start();
+		started.await();
+		Thread second = new Thread() {
+			public void run() {
+				cache.get("a", slow);
+			}
+		};
+		second.start();
+		Thread.sleep(100);
+		release.countDown();
+		first.join();
+		second.join();
+		assertEquals(1, loads.get());
+	}
+}
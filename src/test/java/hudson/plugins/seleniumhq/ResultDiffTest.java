@@ -0,0 +1,59 @@
+package hudson.plugins.seleniumhq;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link ResultDiff}
+ */
+public class ResultDiffTest extends TestCase {
+
+	private static TestResult result(String... tests) {
+		TestResult r = new TestResult();
+		List<CaseResult> cases = new ArrayList<CaseResult>();
+		for (String t : tests) {
+			// a leading '!' marks a failing test
+			cases.add(new CaseResult(t.substring(t.startsWith("!") ? 1 : 0), !t.startsWith("!")));
+		}
+		r.getSuites().add(new SuiteResult(0, 0, 0, 0, 0, "", cases));
+		r.getFiles().add("/ws/results/suite.html");
+		return r;
+	}
+
+	public void testDiff() throws Exception {
+		TestResult base = result("a", "!b", "c", "!d", "e");
+		TestResult target = result("!e", "d", "!b", "a", "f", "!g");
+		ResultDiff diff = new ResultDiff(null, 1, base, target);
+		assertEquals(1, diff.getBaseBuild());
+		assertEquals(Arrays.asList("suite.html/e"), diff.getNewlyFailing());
+		assertEquals(Arrays.asList("suite.html/d"), diff.getNewlyPassing());
+		assertEquals(Arrays.asList("suite.html/b"), diff.getStillFailing());
+		assertEquals(Arrays.asList("suite.html/f", "suite.html/g"), diff.getAdded());
+		assertEquals(Arrays.asList("suite.html/c"), diff.getRemoved());
+		assertEquals(1, diff.getStillPassing());
+	}
+
+	public void testEmpty() throws Exception {
+		ResultDiff diff = new ResultDiff(null, 1, new TestResult(), result("a", "!b"));
+		assertEquals(2, diff.getAdded().size());
+		assertTrue(diff.getRemoved().isEmpty());
+		assertTrue(diff.getNewlyFailing().isEmpty());
+	}
+
+	public void testLargeSuite() throws Exception {
+		String[] before = new String[10000];
+		String[] after = new String[10000];
+		for (int i = 0; i < before.length; i++) {
+			before[i] = "test" + i;
+			after[i] = (i % 100 == 0 ? "!" : "") + "test" + (i + 10);
+		}
+		ResultDiff diff = new ResultDiff(null, 1, result(before), result(after));
+		assertEquals(10, diff.getAdded().size());
+		assertEquals(10, diff.getRemoved().size());
+		assertEquals(100, diff.getNewlyFailing().size());
+		assertEquals(9890, diff.getStillPassing());
+	}
+}
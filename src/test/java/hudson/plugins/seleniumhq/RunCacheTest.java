@@ -0,0 +1,106 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.FilePath;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+
+import org.apache.commons.io.FileUtils;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link RunCache} and {@link SuiteFingerprint}
+ */
+public class RunCacheTest extends TestCase {
+
+	private File dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		dir = File.createTempFile("runcache", "");
+		dir.delete();
+		dir.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(dir);
+	}
+
+	private static void delete(File f) {
+		File[] children = f.listFiles();
+		if (children != null) {
+			for (File c : children) {
+				delete(c);
+			}
+		}
+		f.delete();
+	}
+
+	private File copyResource(String name) throws Exception {
+		File f = new File(dir, name);
+		InputStream in = RunCacheTest.class.getResourceAsStream(name);
+		FileOutputStream out = new FileOutputStream(f);
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+		}
+		in.close();
+		out.close();
+		return f;
+	}
+
+	public void testFingerprintFollowsTestCases() throws Exception {
+		File suite = new File(dir, "suite.html");
+		File testCase = new File(dir, "case1.html");
+		FileUtils.writeStringToFile(suite, "<table><tr><td><a href=\"./case1.html\">case1</a></td></tr>"
+				+ "<tr><td><a href='http://example.com/case2.html'>case2</a></td></tr></table>");
+		FileUtils.writeStringToFile(testCase, "<table><tr><td>open</td><td>/</td></tr></table>");
+		String first = SuiteFingerprint.compute(suite);
+		assertEquals(40, first.length());
+		assertEquals(first, SuiteFingerprint.compute(suite));
+
+		FileUtils.writeStringToFile(testCase, "<table><tr><td>open</td><td>/login</td></tr></table>");
+		assertFalse(first.equals(SuiteFingerprint.compute(suite)));
+	}
+
+	public void testKey() throws Exception {
+		String key = RunCache.key("abc", "http://localhost/", "*firefox", "", "1.0");
+		assertEquals(key, RunCache.key("abc", "http://localhost/", "*firefox", "", "1.0"));
+		assertFalse(key.equals(RunCache.key("abc", "http://localhost/", "*firefox", "", "1.1")));
+		assertFalse(key.equals(RunCache.key("abc", "http://localhost/", "*iexplore", "", "1.0")));
+		assertFalse(key.equals(RunCache.key("abc", "http://localhost/", "*firefox", "-singleWindow", "1.0")));
+		// no ambiguity between the values
+		assertFalse(RunCache.key("a", "b", "c", "", "").equals(RunCache.key("a", "bc", "", "", "")));
+	}
+
+	public void testStoreOnlyPassingRuns() throws Exception {
+		RunCache cache = new RunCache(new File(dir, "cache"), 10);
+		assertNull(cache.lookup("k1"));
+		assertFalse(cache.store("k1", 3, new FilePath(copyResource("testResultWithFailure.html"))));
+		assertNull(cache.lookup("k1"));
+
+		assertTrue(cache.store("k1", 4, new FilePath(copyResource("testResult.html"))));
+		assertTrue(cache.store("k1", 7, new FilePath(copyResource("testResult.html"))));
+		RunCache.Entry e = cache.lookup("k1");
+		assertEquals(7, e.getBuild());
+		assertTrue(e.getFile().isFile());
+		assertNull(cache.lookup("k2"));
+	}
+
+	public void testPrune() throws Exception {
+		RunCache cache = new RunCache(new File(dir, "cache"), 2);
+		File report = copyResource("testResult.html");
+		cache.store("k1", 1, new FilePath(report));
+		new File(dir, "cache/k1-1.html").setLastModified(System.currentTimeMillis() - 20000);
+		cache.store("k2", 2, new FilePath(report));
+		new File(dir, "cache/k2-2.html").setLastModified(System.currentTimeMillis() - 10000);
+		cache.store("k3", 3, new FilePath(report));
+		assertNull(cache.lookup("k1"));
+		assertNotNull(cache.lookup("k2"));
+		assertNotNull(cache.lookup("k3"));
+	}
+}
@@ -6,6 +6,7 @@ import hudson.model.Result;
 import hudson.model.FreeStyleProject;
 import hudson.model.ParametersAction;
 import hudson.model.StringParameterValue;
+import hudson.util.FormValidation;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -232,4 +233,61 @@ public class SeleniumhqBuilderTest extends HudsonTestCase {
 		assertEquals("index.html", resultFileResolved);
 
 	}
+
+	/**
+	 * Test du Builder with a pattern of suites
+	 * @throws Exception
+	 */
+	public void test10() throws Exception {
+		SeleniumhqBuilder builder = new SeleniumhqBuilder("*firefox", "http://localhost", "tests/**/*Suite.html",
+				"results/result.html", "-port 5555 -timeout 60", false, null, "3", null);
+		assertTrue(builder.isPatternSuiteFile());
+		assertEquals(3, builder.getParallelSuiteCount());
+		assertEquals(SeleniumhqBuilder.MAX_PARALLEL_SUITES, new SeleniumhqBuilder("*firefox", "http://localhost",
+				"tests/**/*Suite.html", "result.html", null, false, null, "1000", null).getParallelSuiteCount());
+		assertEquals(FormValidation.Kind.OK, SeleniumhqBuilder.DESCRIPTOR.doCheckParallelSuites("3").kind);
+		assertEquals(FormValidation.Kind.OK, SeleniumhqBuilder.DESCRIPTOR.doCheckParallelSuites("").kind);
+		assertEquals(FormValidation.Kind.ERROR, SeleniumhqBuilder.DESCRIPTOR.doCheckParallelSuites("0").kind);
+		assertEquals(FormValidation.Kind.ERROR, SeleniumhqBuilder.DESCRIPTOR.doCheckParallelSuites("1000").kind);
+		assertEquals(FormValidation.Kind.ERROR, SeleniumhqBuilder.DESCRIPTOR.doCheckParallelSuites("many").kind);
+		assertFalse(new SeleniumhqBuilder("*firefox", "http://localhost", "http://localhost/suite.html?a=1",
+				"result.html", null).isPatternSuiteFile());
+
+		assertEquals("results/result-tests_login_LoginSuite.html",
+				SeleniumhqBuilder.getSuiteResultFile("results/result.html", "tests/login/LoginSuite.html"));
+		assertEquals("result-tests_Suite", SeleniumhqBuilder.getSuiteResultFile("result", "tests\\Suite.html"));
+		assertEquals("results/result-*.html", SeleniumhqBuilder.getSuiteResultPattern("results/result.html"));
+
+		ArrayList<String> others = new ArrayList<String>();
+		others.add("-port");
+		others.add("5555");
+		others.add("-timeout");
+		others.add("60");
+		assertEquals(5555, SeleniumhqBuilder.removePort(others));
+		assertEquals(2, others.size());
+		assertEquals(-1, SeleniumhqBuilder.removePort(others));
+	}
+
+	/**
+	 * Test du Builder with a Firefox profile template
+	 * @throws Exception
+	 */
+	public void test11() throws Exception {
+		assertTrue(SeleniumhqBuilder.isFirefox("*firefox"));
+		assertTrue(SeleniumhqBuilder.isFirefox("*firefoxproxy"));
+		assertTrue(SeleniumhqBuilder.isFirefox("*chrome"));
+		assertFalse(SeleniumhqBuilder.isFirefox("*iexplore"));
+
+		FreeStyleProject project = createFreeStyleProject();
+		project.getBuildersList().add(new SeleniumhqBuilder("*firefox", "http://www.google.com", "suite.html",
+				"index.html", null, false, null, null, "profile"));
+		project.setScm(new SingleFileSCM("suite.html", getClass().getResource("emptyResult.html")));
+
+		SeleniumhqBuilder.DESCRIPTOR.setSeleniumRunner("sdf");
+		FreeStyleBuild build = project.scheduleBuild2(0).get();
+
+		assertEquals(Result.FAILURE, build.getResult());
+		String s = FileUtils.readFileToString(build.getLogFile());
+		assertTrue(s.contains("Failed to prepare the Firefox profile template"));
+	}
 }
@@ -0,0 +1,84 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link SeleniumhqMetrics}, {@link StripedCounter} and
+ * {@link Histogram}
+ */
+public class SeleniumhqMetricsTest extends TestCase {
+
+	public void testStripes() throws Exception {
+		assertEquals(2, StripedCounter.stripes(1));
+		assertEquals(8, StripedCounter.stripes(3));
+		assertEquals(64, StripedCounter.stripes(256));
+	}
+
+	public void testConcurrentUpdates() throws Exception {
+		final StripedCounter counter = new StripedCounter();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 8; t++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 10000; i++) {
+						counter.increment();
+					}
+				}
+			});
+		}
+		for (Thread t : threads) {
+			t.start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		counter.add(5);
+		assertEquals(80005, counter.sum());
+	}
+
+	public void testHistogram() throws Exception {
+		Histogram h = new Histogram(10, 100);
+		h.observe(3);
+		h.observe(10);
+		h.observe(50);
+		h.observe(1000);
+		long[] counts = h.getCumulativeCounts();
+		assertEquals(3, counts.length);
+		assertEquals(2, counts[0]);
+		assertEquals(3, counts[1]);
+		assertEquals(4, counts[2]);
+		assertEquals(4, h.getCount());
+		assertEquals(1063, h.getSum());
+	}
+
+	public void testPrometheusFormat() throws Exception {
+		SeleniumhqMetrics metrics = new SeleniumhqMetrics();
+		metrics.parsed(120);
+		metrics.parsed(20000);
+		metrics.archived(2048);
+		metrics.suiteDownloaded();
+		StringWriter writer = new StringWriter();
+		metrics.writePrometheus(writer);
+		String text = writer.toString();
+
+		assertTrue(text.endsWith("\n"));
+		assertEquals(-1, text.indexOf('\r'));
+		assertTrue(text.contains("# TYPE seleniumhq_parse_seconds histogram\n"));
+		assertTrue(text.contains("seleniumhq_parse_seconds_bucket{le=\"0.1\"} 0\n"));
+		assertTrue(text.contains("seleniumhq_parse_seconds_bucket{le=\"0.25\"} 1\n"));
+		assertTrue(text.contains("seleniumhq_parse_seconds_bucket{le=\"+Inf\"} 2\n"));
+		assertTrue(text.contains("seleniumhq_parse_seconds_sum 20.12\n"));
+		assertTrue(text.contains("seleniumhq_parse_seconds_count 2\n"));
+		assertTrue(text.contains("seleniumhq_archived_report_bytes_bucket{le=\"10240\"} 1\n"));
+		assertTrue(text.contains("seleniumhq_suite_downloads_total 1\n"));
+		assertTrue(text.contains("seleniumhq_tests_total{outcome=\"failed\"} 0\n"));
+		for (String line : text.split("\n")) {
+			assertTrue(line, line.startsWith("# ") || line.matches("[a-z_]+(\\{[a-z]+=\"[^\"]+\"\\})? [0-9.]+"));
+		}
+	}
+}
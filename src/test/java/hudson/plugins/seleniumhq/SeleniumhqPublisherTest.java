@@ -7,10 +7,13 @@ import hudson.model.FreeStyleProject;
 import hudson.model.Result;
 import hudson.tasks.Publisher;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import net.sf.json.JSONObject;
+
 import org.apache.commons.io.FileUtils;
 import org.jvnet.hudson.test.HudsonTestCase;
 import org.jvnet.hudson.test.SingleFileSCM;
@@ -132,6 +135,11 @@ public class SeleniumhqPublisherTest extends HudsonTestCase
         String s = FileUtils.readFileToString(build.getLogFile());
         assertTrue(s.contains("Test failures: 0"));
         assertTrue(s.contains("Test totals  : 7"));          
+
+        // a single report is still served as the index page
+        File reports = SeleniumhqPublisher.getSeleniumReportDir(project);
+        assertEquals(FileUtils.readFileToString(new File(reports, "0/testResult.html")),
+                FileUtils.readFileToString(new File(reports, "index.html")));
     }
 	
 	/**
@@ -199,6 +207,13 @@ public class SeleniumhqPublisherTest extends HudsonTestCase
         String s = FileUtils.readFileToString(build.getLogFile());
         assertTrue(s.contains("Test failures: 0"));
         assertTrue(s.contains("Test totals  : 14"));       
+
+        String index = FileUtils.readFileToString(new File(SeleniumhqPublisher.getSeleniumReportDir(project),
+                "index.html"));
+        // the landing page links to both reports
+        assertTrue(index.contains("Selenium Test Result"));
+        assertTrue(index.contains("/testResult1.html\""));
+        assertTrue(index.contains("/testResult2.html\""));
     }
 	
 	/**
@@ -293,5 +308,64 @@ public class SeleniumhqPublisherTest extends HudsonTestCase
         assertTrue(s.contains("Command Failures : 5"));    
         assertTrue(s.contains("Command Errors   : 0"));   
     }
+
+    /**
+     * Remote API of the build and project actions, of the pages of tests and of the diff
+     * @throws Exception
+     */
+    public void test10() throws Exception
+    {
+        FreeStyleProject project = createFreeStyleProject();
+        project.getPublishersList().add(new SeleniumhqPublisher("*.html", false));
+
+        project.setScm(new SingleFileSCM("testResult1.html", getClass().getResource("testResult.html")));
+        FreeStyleBuild first = project.scheduleBuild2(0).get();
+        assertEquals(Result.SUCCESS, first.getResult());
+
+        List<SingleFileSCM> files = new ArrayList<SingleFileSCM>(2);
+        files.add(new SingleFileSCM("testResult1.html", getClass().getResource("testResult.html")));
+        files.add(new SingleFileSCM("testResult3.html", getClass().getResource("testResultWithFailure.html")));
+        project.setScm(new MultiFileSCM(files));
+        FreeStyleBuild build = project.scheduleBuild2(0).get();
+        assertEquals(Result.UNSTABLE, build.getResult());
+
+        WebClient wc = createWebClient();
+        JSONObject summary = getJson(wc, build.getUrl() + "seleniumhq/api/json");
+        assertEquals(10, summary.getInt("numTestTotal"));
+        assertEquals(1, summary.getInt("numTestFailures"));
+
+        JSONObject page = getJson(wc, build.getUrl() + "seleniumhq/testPage/api/json?status=failed");
+        assertEquals(1, page.getInt("total"));
+        assertEquals("TestErrorChecking", page.getJSONArray("entries").getJSONObject(0).getString("name"));
+        assertEquals("testResult3.html", page.getJSONArray("entries").getJSONObject(0).getString("file"));
+
+        // out of range pages are brought back to the existing ones
+        page = getJson(wc, build.getUrl() + "seleniumhq/testPage/api/json?page=-3");
+        assertEquals(0, page.getInt("page"));
+        assertEquals(10, page.getJSONArray("entries").size());
+        page = getJson(wc, build.getUrl() + "seleniumhq/testPage/api/json?page=99");
+        assertEquals(0, page.getInt("page"));
+        assertEquals(10, page.getJSONArray("entries").size());
+
+        JSONObject diff = getJson(wc, build.getUrl() + "seleniumhq/diff/api/json?base=" + first.getNumber());
+        assertEquals(first.getNumber(), diff.getInt("baseBuild"));
+        assertEquals(7, diff.getInt("stillPassing"));
+        assertEquals(3, diff.getJSONArray("added").size());
+        assertEquals(0, diff.getJSONArray("newlyFailing").size());
+
+        // outside of a request, the last passing build is the default base
+        SeleniumhqBuildAction action = build.getAction(SeleniumhqBuildAction.class);
+        assertEquals(first.getNumber(), action.createDiff(null).getBaseBuild());
+        assertNull(action.createDiff("1000"));
+
+        JSONObject trend = getJson(wc, project.getUrl() + "seleniumhq/api/json");
+        assertEquals(10, trend.getJSONObject("lastResult").getInt("numTestTotal"));
+        assertTrue(trend.has("flakyTests"));
+    }
+
+    private static JSONObject getJson(WebClient wc, String url) throws Exception
+    {
+        return JSONObject.fromObject(wc.goTo(url, "application/javascript").getWebResponse().getContentAsString());
+    }
 	
 }
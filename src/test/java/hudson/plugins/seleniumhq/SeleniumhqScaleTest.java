@@ -0,0 +1,217 @@
+package hudson.plugins.seleniumhq;
+
+import hudson.Util;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+import org.jvnet.hudson.test.HudsonTestCase;
+import org.jvnet.hudson.test.SingleFileSCM;
+
+/**
+ * Times the plugin on a project with a long history and a workspace with
+ * many result files, and fails when a timing exceeds its baseline in
+ * <tt>scale-baselines.properties</tt> by more than the tolerance.
+ *
+ * <p>
+ * Only run with the <tt>scale</tt> profile. The size is set by the
+ * <tt>seleniumhq.scale.builds</tt> and <tt>seleniumhq.scale.files</tt>
+ * properties, the tolerance by <tt>seleniumhq.scale.tolerance</tt>, and
+ * <tt>seleniumhq.scale.record</tt> names a file where the measured timings
+ * are written as new baselines.
+ * 
+ * @author Pascal Martin
+ */
+public class SeleniumhqScaleTest extends HudsonTestCase
+{
+	private static final int BUILDS = Integer.getInteger("seleniumhq.scale.builds", 2000);
+	private static final int FILES = Integer.getInteger("seleniumhq.scale.files", 200);
+	private static final double TOLERANCE = Double.parseDouble(System.getProperty("seleniumhq.scale.tolerance", "1.5"));
+
+	/** Repetitions of the page timings, the median is kept */
+	private static final int RUNS = 5;
+
+	private static final Logger logger = Logger.getLogger(SeleniumhqScaleTest.class.getName());
+
+	private final Properties baselines = new Properties();
+	private final Properties measured = new Properties();
+	private final List<String> failures = new ArrayList<String>();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		InputStream in = getClass().getResourceAsStream("scale-baselines.properties");
+		try {
+			baselines.load(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testLargeHistory() throws Exception
+	{
+		// one real build publishing FILES reports
+		FreeStyleProject template = createFreeStyleProject("template");
+		template.getPublishersList().add(new SeleniumhqPublisher("suite*.html", false));
+		List<SingleFileSCM> files = new ArrayList<SingleFileSCM>(FILES);
+		for (int i = 0; i < FILES; i++) {
+			files.add(new SingleFileSCM("suite" + i + ".html",
+					getClass().getResource(i % 10 == 0 ? "testResultWithFailure.html" : "testResult.html")));
+		}
+		template.setScm(new MultiFileSCM(files));
+		long start = System.currentTimeMillis();
+		FreeStyleBuild first = template.scheduleBuild2(0).get();
+		check("firstBuild", System.currentTimeMillis() - start);
+		assertNotNull(first.getAction(SeleniumhqBuildAction.class));
+
+		// the same build repeated BUILDS times in a new project
+		FreeStyleProject project = synthesizeHistory(template, first, "history");
+		assertEquals(BUILDS, project.getLastBuild().getNumber());
+
+		start = System.currentTimeMillis();
+		BuildIndex.get(project);
+		TrendStore.get(project);
+		FlakyTestStore.get(project);
+		DurationStore.get(project);
+		TestSearchIndex.get(project);
+		check("rebuildIndexes", System.currentTimeMillis() - start);
+
+		start = System.currentTimeMillis();
+		FreeStyleBuild build = project.scheduleBuild2(0).get();
+		check("build", System.currentTimeMillis() - start);
+		assertNotNull(build.getAction(SeleniumhqBuildAction.class));
+
+		final WebClient wc = createWebClient();
+		final String url = project.getUrl();
+		check("projectPage", median(new Timed() {
+			public void run(int i) throws Exception {
+				wc.goTo(url);
+			}
+		}));
+		check("graph", median(new Timed() {
+			public void run(int i) throws Exception {
+				// a new size each time, so the graph cache does not answer
+				wc.goTo(url + "seleniumhq/graph?width=" + (400 + i) + "&height=200", "image/png");
+			}
+		}));
+		final String buildUrl = build.getUrl();
+		check("buildPage", median(new Timed() {
+			public void run(int i) throws Exception {
+				wc.goTo(buildUrl + "seleniumhq/");
+			}
+		}));
+		check("testPage", median(new Timed() {
+			public void run(int i) throws Exception {
+				wc.goTo(buildUrl + "seleniumhq/tests?status=failed");
+			}
+		}));
+		check("dashboard", median(new Timed() {
+			public void run(int i) throws Exception {
+				wc.goTo("seleniumhq-dashboard/");
+			}
+		}));
+
+		record();
+		assertTrue(failures.toString(), failures.isEmpty());
+	}
+
+	/**
+	 * Creates project <tt>name</tt> with the configuration of
+	 * <tt>template</tt> and {@link #BUILDS} copies of <tt>build</tt>.
+	 */
+	private FreeStyleProject synthesizeHistory(FreeStyleProject template, FreeStyleBuild build, String name)
+			throws Exception {
+		File dir = new File(hudson.getRootDir(), "jobs/" + name);
+		FileUtils.copyFile(new File(template.getRootDir(), "config.xml"), new File(dir, "config.xml"));
+		File reports = SeleniumhqPublisher.getSeleniumReportDir(template);
+		if (reports.exists()) {
+			FileUtils.copyDirectory(reports, new File(dir, reports.getName()));
+		}
+
+		String buildXml = FileUtils.readFileToString(new File(build.getRootDir(), "build.xml"));
+		File result = new File(build.getRootDir(), TestResultStore.BINARY_FILE);
+		SimpleDateFormat id = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
+		long time = build.getTimestamp().getTimeInMillis() - BUILDS * 3600000L;
+		for (int n = 1; n <= BUILDS; n++) {
+			File buildDir = new File(dir, "builds/" + id.format(new Date(time + n * 3600000L)));
+			buildDir.mkdirs();
+			FileUtils.writeStringToFile(new File(buildDir, "build.xml"),
+					buildXml.replaceFirst("<number>\\d+</number>", "<number>" + n + "</number>"));
+			FileUtils.copyFile(result, new File(buildDir, TestResultStore.BINARY_FILE));
+			new File(buildDir, "log").createNewFile();
+		}
+		FileUtils.writeStringToFile(new File(dir, "nextBuildNumber"), String.valueOf(BUILDS + 1));
+
+		hudson.reload();
+		return hudson.getItemByFullName(name, FreeStyleProject.class);
+	}
+
+	private interface Timed {
+		void run(int i) throws Exception;
+	}
+
+	/**
+	 * @return the median time of {@link #RUNS} runs, after a first one to
+	 *         warm up
+	 */
+	private static long median(Timed timed) throws Exception {
+		timed.run(0);
+		long[] times = new long[RUNS];
+		for (int i = 0; i < RUNS; i++) {
+			long start = System.currentTimeMillis();
+			timed.run(i + 1);
+			times[i] = System.currentTimeMillis() - start;
+		}
+		Arrays.sort(times);
+		return times[RUNS / 2];
+	}
+
+	/**
+	 * Compares a timing with its baseline. Failures are collected so that
+	 * every timing is reported.
+	 */
+	private void check(String name, long millis) {
+		measured.setProperty(name, String.valueOf(millis));
+		String baseline = baselines.getProperty(name);
+		logger.info("Scale timing " + name + " : " + millis + "ms, baseline " + baseline + "ms");
+		if (baseline != null && millis > Long.parseLong(baseline) * TOLERANCE) {
+			failures.add(name + " took " + millis + "ms, baseline " + baseline + "ms");
+		}
+	}
+
+	/**
+	 * @return the description of the machine, recorded with the baselines
+	 */
+	private static String machine() {
+		Runtime runtime = Runtime.getRuntime();
+		return System.getProperty("os.name") + " " + System.getProperty("os.arch") + ", "
+				+ runtime.availableProcessors() + " CPU, Java " + System.getProperty("java.version") + ", "
+				+ runtime.maxMemory() / (1024 * 1024) + "MB heap";
+	}
+
+	private void record() throws IOException {
+		String file = Util.fixEmptyAndTrim(System.getProperty("seleniumhq.scale.record"));
+		if (file == null) {
+			return;
+		}
+		OutputStream out = new FileOutputStream(file);
+		try {
+			measured.store(out, "Timings in ms with " + BUILDS + " builds and " + FILES + " files on " + machine());
+		} finally {
+			out.close();
+		}
+	}
+}
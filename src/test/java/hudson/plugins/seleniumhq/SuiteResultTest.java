@@ -15,7 +15,35 @@ public class SuiteResultTest extends TestCase {
 		SuiteResult sr = SuiteResult.parse( SuiteResultTest.class.getResourceAsStream("testResult.html") );
 		assertEquals(7, sr.getNumTestPasses());
 		assertEquals(0, sr.getNumTestFailures());
+		assertEquals(7, sr.getCases().size());
     }	
+
+	public void testParseCases() throws Exception {
+		SuiteResult sr = SuiteResult.parse( SuiteResultTest.class.getResourceAsStream("testResultWithFailure.html") );
+		assertEquals(3, sr.getCases().size());
+		assertEquals(4, sr.getTotalTime());
+		assertEquals("TestErrorChecking", sr.getCases().get(0).getName());
+		assertFalse(sr.getCases().get(0).isPassed());
+		assertEquals("TestType", sr.getCases().get(1).getName());
+		assertTrue(sr.getCases().get(1).isPassed());
+		assertTrue(sr.getCases().get(2).isPassed());
+	}
+
+	public void testParseCasesOnOneLine() throws Exception {
+		String report = "<td>numTestPasses:</td>\n<td>1</td>\n<td>numTestFailures:</td>\n<td>1</td>\n"
+				+ "<td>numCommandPasses:</td>\n<td>1</td>\n<td>numCommandFailures:</td>\n<td>1</td>\n"
+				+ "<td>numCommandErrors:</td>\n<td>0</td>\n"
+				+ "<table><tr class=\"title status_failed\"><td>Suite</td></tr>"
+				+ "<tr class=\"status_passed\"><td><a href=\"#testresult0\">A &amp; B</a></td></tr>"
+				+ "<tr class=\"status_failed\"><td><a href=\"#testresult1\">C</a></td></tr></table>\n"
+				+ "<a name=\"testresult0\">A</a>\n<a href=\"#testresult9\">ignored</a>\n";
+		SuiteResult sr = SuiteResult.parse(new ByteArrayInputStream(report.getBytes()));
+		assertEquals(0, sr.getTotalTime());
+		assertEquals(2, sr.getCases().size());
+		assertEquals("A & B", sr.getCases().get(0).getName());
+		assertTrue(sr.getCases().get(0).isPassed());
+		assertFalse(sr.getCases().get(1).isPassed());
+	}
 	
 	public void testParse2() throws Exception {				
 		try 
@@ -0,0 +1,104 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link TestResultStore}
+ */
+public class TestResultStoreTest extends TestCase {
+
+	public void testRoundTrip() throws Exception {
+		TestResult result = new TestResult();
+		result.parse(new File(getClass().getResource("testResult.html").toURI()));
+		result.parse(new File(getClass().getResource("testResultWithFailure.html").toURI()));
+		result.getFiles().add("/ws/results/a.html");
+		result.getFiles().add("/ws/results/b.html");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TestResultStore.write(result, out);
+		TestResult copy = TestResultStore.read(new ByteArrayInputStream(out.toByteArray()));
+
+		assertEquals(result.getNumTestPasses(), copy.getNumTestPasses());
+		assertEquals(result.getNumTestFailures(), copy.getNumTestFailures());
+		assertEquals(result.numCommandPasses(), copy.numCommandPasses());
+		assertEquals(result.numCommandFailures(), copy.numCommandFailures());
+		assertEquals(result.numCommandErrors(), copy.numCommandErrors());
+		assertEquals(result.getFiles(), copy.getFiles());
+		assertEquals(result.getTotalTime(), copy.getTotalTime());
+
+		CaseResult c = copy.getSuites().get(1).getCases().get(0);
+		assertEquals("TestErrorChecking", c.getName());
+		assertFalse(c.isPassed());
+		assertEquals(3, copy.getSuites().get(1).getCases().size());
+	}
+
+	public void testLoadWhileSaving() throws Exception {
+		final File dir = File.createTempFile("resultstore", "");
+		dir.delete();
+		dir.mkdirs();
+		final TestResult result = new TestResult();
+		result.parse(new File(getClass().getResource("testResult.html").toURI()));
+		TestResultStore.save(dir, result);
+
+		final Exception[] failure = new Exception[1];
+		Thread saver = new Thread() {
+			public void run() {
+				try {
+					for (int i = 0; i < 500; i++) {
+						TestResultStore.save(dir, result);
+					}
+				} catch (Exception e) {
+					failure[0] = e;
+				}
+			}
+		};
+		saver.start();
+		try {
+			while (saver.isAlive()) {
+				assertEquals(result.getNumTestPasses(), TestResultStore.load(dir).getNumTestPasses());
+			}
+		} finally {
+			saver.join();
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+		assertNull(failure[0]);
+	}
+
+	public void testUnknownVersion() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		TestResultStore.write(new TestResult(), out);
+		byte[] bytes = out.toByteArray();
+		bytes[4] = (byte) (TestResultStore.VERSION + 1);
+		try {
+			TestResultStore.read(new ByteArrayInputStream(bytes));
+			fail("Should have IOException");
+		} catch (IOException expected) {
+			return;
+		}
+	}
+
+	public void testVarint() throws Exception {
+		long[] values = { 0, 1, 127, 128, 300, Integer.MAX_VALUE, Long.MAX_VALUE };
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for (long value : values) {
+			TestResultStore.writeVarint(out, value);
+		}
+		assertEquals(1 + 1 + 1 + 2 + 2 + 5 + 9, bytes.size());
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		for (long value : values) {
+			assertEquals(value, TestResultStore.readVarLong(in));
+		}
+	}
+}
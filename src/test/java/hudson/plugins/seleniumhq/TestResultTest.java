@@ -1,5 +1,8 @@
 package hudson.plugins.seleniumhq;
 
+import java.io.File;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 public class TestResultTest extends TestCase
@@ -28,6 +31,39 @@ public class TestResultTest extends TestCase
 		assertEquals(0, result.getFiles().size());		
     }
 	
+	public void testMerge() throws Exception {
+		TestResult result = new TestResult();
+		result.parse(new File(getClass().getResource("testResult.html").toURI()));
+		TestResult partial = new TestResult();
+		partial.parse(new File(getClass().getResource("testResultWithFailure.html").toURI()));
+		int passes = result.getNumTestPasses();
+		TestResult merged = result.merge(partial);
+		assertEquals(9, merged.getNumTestPasses());
+		assertEquals(1, merged.getNumTestFailures());
+		assertEquals(2, merged.getSuites().size());
+		// copy on write
+		assertEquals(passes, result.getNumTestPasses());
+		assertEquals(1, result.getSuites().size());
+    }
+	
+	public void testGetSuiteNames() throws Exception {
+		TestResult result = new TestResult();
+		File report = new File(getClass().getResource("testResult.html").toURI());
+		result.parse(report);
+		result.parse(report);
+		result.parse(report);
+		result.getFiles().add("/ws/login/results/suite.html");
+		result.getFiles().add("/ws/admin/results/suite.html");
+		result.getFiles().add("/ws/old/suite.html");
+		result.resultFiles.add("login\\results\\suite.html");
+		result.resultFiles.add("admin/results/suite.html");
+		List<String> names = result.getSuiteNames();
+		assertEquals("login/results/suite.html", names.get(0));
+		assertEquals("admin/results/suite.html", names.get(1));
+		// relative path unknown
+		assertEquals("suite.html", names.get(2));
+    }
+	
 	
 	
 }
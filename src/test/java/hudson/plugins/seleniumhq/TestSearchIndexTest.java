@@ -0,0 +1,144 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link TestSearchIndex} and {@link TestOutcomes}
+ */
+public class TestSearchIndexTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("search", ".idx");
+		file.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+		log().delete();
+	}
+
+	private File log() {
+		return new File(file.getPath() + ".log");
+	}
+
+	private static TestResult result(boolean... passed) {
+		TestResult result = new TestResult();
+		List<CaseResult> cases = new ArrayList<CaseResult>();
+		for (int i = 0; i < passed.length; i++) {
+			cases.add(new CaseResult("LoginTest" + i, passed[i]));
+		}
+		result.getSuites().add(new SuiteResult(0, 0, 0, 0, 0, "", cases));
+		result.getFiles().add("/ws/results/suite.html");
+		return result;
+	}
+
+	public void testSearch() throws Exception {
+		TestSearchIndex index = new TestSearchIndex(file);
+		index.update(1, result(true, true));
+		index.update(3, result(false, true));
+		index.update(200, result(false));
+		// already recorded
+		index.update(3, result(true, true));
+
+		List<TestOutcomes> found = index.search("logintest0", null, 10);
+		assertEquals(1, found.size());
+		TestOutcomes t = found.get(0);
+		assertEquals("suite.html/LoginTest0", t.getName());
+		assertEquals(3, t.getRuns());
+		assertEquals(2, t.getFailureCount());
+		assertEquals(1, t.getLastPassed());
+		assertEquals(200, t.getLastFailed());
+		assertEquals(200, t.getRecentRuns().get(0).getBuild());
+		assertFalse(t.getRecentRuns().get(0).isPassed());
+
+		assertEquals(2, index.search("Login", null, 10).size());
+		assertEquals(1, index.search("Login", null, 1).size());
+		assertTrue(index.search("Logout", null, 10).isEmpty());
+	}
+
+	public void testDeletedBuilds() throws Exception {
+		TestSearchIndex index = new TestSearchIndex(file);
+		index.update(1, result(true));
+		index.update(2, result(false));
+		index.update(3, result(true));
+		TestOutcomes t = index.search("LoginTest0", new int[] { 1, 3 }, 10).get(0);
+		assertEquals(2, t.getRuns());
+		assertEquals(-1, t.getLastFailed());
+		// no run left
+		assertTrue(index.search("LoginTest0", new int[] { 5 }, 10).isEmpty());
+	}
+
+	public void testPersistence() throws Exception {
+		TestSearchIndex index = new TestSearchIndex(file);
+		for (int n = 1; n <= 1000; n++) {
+			index.update(n, result(n % 7 != 0, true));
+		}
+		// one byte per run
+		assertEquals(2000, index.getDataSize());
+
+		TestSearchIndex loaded = new TestSearchIndex(file);
+		loaded.load();
+		assertEquals(2, loaded.size());
+		TestOutcomes t = loaded.getOutcomes("suite.html/LoginTest0");
+		assertEquals(1000, t.getRuns());
+		assertEquals(142, t.getFailureCount());
+		assertEquals(994, t.getLastFailed());
+		assertEquals(1000, t.getLastPassed());
+		loaded.update(1001, result(false, false));
+		assertEquals(1001, loaded.getOutcomes("suite.html/LoginTest1").getLastFailed());
+	}
+
+	public void testAppendOnly() throws Exception {
+		TestSearchIndex index = new TestSearchIndex(file);
+		index.update(1, result(true, true));
+		long size = file.length();
+		index.update(2, result(false, true));
+		index.update(3, result(true, true));
+		// only the log grows
+		assertEquals(size, file.length());
+		assertTrue(log().length() > 0);
+
+		for (int n = 4; n <= 5000; n++) {
+			index.update(n, result(true, n % 3 != 0));
+		}
+		// compacted along the way
+		assertTrue(log().length() <= Math.max(TestSearchIndex.MIN_LOG_SIZE, file.length()));
+
+		TestSearchIndex loaded = new TestSearchIndex(file);
+		loaded.load();
+		assertEquals(5000, loaded.getOutcomes("suite.html/LoginTest1").getRuns());
+		assertEquals(1665, loaded.getOutcomes("suite.html/LoginTest1").getFailureCount());
+		assertEquals(2, loaded.getOutcomes("suite.html/LoginTest0").getLastFailed());
+	}
+
+	public void testPartialLogEntry() throws Exception {
+		TestSearchIndex index = new TestSearchIndex(file);
+		index.update(1, result(true));
+		index.update(2, result(false));
+		long end = log().length();
+		FileOutputStream out = new FileOutputStream(log(), true);
+		out.write(new byte[] { 0, 0, 0, 3, 0, 0 });
+		out.close();
+
+		TestSearchIndex loaded = new TestSearchIndex(file);
+		loaded.load();
+		assertEquals(end, log().length());
+		loaded.update(3, result(true));
+
+		loaded = new TestSearchIndex(file);
+		loaded.load();
+		TestOutcomes t = loaded.getOutcomes("suite.html/LoginTest0");
+		assertEquals(3, t.getRuns());
+		assertEquals(2, t.getLastFailed());
+		assertEquals(3, t.getLastPassed());
+	}
+}
@@ -0,0 +1,41 @@
+package hudson.plugins.seleniumhq;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link TimeBudget}
+ */
+public class TimeBudgetTest extends TestCase {
+
+	public void testParse() throws Exception {
+		assertNull(TimeBudget.parse(null));
+		assertNull(TimeBudget.parse("abc"));
+		assertNull(TimeBudget.parse("0"));
+		assertFalse(TimeBudget.parse("600").isRelative());
+		assertTrue(TimeBudget.parse(" 20 % ").isRelative());
+	}
+
+	public void testAbsolute() throws Exception {
+		assertEquals(600, TimeBudget.parse("600").getLimit(new ArrayList<Long>()));
+	}
+
+	public void testRelative() throws Exception {
+		TimeBudget budget = TimeBudget.parse("50%");
+		assertEquals(-1, budget.getLimit(new ArrayList<Long>()));
+		// unknown times are skipped, the median of 100 110 120 is 110
+		List<Long> previous = Arrays.asList(120L, 0L, 100L, 110L);
+		assertEquals(165, TimeBudget.parse("50%").getLimit(previous));
+	}
+
+	public void testTrailingBuilds() throws Exception {
+		List<Long> previous = new ArrayList<Long>();
+		for (int i = 0; i < 20; i++) {
+			previous.add(i < 10 ? 1000L : 100L);
+		}
+		assertEquals(100, TimeBudget.parse("0%").getLimit(previous));
+	}
+}
@@ -0,0 +1,41 @@
+package hudson.plugins.seleniumhq;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link TrendDownsampler}
+ */
+public class TrendDownsamplerTest extends TestCase {
+
+	public void testShortSeriesKept() throws Exception {
+		int[] r = TrendDownsampler.lttb(new double[] { 1, 2, 3 }, 10);
+		assertEquals(3, r.length);
+		assertEquals(0, r[0]);
+		assertEquals(2, r[2]);
+	}
+
+	public void testThreshold() throws Exception {
+		double[] y = new double[1000];
+		for (int i = 0; i < y.length; i++) {
+			y[i] = i % 7;
+		}
+		int[] r = TrendDownsampler.lttb(y, 50);
+		assertEquals(50, r.length);
+		assertEquals(0, r[0]);
+		assertEquals(999, r[49]);
+		for (int i = 1; i < r.length; i++) {
+			assertTrue(r[i] > r[i - 1]);
+		}
+	}
+
+	public void testSpikeKept() throws Exception {
+		double[] y = new double[500];
+		y[237] = 40;
+		int[] r = TrendDownsampler.lttb(y, 20);
+		boolean found = false;
+		for (int i : r) {
+			found |= i == 237;
+		}
+		assertTrue(found);
+	}
+}
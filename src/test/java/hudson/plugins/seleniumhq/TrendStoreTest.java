@@ -0,0 +1,111 @@
+package hudson.plugins.seleniumhq;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.json.JSONObject;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit test for {@link TrendStore}
+ */
+public class TrendStoreTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("trend", ".dat");
+		file.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	private static TrendRecord record(int number, int passes) {
+		return new TrendRecord(number, 1000L * number, passes, 1, 10, 2, 0, 60);
+	}
+
+	public void testAppendAndRead() throws Exception {
+		TrendStore store = new TrendStore(file);
+		store.append(record(2, 5));
+		store.append(record(1, 4));
+		store.append(record(3, 6));
+		assertEquals(TrendStore.HEADER_SIZE + 3 * TrendRecord.SIZE, file.length());
+
+		List<TrendRecord> records = store.read();
+		assertEquals(3, records.size());
+		assertEquals(1, records.get(0).getNumber());
+		assertEquals(4, records.get(0).getNumTestPasses());
+		assertEquals(3000L, records.get(2).getTimestamp());
+		assertEquals(60L, records.get(2).getTotalTime());
+		assertEquals(2, store.read(2, 3).size());
+	}
+
+	public void testLastAppendWins() throws Exception {
+		TrendStore store = new TrendStore(file);
+		store.append(record(1, 4));
+		store.append(record(1, 9));
+		List<TrendRecord> records = store.read();
+		assertEquals(1, records.size());
+		assertEquals(9, records.get(0).getNumTestPasses());
+	}
+
+	public void testRemove() throws Exception {
+		TrendStore store = new TrendStore(file);
+		for (int n = 1; n <= 10; n++) {
+			store.append(record(n, n));
+		}
+		store.remove(5);
+		assertEquals(9, store.read().size());
+		assertEquals(TrendStore.HEADER_SIZE + 9 * TrendRecord.SIZE, file.length());
+	}
+
+	public void testPartialRecordIgnored() throws Exception {
+		TrendStore store = new TrendStore(file);
+		store.append(record(1, 4));
+		FileOutputStream out = new FileOutputStream(file, true);
+		out.write(new byte[] { 0, 0, 0, 2, 0 });
+		out.close();
+		assertEquals(1, store.read().size());
+	}
+
+	public void testAppendAfterPartialRecord() throws Exception {
+		TrendStore store = new TrendStore(file);
+		store.append(record(1, 4));
+		FileOutputStream out = new FileOutputStream(file, true);
+		out.write(new byte[] { 0, 0, 0, 2, 0 });
+		out.close();
+		store.append(record(3, 6));
+		assertEquals(TrendStore.HEADER_SIZE + 2 * TrendRecord.SIZE, file.length());
+		List<TrendRecord> records = store.read();
+		assertEquals(2, records.size());
+		assertEquals(3, records.get(1).getNumber());
+		assertEquals(6, records.get(1).getNumTestPasses());
+	}
+
+	public void testReadTotalTimes() throws Exception {
+		TrendStore store = new TrendStore(file);
+		for (int n = 1; n <= 20; n++) {
+			// builds summarized before the total time was recorded have none
+			store.append(new TrendRecord(n, 1000L * n, 1, 0, 1, 0, 0, n % 5 == 0 ? 0 : n));
+		}
+		store.append(new TrendRecord(18, 18000L, 1, 0, 1, 0, 0, 180));
+		assertEquals(Arrays.asList(12L, 13L, 14L, 16L, 17L, 180L, 19L), store.readTotalTimes(20, 7));
+		assertEquals(Arrays.asList(1L, 2L), store.readTotalTimes(3, 10));
+		assertTrue(store.readTotalTimes(1, 10).isEmpty());
+	}
+
+	public void testToJSON() throws Exception {
+		JSONObject json = record(7, 5).toJSON();
+		assertEquals(7, json.get("number"));
+		assertEquals(60L, json.getLong("duration"));
+		assertEquals(5, ((JSONObject) json.get("tests")).get("passes"));
+		assertEquals(2, ((JSONObject) json.get("commands")).get("failures"));
+	}
+}